@@ -30,7 +30,7 @@
 import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
 
 /**
- * Defines the instantiation strategy for this component (Singleton, per lookup). 
+ * Defines the instantiation strategy for this component (Singleton, per lookup, pooled).
  *
  * @version $Id$
  * @since 1.8.1
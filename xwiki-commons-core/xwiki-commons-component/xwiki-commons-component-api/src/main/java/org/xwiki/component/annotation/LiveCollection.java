@@ -0,0 +1,49 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.annotation;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * Indicate that an injected {@code List<Role>} or {@code Map<String, Role>} field should receive a read only view
+ * always up to date with the components registered for the role, instead of a copy of the components available when
+ * the field is injected. The view is backed by a snapshot rebuilt only when a component of the role is registered or
+ * unregistered, so it's cheap to go through it each time the components are needed.
+ * <p>
+ * Singleton components are shared by all the users of the view while a new instance of the per lookup components is
+ * looked up each time they are accessed. Pooled components are not part of the view since nothing would release the
+ * borrowed instances: look them up and release them explicitly. Accessing the view throws an
+ * {@link IllegalStateException} wrapping the {@link org.xwiki.component.manager.ComponentLookupException} when a
+ * component cannot be looked up.
+ * 
+ * @version $Id$
+ * @since 5.4M1
+ */
+@Documented
+@Retention(RUNTIME)
+@Target(FIELD)
+public @interface LiveCollection
+{
+}
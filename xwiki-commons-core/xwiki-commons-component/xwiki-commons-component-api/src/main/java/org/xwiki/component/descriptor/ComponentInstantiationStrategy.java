@@ -20,7 +20,7 @@
 package org.xwiki.component.descriptor;
 
 /**
- * Lists valid instantiation strategy types (singleton, per lookup).
+ * Lists valid instantiation strategy types (singleton, per lookup, pooled).
  *  
  * @version $Id$
  * @since 1.8.1
@@ -35,5 +35,15 @@
     /**
      * A new component implementation instance is created at a each lookup.
      */
-    PER_LOOKUP
+    PER_LOOKUP,
+
+    /**
+     * The component implementation instances are taken from a bounded pool and a new instance is created only when
+     * the pool is empty. The instances are given back to the pool with
+     * {@link org.xwiki.component.manager.ComponentManager#release(Object)}, see
+     * {@link org.xwiki.component.phase.Poolable} to reset their state.
+     * 
+     * @since 5.4M1
+     */
+    POOLED
 }
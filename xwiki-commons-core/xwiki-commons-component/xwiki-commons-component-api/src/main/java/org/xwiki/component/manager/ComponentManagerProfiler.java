@@ -0,0 +1,67 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.manager;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.util.Map;
+
+import org.xwiki.component.annotation.Role;
+
+/**
+ * The data recorded while profiling a {@link ComponentManager}: the number of lookups of each role and the time spent
+ * loading and initializing components. Registered as a component by the Component Manager implementations which
+ * support profiling, only when profiling is enabled.
+ * 
+ * @version $Id$
+ * @since 5.4M1
+ */
+@Role
+public interface ComponentManagerProfiler
+{
+    /**
+     * @return the number of lookups of each role
+     */
+    Map<Type, Long> getLookupCounts();
+
+    /**
+     * @return the time spent initializing each component implementation, in nanoseconds
+     */
+    Map<String, Long> getInitializationDurations();
+
+    /**
+     * @return the time spent loading the component classes and descriptors of each JAR, in nanoseconds
+     */
+    Map<String, Long> getLoadingDurations();
+
+    /**
+     * Forget everything recorded so far.
+     */
+    void reset();
+
+    /**
+     * Write the recorded events in the Chrome trace event JSON format (to be opened with {@code chrome://tracing}).
+     * 
+     * @param writer the writer where to write the trace
+     * @throws IOException when failing to write the trace
+     */
+    void writeTrace(Writer writer) throws IOException;
+}
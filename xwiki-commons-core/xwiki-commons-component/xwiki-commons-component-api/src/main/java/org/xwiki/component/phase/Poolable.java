@@ -0,0 +1,44 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.phase;
+
+/**
+ * Components using the {@link org.xwiki.component.descriptor.ComponentInstantiationStrategy#POOLED} instantiation
+ * strategy can implement this interface to clean their state before being reused by another caller.
+ *
+ * @version $Id$
+ * @since 5.4M1
+ */
+public interface Poolable
+{
+    /**
+     * Method called by the Component Manager when the instance is given back to the pool, to clean the state left by
+     * the previous caller.
+     */
+    void reset();
+
+    /**
+     * Method called by the Component Manager before taking the instance out of the pool.
+     *
+     * @return true if the instance can be reused, false if it should be discarded (and disposed if it implements
+     *         {@link Disposable})
+     */
+    boolean validate();
+}
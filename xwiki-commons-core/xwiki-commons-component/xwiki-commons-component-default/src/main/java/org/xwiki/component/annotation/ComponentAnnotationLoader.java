@@ -44,6 +44,8 @@
 import org.slf4j.LoggerFactory;
 import org.xwiki.component.descriptor.ComponentDescriptor;
 import org.xwiki.component.descriptor.DefaultComponentDescriptor;
+import org.xwiki.component.embed.ComponentProfiler;
+import org.xwiki.component.embed.EmbeddableComponentManager;
 import org.xwiki.component.internal.RoleHint;
 import org.xwiki.component.manager.ComponentManager;
 import org.xwiki.component.util.DefaultParameterizedType;
@@ -72,6 +74,14 @@
     @Deprecated
     public static final String COMPONENT_OVERRIDE_LIST = "META-INF/component-overrides.txt";
 
+    /**
+     * Location in the classloader of the file containing the component descriptors computed at build time by
+     * {@link ComponentIndexProcessor}.
+     * 
+     * @since 5.4M1
+     */
+    public static final String COMPONENT_INDEX = "META-INF/components-index.txt";
+
     /**
      * The encoding used to parse component list files.
      */
@@ -153,7 +163,16 @@ public void register(ComponentManager manager, ClassLoader classLoader,
                 new HashMap<RoleHint< ? >, ComponentDescriptor< ? >>();
             Map<RoleHint< ? >, Integer> priorityMap = new HashMap<RoleHint< ? >, Integer>();
 
+            ComponentIndex index = getComponentIndex(classLoader);
+
+            ComponentProfiler profiler = null;
+            if (manager instanceof EmbeddableComponentManager) {
+                profiler = ((EmbeddableComponentManager) manager).getProfiler();
+            }
+
             for (ComponentDeclaration componentDeclaration : componentDeclarations) {
+                long start = profiler != null ? profiler.start() : 0;
+
                 Class< ? > componentClass;
                 try {
                     componentClass = classLoader.loadClass(componentDeclaration.getImplementationClassName());
@@ -163,19 +182,29 @@ public void register(ComponentManager manager, ClassLoader classLoader,
                             componentDeclaration.getImplementationClassName()), e);
                 }
 
-                // Look for ComponentRole annotations and register one component per ComponentRole found
-                for (Type componentRoleType : findComponentRoleTypes(componentClass)) {
-                    for (ComponentDescriptor< ? > componentDescriptor : this.factory.createComponentDescriptors(
-                        componentClass, componentRoleType)) {
-                        // If there's already a existing role/hint in the list of descriptors then decide which one
-                        // to keep by looking at their priorities. Highest priority wins (i.e. lowest integer value).
-                        RoleHint< ? > roleHint =
-                            new RoleHint(componentDescriptor.getRoleType(), componentDescriptor.getRoleHint());
-
-                        addComponent(descriptorMap, priorityMap, roleHint, componentDescriptor, componentDeclaration,
-                            true);
+                // Use the descriptors computed at build time when available, otherwise look for ComponentRole
+                // annotations and register one component per ComponentRole found
+                List<ComponentDescriptor< ? >> componentDescriptors =
+                    getIndexedComponentsDescriptors(index, componentClass, classLoader);
+                if (componentDescriptors == null) {
+                    componentDescriptors = new ArrayList<ComponentDescriptor< ? >>();
+                    for (ComponentDescriptor< ? > componentDescriptor : getComponentsDescriptors(componentClass)) {
+                        componentDescriptors.add(componentDescriptor);
                     }
                 }
+
+                for (ComponentDescriptor< ? > componentDescriptor : componentDescriptors) {
+                    // If there's already a existing role/hint in the list of descriptors then decide which one
+                    // to keep by looking at their priorities. Highest priority wins (i.e. lowest integer value).
+                    RoleHint< ? > roleHint =
+                        new RoleHint(componentDescriptor.getRoleType(), componentDescriptor.getRoleHint());
+
+                    addComponent(descriptorMap, priorityMap, roleHint, componentDescriptor, componentDeclaration, true);
+                }
+
+                if (profiler != null) {
+                    profiler.loaded(componentClass, start);
+                }
             }
 
             // 3) Activate all component descriptors
@@ -189,6 +218,59 @@ public void register(ComponentManager manager, ClassLoader classLoader,
         }
     }
 
+    /**
+     * @param classLoader the classloader to use to look for the component indexes
+     * @return the component descriptors computed at build time or {@code null} if they can't be used
+     * @throws IOException in case of an error loading the component indexes
+     */
+    private ComponentIndex getComponentIndex(ClassLoader classLoader) throws IOException
+    {
+        // The index only contains the dependencies supported by the default JSR 330 dependency factory
+        if (!this.factory.isDefaultComponentDependencyFactory()) {
+            return null;
+        }
+
+        ComponentIndex index = new ComponentIndex();
+
+        Enumeration<URL> urls = classLoader.getResources(COMPONENT_INDEX);
+        while (urls.hasMoreElements()) {
+            URL url = urls.nextElement();
+
+            LOGGER.debug("Loading component index from [{}]", url);
+
+            InputStream componentIndexStream = url.openStream();
+
+            try {
+                index.read(componentIndexStream);
+            } finally {
+                componentIndexStream.close();
+            }
+        }
+
+        return index.isEmpty() ? null : index;
+    }
+
+    /**
+     * @param index the component descriptors computed at build time
+     * @param componentClass the component implementation class
+     * @param classLoader the classloader to use to resolve the indexed types
+     * @return the component descriptors or {@code null} if the component is not indexed
+     */
+    private List<ComponentDescriptor< ? >> getIndexedComponentsDescriptors(ComponentIndex index,
+        Class< ? > componentClass, ClassLoader classLoader)
+    {
+        if (index != null) {
+            try {
+                return index.getComponentDescriptors(componentClass, classLoader);
+            } catch (Throwable e) {
+                getLogger().debug("Failed to use the index for component [{}], falling back on annotations parsing",
+                    componentClass.getName(), e);
+            }
+        }
+
+        return null;
+    }
+
     private void addComponent(Map<RoleHint< ? >, ComponentDescriptor< ? >> descriptorMap,
         Map<RoleHint< ? >, Integer> priorityMap, RoleHint< ? > roleHint, ComponentDescriptor< ? > componentDescriptor,
         ComponentDeclaration componentDeclaration, boolean warn)
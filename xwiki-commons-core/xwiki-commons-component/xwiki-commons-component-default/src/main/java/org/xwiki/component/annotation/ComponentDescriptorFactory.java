@@ -51,6 +51,23 @@
     private ServiceLoader<ComponentDependencyFactory> componentDependencyFactories = ServiceLoader
         .load(ComponentDependencyFactory.class);
 
+    /**
+     * @return true if {@link DefaultComponentDependencyFactory} is the only available dependency factory, i.e. if the
+     *         dependencies computed at build time by {@link ComponentIndexProcessor} are the same as the ones that
+     *         would be found at runtime
+     * @since 5.4M1
+     */
+    boolean isDefaultComponentDependencyFactory()
+    {
+        for (ComponentDependencyFactory factory : this.componentDependencyFactories) {
+            if (factory.getClass() != DefaultComponentDependencyFactory.class) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
     /**
      * Create component descriptors for the passed component implementation class and component role class. There can be
      * more than one descriptor if the component class has specified several hints.
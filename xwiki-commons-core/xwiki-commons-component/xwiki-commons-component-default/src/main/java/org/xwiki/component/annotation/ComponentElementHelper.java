@@ -0,0 +1,208 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.annotation;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * Helpers used by {@link ComponentIndexProcessor} to read the annotations of the elements being compiled and to
+ * serialize their types.
+ * 
+ * @version $Id$
+ * @since 5.4M1
+ */
+class ComponentElementHelper
+{
+    /**
+     * The environment of the annotation processor.
+     */
+    private final ProcessingEnvironment processingEnv;
+
+    /**
+     * @param processingEnv the environment of the annotation processor
+     */
+    ComponentElementHelper(ProcessingEnvironment processingEnv)
+    {
+        this.processingEnv = processingEnv;
+    }
+
+    /**
+     * @param type the role type
+     * @return the serialized role, the raw type if it contains unresolved type variables
+     * @throws UnsupportedComponentException if the type can't be serialized
+     */
+    String serializeRoleType(DeclaredType type) throws UnsupportedComponentException
+    {
+        if (containsTypeVariable(type)) {
+            return getBinaryName((TypeElement) type.asElement());
+        }
+
+        return serializeType(type);
+    }
+
+    private boolean containsTypeVariable(TypeMirror type)
+    {
+        if (type.getKind() == TypeKind.TYPEVAR) {
+            return true;
+        }
+
+        if (type.getKind() == TypeKind.DECLARED) {
+            for (TypeMirror argument : ((DeclaredType) type).getTypeArguments()) {
+                if (containsTypeVariable(argument)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @param type the type to serialize
+     * @return the type in the format supported by
+     *         {@link org.xwiki.component.util.ReflectionUtils#unserializeType(String, ClassLoader)}
+     * @throws UnsupportedComponentException if the type can't be serialized
+     */
+    String serializeType(TypeMirror type) throws UnsupportedComponentException
+    {
+        if (type.getKind() != TypeKind.DECLARED) {
+            throw new UnsupportedComponentException("unsupported type [" + type + "]");
+        }
+
+        DeclaredType declaredType = (DeclaredType) type;
+
+        StringBuilder builder = new StringBuilder();
+        builder.append(getBinaryName((TypeElement) declaredType.asElement()));
+
+        List< ? extends TypeMirror> arguments = declaredType.getTypeArguments();
+        if (!arguments.isEmpty()) {
+            if (declaredType.getEnclosingType().getKind() != TypeKind.NONE) {
+                throw new UnsupportedComponentException("unsupported inner class type [" + type + "]");
+            }
+
+            builder.append('<');
+            for (int i = 0; i < arguments.size(); ++i) {
+                if (i > 0) {
+                    builder.append(", ");
+                }
+                builder.append(serializeType(arguments.get(i)));
+            }
+            builder.append('>');
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * @param element a class or interface
+     * @return the binary name of the class
+     */
+    String getBinaryName(TypeElement element)
+    {
+        return this.processingEnv.getElementUtils().getBinaryName(element).toString();
+    }
+
+    /**
+     * @param element a class
+     * @return the superclass of the class, {@code null} if it's {@link Object}
+     */
+    TypeElement getSuperclass(TypeElement element)
+    {
+        TypeMirror superclass = element.getSuperclass();
+
+        if (superclass.getKind() == TypeKind.DECLARED) {
+            TypeElement superclassElement = (TypeElement) ((DeclaredType) superclass).asElement();
+            if (!superclassElement.getQualifiedName().contentEquals(Object.class.getName())) {
+                return superclassElement;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @param element a class
+     * @return the {@link Component} annotation of the class or of one of its superclasses, {@code null} if none
+     */
+    AnnotationMirror getComponentAnnotation(TypeElement element)
+    {
+        // Component is @Inherited
+        return getAnnotation(this.processingEnv.getElementUtils().getAllAnnotationMirrors(element), Component.class);
+    }
+
+    /**
+     * @param mirrors the annotations of an element
+     * @param annotationClass the annotation to look for
+     * @return the annotation, {@code null} if it's not present
+     */
+    AnnotationMirror getAnnotation(List< ? extends AnnotationMirror> mirrors, Class< ? > annotationClass)
+    {
+        for (AnnotationMirror mirror : mirrors) {
+            TypeElement annotationElement = (TypeElement) mirror.getAnnotationType().asElement();
+            if (annotationElement.getQualifiedName().contentEquals(annotationClass.getName())) {
+                return mirror;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @param mirror the annotation
+     * @param name the name of the attribute
+     * @return the value of the attribute, including the default value
+     */
+    Object getAnnotationValue(AnnotationMirror mirror, String name)
+    {
+        for (Map.Entry< ? extends ExecutableElement, ? extends AnnotationValue> entry : this.processingEnv
+            .getElementUtils().getElementValuesWithDefaults(mirror).entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(name)) {
+                return entry.getValue().getValue();
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @param mirror the annotation
+     * @param name the name of an array attribute
+     * @return the values of the attribute
+     */
+    @SuppressWarnings("unchecked")
+    List< ? extends AnnotationValue> getAnnotationValues(AnnotationMirror mirror, String name)
+    {
+        Object value = getAnnotationValue(mirror, name);
+
+        return value instanceof List ? (List< ? extends AnnotationValue>) value : Collections
+            .<AnnotationValue> emptyList();
+    }
+}
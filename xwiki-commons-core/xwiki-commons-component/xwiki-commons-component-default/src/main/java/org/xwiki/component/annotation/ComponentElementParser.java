@@ -0,0 +1,275 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.annotation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+
+import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
+
+/**
+ * Extract from a {@link Component} class being compiled the informations stored by {@link ComponentIndexProcessor}:
+ * instantiation strategy, roles, hints and injected fields.
+ * 
+ * @version $Id$
+ * @since 5.4M1
+ */
+class ComponentElementParser
+{
+    /**
+     * The default component hint.
+     */
+    private static final String DEFAULT_HINT = "default";
+
+    /**
+     * The name of the annotation attribute containing the main value.
+     */
+    private static final String VALUE = "value";
+
+    /**
+     * The environment of the annotation processor.
+     */
+    private final ProcessingEnvironment processingEnv;
+
+    /**
+     * Used to read the annotations and serialize the types.
+     */
+    private final ComponentElementHelper helper;
+
+    /**
+     * @param processingEnv the environment of the annotation processor
+     */
+    ComponentElementParser(ProcessingEnvironment processingEnv)
+    {
+        this.processingEnv = processingEnv;
+        this.helper = new ComponentElementHelper(processingEnv);
+    }
+
+    /**
+     * @param element the component class
+     * @return the binary name of the component class
+     */
+    String getBinaryName(TypeElement element)
+    {
+        return this.helper.getBinaryName(element);
+    }
+
+    // Same logic as ComponentDescriptorFactory
+
+    /**
+     * @param element the component class
+     * @return the instantiation strategy of the component
+     */
+    ComponentInstantiationStrategy getInstantiationStrategy(TypeElement element)
+    {
+        // Support both InstantiationStrategy and JSR 330's Singleton annotations.
+        if (this.helper.getAnnotation(element.getAnnotationMirrors(), Singleton.class) != null) {
+            return ComponentInstantiationStrategy.SINGLETON;
+        }
+
+        AnnotationMirror instantiationStrategy =
+            this.helper.getAnnotation(this.processingEnv.getElementUtils().getAllAnnotationMirrors(element),
+                InstantiationStrategy.class);
+        if (instantiationStrategy != null) {
+            Object value = this.helper.getAnnotationValue(instantiationStrategy, VALUE);
+            if (value instanceof VariableElement) {
+                return ComponentInstantiationStrategy.valueOf(((VariableElement) value).getSimpleName().toString());
+            }
+        }
+
+        return ComponentInstantiationStrategy.SINGLETON;
+    }
+
+    /**
+     * @param element the component class
+     * @return the hints of the component
+     */
+    List<String> getHints(TypeElement element)
+    {
+        // If there's a @Named annotation, use it and ignore hints specified in the @Component annotation.
+        AnnotationMirror named = this.helper.getAnnotation(element.getAnnotationMirrors(), Named.class);
+        if (named != null) {
+            return Collections.singletonList((String) this.helper.getAnnotationValue(named, VALUE));
+        }
+
+        AnnotationMirror component = this.helper.getComponentAnnotation(element);
+        if (component != null) {
+            List<String> hints = new ArrayList<String>();
+            for (AnnotationValue hint : this.helper.getAnnotationValues(component, "hints")) {
+                hints.add((String) hint.getValue());
+            }
+            if (!hints.isEmpty()) {
+                return hints;
+            }
+
+            String value = ((String) this.helper.getAnnotationValue(component, VALUE)).trim();
+            if (value.length() > 0) {
+                return Collections.singletonList(value);
+            }
+        }
+
+        return Collections.singletonList(DEFAULT_HINT);
+    }
+
+    /**
+     * @param element the component class
+     * @return the injected fields in the {@value ComponentIndex#DEPENDENCY} format
+     * @throws UnsupportedComponentException if the type of an injected field can't be serialized
+     */
+    List<String> getDependencies(TypeElement element) throws UnsupportedComponentException
+    {
+        // Same order and overriding rules as ReflectionUtils#getAllFields
+        Map<String, VariableElement> fields = new LinkedHashMap<String, VariableElement>();
+        for (TypeElement targetElement = element; targetElement != null;
+            targetElement = this.helper.getSuperclass(targetElement)) {
+            for (VariableElement field : ElementFilter.fieldsIn(targetElement.getEnclosedElements())) {
+                String fieldName = field.getSimpleName().toString();
+                if (!fields.containsKey(fieldName)) {
+                    fields.put(fieldName, field);
+                }
+            }
+        }
+
+        List<String> dependencies = new ArrayList<String>();
+        for (VariableElement field : fields.values()) {
+            // Same logic as DefaultComponentDependencyFactory
+            if (this.helper.getAnnotation(field.getAnnotationMirrors(), Inject.class) != null) {
+                StringBuilder dependency = new StringBuilder();
+
+                dependency.append(field.getSimpleName());
+                dependency.append(ComponentIndex.DEPENDENCY_SEPARATOR);
+
+                TypeMirror fieldType = field.asType();
+                if (fieldType.getKind() == TypeKind.DECLARED) {
+                    Element fieldTypeElement = ((DeclaredType) fieldType).asElement();
+                    if (this.helper.getAnnotation(fieldTypeElement.getAnnotationMirrors(), ComponentRole.class) != null
+                        && this.helper.getAnnotation(fieldTypeElement.getAnnotationMirrors(), Role.class) == null) {
+                        // retro-compatibility (generic type used to not be taken into account)
+                        fieldType = this.processingEnv.getTypeUtils().erasure(fieldType);
+                    }
+                }
+                dependency.append(this.helper.serializeType(fieldType));
+
+                AnnotationMirror named = this.helper.getAnnotation(field.getAnnotationMirrors(), Named.class);
+                if (named != null) {
+                    dependency.append(ComponentIndex.DEPENDENCY_SEPARATOR);
+                    dependency.append(this.helper.getAnnotationValue(named, VALUE));
+                }
+
+                dependencies.add(dependency.toString());
+            }
+        }
+
+        return dependencies;
+    }
+
+    // Same logic as ComponentAnnotationLoader#findComponentRoleTypes
+
+    /**
+     * @param element the component class
+     * @return the serialized roles of the component
+     * @throws UnsupportedComponentException if a role can't be serialized
+     */
+    Set<String> getRoleTypes(TypeElement element) throws UnsupportedComponentException
+    {
+        // Note: We use a Set to ensure that we don't register duplicate roles.
+        Set<String> roles = new LinkedHashSet<String>();
+
+        // If the roles are specified by the user then don't auto-discover roles!
+        AnnotationMirror component = this.helper.getComponentAnnotation(element);
+        if (component != null) {
+            for (AnnotationValue role : this.helper.getAnnotationValues(component, "roles")) {
+                TypeMirror roleType = this.processingEnv.getTypeUtils().erasure((TypeMirror) role.getValue());
+                roles.add(this.helper.serializeType(roleType));
+            }
+        }
+
+        if (roles.isEmpty()) {
+            addRoleTypes((DeclaredType) element.asType(), roles);
+        }
+
+        return roles;
+    }
+
+    private void addRoleTypes(DeclaredType type, Set<String> roles) throws UnsupportedComponentException
+    {
+        List<DeclaredType> superclasses = new ArrayList<DeclaredType>();
+
+        for (TypeMirror supertype : this.processingEnv.getTypeUtils().directSupertypes(type)) {
+            DeclaredType declaredSupertype = (DeclaredType) supertype;
+            TypeElement supertypeElement = (TypeElement) declaredSupertype.asElement();
+
+            if (supertypeElement.getKind() != ElementKind.INTERFACE) {
+                if (!supertypeElement.getQualifiedName().contentEquals(Object.class.getName())) {
+                    superclasses.add(declaredSupertype);
+                }
+                continue;
+            }
+
+            // Handle superclass of interfaces
+            addRoleTypes(declaredSupertype, roles);
+
+            // Handle interfaces directly declared in the passed component class
+            if (this.helper.getAnnotation(supertypeElement.getAnnotationMirrors(), Role.class) != null) {
+                roles.add(this.helper.serializeRoleType(declaredSupertype));
+            }
+
+            // Handle javax.inject.Provider
+            if (this.processingEnv.getTypeUtils().isAssignable(
+                this.processingEnv.getTypeUtils().erasure(declaredSupertype),
+                this.processingEnv.getTypeUtils().erasure(
+                    this.processingEnv.getElementUtils().getTypeElement(Provider.class.getName()).asType()))) {
+                roles.add(this.helper.serializeRoleType(declaredSupertype));
+            }
+
+            // Handle ComponentRole (retro-compatibility)
+            if (this.helper.getAnnotation(supertypeElement.getAnnotationMirrors(), ComponentRole.class) != null) {
+                roles.add(this.helper.getBinaryName(supertypeElement));
+            }
+        }
+
+        // Note that we need to look into the superclass since the super class can itself implements an interface
+        // that has the @Role annotation.
+        for (DeclaredType superclass : superclasses) {
+            addRoleTypes(superclass, roles);
+        }
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.annotation;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.xwiki.component.descriptor.ComponentDescriptor;
+import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
+import org.xwiki.component.descriptor.DefaultComponentDependency;
+import org.xwiki.component.descriptor.DefaultComponentDescriptor;
+import org.xwiki.component.util.DefaultParameterizedType;
+import org.xwiki.component.util.ReflectionUtils;
+
+/**
+ * Component descriptors computed at build time by {@link ComponentIndexProcessor} and stored in
+ * {@value ComponentAnnotationLoader#COMPONENT_INDEX}. Allows registering components without introspecting their
+ * annotations.
+ * <p>
+ * The format is a list of {@code key=value} lines, each component starting with a {@value #COMPONENT} line:
+ * 
+ * <pre>
+ * component=org.xwiki.component.internal.SomeComponent
+ * strategy=SINGLETON
+ * role=org.xwiki.component.SomeRole
+ * hint=default
+ * dependency=logger:org.slf4j.Logger
+ * dependency=otherComponent:org.xwiki.component.OtherRole:somehint
+ * </pre>
+ * 
+ * @version $Id$
+ * @since 5.4M1
+ */
+class ComponentIndex
+{
+    /**
+     * Start a new component and indicate its implementation class name.
+     */
+    static final String COMPONENT = "component";
+
+    /**
+     * The {@link ComponentInstantiationStrategy} of the component.
+     */
+    static final String STRATEGY = "strategy";
+
+    /**
+     * One of the roles of the component as serialized type.
+     */
+    static final String ROLE = "role";
+
+    /**
+     * One of the hints of the component.
+     */
+    static final String HINT = "hint";
+
+    /**
+     * An injected field in the form {@code fieldName:serializedRoleType[:hint]}.
+     */
+    static final String DEPENDENCY = "dependency";
+
+    /**
+     * Separate the key from the value in a line.
+     */
+    static final char KEY_SEPARATOR = '=';
+
+    /**
+     * Separate the elements of a dependency value.
+     */
+    static final String DEPENDENCY_SEPARATOR = ":";
+
+    /**
+     * Lines starting with this character are ignored.
+     */
+    static final char COMMENT = '#';
+
+    /**
+     * The encoding used to read and write the index.
+     */
+    static final String ENCODING = "UTF-8";
+
+    /**
+     * The raw (not yet resolved) informations about an indexed component.
+     */
+    private static class Entry
+    {
+        private ComponentInstantiationStrategy strategy = ComponentInstantiationStrategy.SINGLETON;
+
+        private List<String> roles = new ArrayList<String>();
+
+        private List<String> hints = new ArrayList<String>();
+
+        private List<String[]> dependencies = new ArrayList<String[]>();
+
+        /**
+         * @param key the key of an index line following the {@value ComponentIndex#COMPONENT} line
+         * @param value the value of the line
+         */
+        void set(String key, String value)
+        {
+            if (key.equals(STRATEGY)) {
+                this.strategy = ComponentInstantiationStrategy.valueOf(value);
+            } else if (key.equals(ROLE)) {
+                this.roles.add(value);
+            } else if (key.equals(HINT)) {
+                this.hints.add(value);
+            } else if (key.equals(DEPENDENCY)) {
+                this.dependencies.add(value.split(DEPENDENCY_SEPARATOR, 3));
+            }
+        }
+    }
+
+    /**
+     * The indexed components by implementation class name.
+     */
+    private Map<String, Entry> entries = new HashMap<String, Entry>();
+
+    /**
+     * @return true if no component has been indexed
+     */
+    boolean isEmpty()
+    {
+        return this.entries.isEmpty();
+    }
+
+    /**
+     * @param indexStream the index to parse
+     * @throws IOException when failing to read the index
+     */
+    void read(InputStream indexStream) throws IOException
+    {
+        BufferedReader in = new BufferedReader(new InputStreamReader(indexStream, ENCODING));
+
+        Entry entry = null;
+        String inputLine;
+        while ((inputLine = in.readLine()) != null) {
+            int separatorIndex = inputLine.indexOf(KEY_SEPARATOR);
+            if (inputLine.length() == 0 || inputLine.charAt(0) == COMMENT || separatorIndex == -1) {
+                continue;
+            }
+
+            String key = inputLine.substring(0, separatorIndex);
+            String value = inputLine.substring(separatorIndex + 1);
+
+            if (key.equals(COMPONENT)) {
+                entry = new Entry();
+                this.entries.put(value, entry);
+            } else if (entry != null) {
+                entry.set(key, value);
+            }
+        }
+    }
+
+    /**
+     * @param componentClass the component implementation class
+     * @param classLoader the class loader to use to resolve the role types
+     * @return the component descriptors (one per role and hint) or {@code null} if the component is not indexed
+     * @throws ClassNotFoundException when failing to resolve one of the types
+     */
+    List<ComponentDescriptor< ? >> getComponentDescriptors(Class< ? > componentClass, ClassLoader classLoader)
+        throws ClassNotFoundException
+    {
+        Entry entry = this.entries.get(componentClass.getName());
+
+        if (entry == null) {
+            return null;
+        }
+
+        List<DefaultComponentDependency<Object>> dependencies = getDependencies(entry, classLoader);
+
+        List<ComponentDescriptor< ? >> descriptors = new ArrayList<ComponentDescriptor< ? >>();
+        for (String role : entry.roles) {
+            Type roleType = unserializeType(role, classLoader);
+
+            for (String hint : entry.hints) {
+                DefaultComponentDescriptor<Object> descriptor = new DefaultComponentDescriptor<Object>();
+                descriptor.setRoleType(roleType);
+                descriptor.setImplementation(componentClass);
+                descriptor.setRoleHint(hint);
+                descriptor.setInstantiationStrategy(entry.strategy);
+                for (DefaultComponentDependency<Object> dependency : dependencies) {
+                    descriptor.addComponentDependency(new DefaultComponentDependency<Object>(dependency));
+                }
+
+                descriptors.add(descriptor);
+            }
+        }
+
+        return descriptors;
+    }
+
+    /**
+     * @param entry the indexed component
+     * @param classLoader the class loader to use to resolve the role types
+     * @return the injected fields of the component
+     * @throws ClassNotFoundException when failing to resolve one of the types
+     */
+    private List<DefaultComponentDependency<Object>> getDependencies(Entry entry, ClassLoader classLoader)
+        throws ClassNotFoundException
+    {
+        List<DefaultComponentDependency<Object>> dependencies = new ArrayList<DefaultComponentDependency<Object>>();
+
+        for (String[] dependencyElements : entry.dependencies) {
+            DefaultComponentDependency<Object> dependency = new DefaultComponentDependency<Object>();
+            dependency.setName(dependencyElements[0]);
+            dependency.setRoleType(unserializeType(dependencyElements[1], classLoader));
+            if (dependencyElements.length > 2) {
+                dependency.setRoleHint(dependencyElements[2]);
+            }
+            dependencies.add(dependency);
+        }
+
+        return dependencies;
+    }
+
+    /**
+     * Same as {@link ReflectionUtils#unserializeType(String, ClassLoader)} but also set the owner type of nested
+     * classes, as Java reflection does.
+     * 
+     * @param serializedType the serialized type
+     * @param classLoader the class loader to use to resolve the type
+     * @return the type
+     * @throws ClassNotFoundException when failing to resolve the type
+     */
+    private Type unserializeType(String serializedType, ClassLoader classLoader) throws ClassNotFoundException
+    {
+        return setOwnerType(ReflectionUtils.unserializeType(serializedType, classLoader));
+    }
+
+    private Type setOwnerType(Type type)
+    {
+        if (type instanceof ParameterizedType) {
+            ParameterizedType parameterizedType = (ParameterizedType) type;
+            Class< ? > rawType = (Class< ? >) parameterizedType.getRawType();
+
+            Type[] arguments = parameterizedType.getActualTypeArguments();
+            for (int i = 0; i < arguments.length; ++i) {
+                arguments[i] = setOwnerType(arguments[i]);
+            }
+
+            return new DefaultParameterizedType(rawType.getDeclaringClass(), rawType, arguments);
+        }
+
+        return type;
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.annotation;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Optional annotation processor generating {@value ComponentAnnotationLoader#COMPONENT_INDEX}, the list of component
+ * descriptors (roles, hints, instantiation strategy and injected fields) of the {@link Component} classes being
+ * compiled. {@link ComponentAnnotationLoader} uses this index instead of introspecting the component classes when
+ * it's available.
+ * <p>
+ * The processor is not automatically registered, it needs to be explicitly enabled, for example with Maven:
+ * 
+ * <pre>
+ * &lt;plugin&gt;
+ *   &lt;artifactId&gt;maven-compiler-plugin&lt;/artifactId&gt;
+ *   &lt;configuration&gt;
+ *     &lt;annotationProcessors&gt;
+ *       &lt;annotationProcessor&gt;org.xwiki.component.annotation.ComponentIndexProcessor&lt;/annotationProcessor&gt;
+ *     &lt;/annotationProcessors&gt;
+ *   &lt;/configuration&gt;
+ * &lt;/plugin&gt;
+ * </pre>
+ * <p>
+ * Components which can't be fully described at build time (for example because a role or an injected field type
+ * depends on a type variable) are not indexed and are introspected at runtime as usual. The priority of the
+ * components is still taken from {@value ComponentAnnotationLoader#COMPONENT_LIST}.
+ * 
+ * @version $Id$
+ * @since 5.4M1
+ */
+@SupportedAnnotationTypes("org.xwiki.component.annotation.Component")
+public class ComponentIndexProcessor extends AbstractProcessor
+{
+    /**
+     * The index of each processed component (sorted by implementation class name to produce a stable file).
+     */
+    private final Map<String, String> index = new TreeMap<String, String>();
+
+    /**
+     * Used to extract the informations to index from the component classes.
+     */
+    private ComponentElementParser parser;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv)
+    {
+        super.init(processingEnv);
+
+        this.parser = new ComponentElementParser(processingEnv);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion()
+    {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set< ? extends TypeElement> annotations, RoundEnvironment roundEnv)
+    {
+        if (roundEnv.processingOver()) {
+            if (!this.index.isEmpty()) {
+                writeIndex();
+            }
+        } else {
+            for (TypeElement element : ElementFilter.typesIn(roundEnv.getElementsAnnotatedWith(Component.class))) {
+                if (element.getKind() == ElementKind.CLASS && !element.getModifiers().contains(Modifier.ABSTRACT)) {
+                    String implementation = this.parser.getBinaryName(element);
+                    try {
+                        this.index.put(implementation, indexComponent(element));
+                    } catch (UnsupportedComponentException e) {
+                        this.processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                            String.format("Component [%s] is not indexed: %s", implementation, e.getMessage()),
+                            element);
+                    }
+                }
+            }
+        }
+
+        // Don't claim the annotation, other processors might be interested in it
+        return false;
+    }
+
+    private void writeIndex()
+    {
+        try {
+            FileObject file =
+                this.processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+                    ComponentAnnotationLoader.COMPONENT_INDEX);
+            Writer writer = new OutputStreamWriter(file.openOutputStream(), ComponentIndex.ENCODING);
+            try {
+                writer.write(ComponentIndex.COMMENT + " Generated by " + getClass().getName() + '\n');
+                for (String component : this.index.values()) {
+                    writer.write(component);
+                }
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                "Failed to write " + ComponentAnnotationLoader.COMPONENT_INDEX + ": " + e.getMessage());
+        }
+    }
+
+    private String indexComponent(TypeElement element) throws UnsupportedComponentException
+    {
+        StringBuilder builder = new StringBuilder();
+
+        appendLine(builder, ComponentIndex.COMPONENT, this.parser.getBinaryName(element));
+        appendLine(builder, ComponentIndex.STRATEGY, this.parser.getInstantiationStrategy(element).name());
+
+        Set<String> roles = this.parser.getRoleTypes(element);
+        if (roles.isEmpty()) {
+            throw new UnsupportedComponentException("no role found");
+        }
+        for (String role : roles) {
+            appendLine(builder, ComponentIndex.ROLE, role);
+        }
+
+        for (String hint : this.parser.getHints(element)) {
+            if (hint.indexOf('\n') != -1 || hint.indexOf('\r') != -1) {
+                throw new UnsupportedComponentException("multiline hint");
+            }
+            appendLine(builder, ComponentIndex.HINT, hint);
+        }
+
+        for (String dependency : this.parser.getDependencies(element)) {
+            appendLine(builder, ComponentIndex.DEPENDENCY, dependency);
+        }
+
+        return builder.toString();
+    }
+
+    private void appendLine(StringBuilder builder, String key, String value)
+    {
+        builder.append(key).append(ComponentIndex.KEY_SEPARATOR).append(value).append('\n');
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.embed;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The instances taken from the pools of {@link ComponentPool} and not released yet, indexed by identity. The instances
+ * are weakly referenced so that the ones which are never released can still be garbage collected.
+ * 
+ * @version $Id$
+ * @since 5.4M1
+ */
+final class BorrowedInstances
+{
+    /**
+     * Weak reference to an instance, compared by identity.
+     */
+    private static final class InstanceReference extends WeakReference<Object>
+    {
+        private final int hash;
+
+        InstanceReference(Object instance, ReferenceQueue<Object> queue)
+        {
+            super(instance, queue);
+
+            this.hash = System.identityHashCode(instance);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj) {
+                return true;
+            }
+
+            if (obj instanceof InstanceReference) {
+                Object instance = get();
+
+                return instance != null && instance == ((InstanceReference) obj).get();
+            }
+
+            return false;
+        }
+    }
+
+    private final Map<InstanceReference, ComponentPool< ? >> pools =
+        new HashMap<InstanceReference, ComponentPool< ? >>();
+
+    private final ReferenceQueue<Object> queue = new ReferenceQueue<Object>();
+
+    /**
+     * @param instance the instance taken from the pool
+     * @param pool the pool the instance should be given back to
+     */
+    synchronized void add(Object instance, ComponentPool< ? > pool)
+    {
+        expunge();
+
+        this.pools.put(new InstanceReference(instance, this.queue), pool);
+    }
+
+    /**
+     * @param instance the instance to release
+     * @return the pool the instance was taken from or {@code null} if the instance was not taken from a pool or has
+     *         already been released
+     */
+    synchronized ComponentPool< ? > remove(Object instance)
+    {
+        expunge();
+
+        return instance != null ? this.pools.remove(new InstanceReference(instance, null)) : null;
+    }
+
+    private void expunge()
+    {
+        for (Reference< ? > reference = this.queue.poll(); reference != null; reference = this.queue.poll()) {
+            this.pools.remove(reference);
+        }
+    }
+}
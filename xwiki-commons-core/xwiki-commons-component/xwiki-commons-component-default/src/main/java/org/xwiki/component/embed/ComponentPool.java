@@ -0,0 +1,184 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.embed;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Poolable;
+
+/**
+ * Bounded pool of instances of a component using the
+ * {@link org.xwiki.component.descriptor.ComponentInstantiationStrategy#POOLED} instantiation strategy.
+ * 
+ * @param <T> the type of the component implementation
+ * @version $Id$
+ * @since 5.4M1
+ */
+final class ComponentPool<T> implements ComponentPoolStatistics
+{
+    private final int maxIdle;
+
+    private final BlockingQueue<T> idleInstances;
+
+    private final AtomicLong lookupCount = new AtomicLong();
+
+    private final AtomicLong createdCount = new AtomicLong();
+
+    private final AtomicLong releasedCount = new AtomicLong();
+
+    private final AtomicLong discardedCount = new AtomicLong();
+
+    /**
+     * True when the component has been unregistered, the released instances are then discarded.
+     */
+    private volatile boolean closed;
+
+    /**
+     * @param maxIdle the maximum number of instances kept in the pool
+     */
+    ComponentPool(int maxIdle)
+    {
+        this.maxIdle = maxIdle;
+        this.idleInstances = new ArrayBlockingQueue<T>(maxIdle);
+    }
+
+    /**
+     * @return a valid instance taken from the pool or {@code null} if the pool is empty, in which case the caller is
+     *         expected to create a new instance and call {@link #created()}
+     * @throws ComponentLifecycleException when failing to dispose an invalid instance
+     */
+    T take() throws ComponentLifecycleException
+    {
+        this.lookupCount.incrementAndGet();
+
+        for (T instance = this.idleInstances.poll(); instance != null; instance = this.idleInstances.poll()) {
+            if (!(instance instanceof Poolable) || ((Poolable) instance).validate()) {
+                return instance;
+            }
+
+            discard(instance);
+        }
+
+        return null;
+    }
+
+    /**
+     * Indicate that a new instance has been created because the pool was empty.
+     */
+    void created()
+    {
+        this.createdCount.incrementAndGet();
+    }
+
+    /**
+     * @param instance the instance to give back to the pool
+     * @throws ComponentLifecycleException when failing to dispose the instance when the pool is full
+     */
+    void release(T instance) throws ComponentLifecycleException
+    {
+        this.releasedCount.incrementAndGet();
+
+        if (this.closed) {
+            discard(instance);
+        } else {
+            if (instance instanceof Poolable) {
+                ((Poolable) instance).reset();
+            }
+
+            if (!this.idleInstances.offer(instance)) {
+                discard(instance);
+            }
+        }
+    }
+
+    /**
+     * Discard all the instances waiting in the pool and the ones released after this call.
+     * 
+     * @throws ComponentLifecycleException when failing to dispose an instance
+     */
+    void clear() throws ComponentLifecycleException
+    {
+        this.closed = true;
+
+        ComponentLifecycleException exception = null;
+
+        for (T instance = this.idleInstances.poll(); instance != null; instance = this.idleInstances.poll()) {
+            try {
+                discard(instance);
+            } catch (ComponentLifecycleException e) {
+                exception = e;
+            }
+        }
+
+        // Dispose all the instances before reporting the failure
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    private void discard(T instance) throws ComponentLifecycleException
+    {
+        this.discardedCount.incrementAndGet();
+
+        if (instance instanceof Disposable) {
+            ((Disposable) instance).dispose();
+        }
+    }
+
+    @Override
+    public long getLookupCount()
+    {
+        return this.lookupCount.get();
+    }
+
+    @Override
+    public long getCreatedCount()
+    {
+        return this.createdCount.get();
+    }
+
+    @Override
+    public long getReleasedCount()
+    {
+        return this.releasedCount.get();
+    }
+
+    @Override
+    public long getDiscardedCount()
+    {
+        return this.discardedCount.get();
+    }
+
+    @Override
+    public int getIdleCount()
+    {
+        return this.idleInstances.size();
+    }
+
+    @Override
+    public int getMaxIdle()
+    {
+        return this.maxIdle;
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.embed;
+
+/**
+ * Statistics about the pool of instances of a component using the
+ * {@link org.xwiki.component.descriptor.ComponentInstantiationStrategy#POOLED} instantiation strategy.
+ * 
+ * @version $Id$
+ * @since 5.4M1
+ */
+public interface ComponentPoolStatistics
+{
+    /**
+     * @return the number of times an instance has been looked up
+     */
+    long getLookupCount();
+
+    /**
+     * @return the number of instances created because the pool was empty
+     */
+    long getCreatedCount();
+
+    /**
+     * @return the number of instances given back to the pool
+     */
+    long getReleasedCount();
+
+    /**
+     * @return the number of instances discarded because they were invalid or the pool was full
+     */
+    long getDiscardedCount();
+
+    /**
+     * @return the number of instances currently waiting in the pool
+     */
+    int getIdleCount();
+
+    /**
+     * @return the maximum number of instances kept in the pool
+     */
+    int getMaxIdle();
+}
@@ -0,0 +1,333 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.embed;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.net.URL;
+import java.security.CodeSource;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.xwiki.component.descriptor.ComponentDescriptor;
+import org.xwiki.component.manager.ComponentManagerProfiler;
+
+/**
+ * Records the time spent loading, creating and initializing components and the number of lookups of each role.
+ * Enabled by setting the {@value #ENABLED_PROPERTY} system property to {@code true} or with
+ * {@link EmbeddableComponentManager#setProfiler(ComponentProfiler)}.
+ * <p>
+ * The recorded events can be exported as a timeline in the Chrome Trace Event format (to be opened with
+ * {@code chrome://tracing}).
+ * 
+ * @version $Id$
+ * @since 5.4M1
+ */
+public class ComponentProfiler implements ComponentManagerProfiler
+{
+    /**
+     * The system property to set to {@code true} to profile the {@link EmbeddableComponentManager} instances.
+     */
+    public static final String ENABLED_PROPERTY = "xwiki.component.profiler";
+
+    /**
+     * The category of the events recorded when loading the component classes and their descriptors.
+     */
+    public static final String CATEGORY_LOAD = "load";
+
+    /**
+     * The category of the events recorded when creating a component instance (including the creation of its
+     * dependencies).
+     */
+    public static final String CATEGORY_CREATE = "create";
+
+    /**
+     * The category of the events recorded when calling the lifecycle handlers of a component instance (e.g.
+     * {@link org.xwiki.component.phase.Initializable#initialize()}).
+     */
+    public static final String CATEGORY_INITIALIZE = "initialize";
+
+    /**
+     * The maximum number of events kept for the trace, the following ones are only aggregated.
+     */
+    private static final int MAX_EVENTS = 100000;
+
+    /**
+     * The name used when the location of a class is not known.
+     */
+    private static final String UNKNOWN_LOCATION = "unknown";
+
+    private static final class TraceEvent
+    {
+        private final String name;
+
+        private final String category;
+
+        private final long start;
+
+        private final long duration;
+
+        private final long threadId;
+
+        private final String threadName;
+
+        TraceEvent(String name, String category, long start, long duration)
+        {
+            this.name = name;
+            this.category = category;
+            this.start = start;
+            this.duration = duration;
+            this.threadId = Thread.currentThread().getId();
+            this.threadName = Thread.currentThread().getName();
+        }
+    }
+
+    /**
+     * The time origin of the trace.
+     */
+    private volatile long origin = System.nanoTime();
+
+    private final ConcurrentMap<Type, AtomicLong> lookupCounts = new ConcurrentHashMap<Type, AtomicLong>();
+
+    private final ConcurrentMap<String, AtomicLong> initializationDurations =
+        new ConcurrentHashMap<String, AtomicLong>();
+
+    private final ConcurrentMap<String, AtomicLong> loadingDurations = new ConcurrentHashMap<String, AtomicLong>();
+
+    private final Queue<TraceEvent> events = new ConcurrentLinkedQueue<TraceEvent>();
+
+    private final AtomicInteger eventCount = new AtomicInteger();
+
+    /**
+     * @return the start time to pass to the other methods once the profiled operation is finished
+     */
+    public long start()
+    {
+        return System.nanoTime();
+    }
+
+    /**
+     * Count a lookup of the passed role.
+     * 
+     * @param role the role of the looked up component
+     */
+    public void lookup(Type role)
+    {
+        getCounter(this.lookupCounts, role).incrementAndGet();
+    }
+
+    /**
+     * @param componentClass the loaded component implementation class
+     * @param start the time at which the loading of the class and its descriptors started
+     */
+    public void loaded(Class< ? > componentClass, long start)
+    {
+        long duration = System.nanoTime() - start;
+
+        getCounter(this.loadingDurations, getLocation(componentClass)).addAndGet(duration);
+
+        addEvent(componentClass.getName(), CATEGORY_LOAD, start, duration);
+    }
+
+    /**
+     * @param descriptor the descriptor of the created component
+     * @param start the time at which the creation of the instance started
+     */
+    public void created(ComponentDescriptor< ? > descriptor, long start)
+    {
+        addEvent(descriptor.getImplementation().getName(), CATEGORY_CREATE, start, System.nanoTime() - start);
+    }
+
+    /**
+     * @param descriptor the descriptor of the initialized component
+     * @param start the time at which the initialization of the instance started
+     */
+    public void initialized(ComponentDescriptor< ? > descriptor, long start)
+    {
+        long duration = System.nanoTime() - start;
+
+        String name = descriptor.getImplementation().getName();
+        getCounter(this.initializationDurations, name).addAndGet(duration);
+
+        addEvent(name, CATEGORY_INITIALIZE, start, duration);
+    }
+
+    @Override
+    public Map<Type, Long> getLookupCounts()
+    {
+        return toMap(this.lookupCounts);
+    }
+
+    @Override
+    public Map<String, Long> getInitializationDurations()
+    {
+        return toMap(this.initializationDurations);
+    }
+
+    @Override
+    public Map<String, Long> getLoadingDurations()
+    {
+        return toMap(this.loadingDurations);
+    }
+
+    @Override
+    public void reset()
+    {
+        this.lookupCounts.clear();
+        this.initializationDurations.clear();
+        this.loadingDurations.clear();
+        this.events.clear();
+        this.eventCount.set(0);
+        this.origin = System.nanoTime();
+    }
+
+    @Override
+    public void writeTrace(Writer writer) throws IOException
+    {
+        long traceOrigin = this.origin;
+        Map<Long, String> threads = new HashMap<Long, String>();
+
+        writer.write("{\"traceEvents\":[");
+
+        boolean first = true;
+        for (TraceEvent event : this.events) {
+            if (!first) {
+                writer.write(',');
+            }
+            first = false;
+
+            writer.write("\n{\"name\":");
+            writeString(event.name, writer);
+            writer.write(",\"cat\":\"");
+            writer.write(event.category);
+            writer.write("\",\"ph\":\"X\",\"ts\":");
+            writer.write(String.valueOf(TimeUnit.NANOSECONDS.toMicros(event.start - traceOrigin)));
+            writer.write(",\"dur\":");
+            writer.write(String.valueOf(TimeUnit.NANOSECONDS.toMicros(event.duration)));
+            writer.write(",\"pid\":1,\"tid\":");
+            writer.write(String.valueOf(event.threadId));
+            writer.write('}');
+
+            threads.put(event.threadId, event.threadName);
+        }
+
+        // Name the threads
+        for (Map.Entry<Long, String> thread : threads.entrySet()) {
+            if (!first) {
+                writer.write(',');
+            }
+            first = false;
+
+            writer.write("\n{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":");
+            writer.write(String.valueOf(thread.getKey()));
+            writer.write(",\"args\":{\"name\":");
+            writeString(thread.getValue(), writer);
+            writer.write("}}");
+        }
+
+        writer.write("\n]}\n");
+        writer.flush();
+    }
+
+    /**
+     * Write the passed value as a JSON string.
+     * 
+     * @param value the value to write
+     * @param writer the writer where to write the value
+     * @throws IOException when failing to write the value
+     */
+    private void writeString(String value, Writer writer) throws IOException
+    {
+        writer.write('"');
+
+        for (int i = 0; i < value.length(); ++i) {
+            char c = value.charAt(i);
+
+            if (c == '"' || c == '\\') {
+                writer.write('\\');
+                writer.write(c);
+            } else if (c < ' ') {
+                // Control characters are not allowed in JSON strings
+                writer.write(String.format("\\u%04x", (int) c));
+            } else {
+                writer.write(c);
+            }
+        }
+
+        writer.write('"');
+    }
+
+    private void addEvent(String name, String category, long start, long duration)
+    {
+        if (this.eventCount.incrementAndGet() <= MAX_EVENTS) {
+            this.events.add(new TraceEvent(name, category, start, duration));
+        }
+    }
+
+    private <K> AtomicLong getCounter(ConcurrentMap<K, AtomicLong> counters, K key)
+    {
+        AtomicLong counter = counters.get(key);
+
+        if (counter == null) {
+            counter = new AtomicLong();
+            AtomicLong existingCounter = counters.putIfAbsent(key, counter);
+            if (existingCounter != null) {
+                counter = existingCounter;
+            }
+        }
+
+        return counter;
+    }
+
+    private <K> Map<K, Long> toMap(Map<K, AtomicLong> counters)
+    {
+        Map<K, Long> map = new HashMap<K, Long>();
+
+        for (Map.Entry<K, AtomicLong> entry : counters.entrySet()) {
+            map.put(entry.getKey(), entry.getValue().get());
+        }
+
+        return map;
+    }
+
+    /**
+     * @param componentClass the component class
+     * @return the location of the JAR (or directory) containing the passed class
+     */
+    private String getLocation(Class< ? > componentClass)
+    {
+        try {
+            CodeSource codeSource = componentClass.getProtectionDomain().getCodeSource();
+            URL location = codeSource != null ? codeSource.getLocation() : null;
+
+            return location != null ? location.toString() : UNKNOWN_LOCATION;
+        } catch (SecurityException e) {
+            return UNKNOWN_LOCATION;
+        }
+    }
+}
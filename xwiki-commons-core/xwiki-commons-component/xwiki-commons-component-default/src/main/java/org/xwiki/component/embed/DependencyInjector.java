@@ -0,0 +1,220 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.embed;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Provider;
+
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.LiveCollection;
+import org.xwiki.component.descriptor.ComponentDependency;
+import org.xwiki.component.descriptor.ComponentDescriptor;
+import org.xwiki.component.util.ReflectionUtils;
+
+/**
+ * Injection point of a component dependency resolved once for a given component descriptor and reused for each new
+ * instance of the component.
+ * 
+ * @version $Id$
+ * @since 5.4M1
+ */
+final class DependencyInjector
+{
+    /**
+     * The various ways to produce the value to inject.
+     */
+    enum Kind
+    {
+        /**
+         * A {@link Logger} created for the component class.
+         */
+        LOGGER,
+
+        /**
+         * The list of all the components implementing the generic role.
+         */
+        LIST,
+
+        /**
+         * The map of all the components implementing the generic role, indexed by hint.
+         */
+        MAP,
+
+        /**
+         * A read only list always up to date with the components implementing the generic role.
+         */
+        LIVE_LIST,
+
+        /**
+         * A read only map always up to date with the components implementing the generic role, indexed by hint.
+         */
+        LIVE_MAP,
+
+        /**
+         * A {@link Provider} registered for the dependency or a {@link GenericProvider}.
+         */
+        PROVIDER,
+
+        /**
+         * A standard component lookup.
+         */
+        COMPONENT
+    }
+
+    /**
+     * @see #getDependency()
+     */
+    private final ComponentDependency< ? > dependency;
+
+    /**
+     * @see #getKind()
+     */
+    private final Kind kind;
+
+    /**
+     * @see #getGenericRoleType()
+     */
+    private final Type genericRoleType;
+
+    /**
+     * The field to set or {@code null} if the component implementation does not have any matching field.
+     */
+    private final Field field;
+
+    /**
+     * @param dependency the dependency to inject
+     * @param implementation the component implementation class
+     */
+    private DependencyInjector(ComponentDependency< ? > dependency, Class< ? > implementation)
+    {
+        this.dependency = dependency;
+        this.field = findField(implementation, dependency.getName());
+
+        Class< ? > dependencyRoleClass = ReflectionUtils.getTypeClass(dependency.getRoleType());
+        boolean live = this.field != null && this.field.isAnnotationPresent(LiveCollection.class);
+
+        if (dependencyRoleClass.isAssignableFrom(Logger.class)) {
+            this.kind = Kind.LOGGER;
+        } else if (dependencyRoleClass.isAssignableFrom(List.class)) {
+            this.kind = live ? Kind.LIVE_LIST : Kind.LIST;
+        } else if (dependencyRoleClass.isAssignableFrom(Map.class)) {
+            this.kind = live ? Kind.LIVE_MAP : Kind.MAP;
+        } else if (dependencyRoleClass.isAssignableFrom(Provider.class)) {
+            this.kind = Kind.PROVIDER;
+        } else {
+            this.kind = Kind.COMPONENT;
+        }
+
+        this.genericRoleType =
+            this.kind != Kind.COMPONENT ? ReflectionUtils.getLastTypeGenericArgument(dependency.getRoleType()) : null;
+    }
+
+    /**
+     * @param descriptor the component descriptor
+     * @return the injectors to use for each dependency of the passed component
+     */
+    static DependencyInjector[] createInjectors(ComponentDescriptor< ? > descriptor)
+    {
+        DependencyInjector[] injectors = new DependencyInjector[descriptor.getComponentDependencies().size()];
+
+        int index = 0;
+        for (ComponentDependency< ? > dependency : descriptor.getComponentDependencies()) {
+            injectors[index++] = new DependencyInjector(dependency, descriptor.getImplementation());
+        }
+
+        return injectors;
+    }
+
+    /**
+     * Same matching rules as {@link ReflectionUtils#setFieldValue(Object, String, Object)}.
+     * 
+     * @param implementation the class containing the field
+     * @param fieldName the name of the field
+     * @return the field, or {@code null} if none could be found
+     */
+    private static Field findField(Class< ? > implementation, String fieldName)
+    {
+        Class< ? > targetClass = implementation;
+        while (targetClass != null) {
+            for (Field targetField : targetClass.getDeclaredFields()) {
+                if (targetField.getName().equalsIgnoreCase(fieldName)) {
+                    try {
+                        targetField.setAccessible(true);
+                    } catch (SecurityException e) {
+                        // This shouldn't happen but if it does then the Component manager will not function properly
+                        // and we need to abort.
+                        throw new RuntimeException("Failed to access field [" + fieldName + "] in class ["
+                            + implementation.getName() + "]. The Java Security Manager has probably been configured"
+                            + " to prevent settting private field values. XWiki requires this ability to work.", e);
+                    }
+
+                    return targetField;
+                }
+            }
+            targetClass = targetClass.getSuperclass();
+        }
+
+        return null;
+    }
+
+    /**
+     * @return the dependency to inject
+     */
+    ComponentDependency< ? > getDependency()
+    {
+        return this.dependency;
+    }
+
+    /**
+     * @return the way to produce the value to inject
+     */
+    Kind getKind()
+    {
+        return this.kind;
+    }
+
+    /**
+     * @return the last generic argument of the dependency role type (for lists, maps and providers)
+     */
+    Type getGenericRoleType()
+    {
+        return this.genericRoleType;
+    }
+
+    /**
+     * @param instance the component instance
+     * @param value the value to inject
+     */
+    void inject(Object instance, Object value)
+    {
+        if (this.field != null) {
+            try {
+                this.field.set(instance, value);
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException("Failed to set field [" + this.field.getName() + "] in instance of ["
+                    + instance.getClass().getName() + "]", e);
+            }
+        }
+    }
+}
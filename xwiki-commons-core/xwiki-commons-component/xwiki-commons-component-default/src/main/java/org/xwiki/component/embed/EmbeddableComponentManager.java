@@ -20,15 +20,30 @@
 package org.xwiki.component.embed;
 
 import java.lang.reflect.Type;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
-
-import javax.inject.Provider;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.commons.lang3.ObjectUtils;
 import org.slf4j.Logger;
@@ -44,6 +59,7 @@
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
 import org.xwiki.component.manager.ComponentManagerInitializer;
+import org.xwiki.component.manager.ComponentManagerProfiler;
 import org.xwiki.component.manager.ComponentRepositoryException;
 import org.xwiki.component.phase.Disposable;
 import org.xwiki.component.util.ReflectionUtils;
@@ -56,8 +72,30 @@
  */
 public class EmbeddableComponentManager implements ComponentManager, Disposable
 {
+    /**
+     * The hint used when none is provided.
+     */
+    private static final String DEFAULT_HINT = "default";
+
+    /**
+     * The message logged when a component cannot be created by {@link #initializeSingletons(int)}.
+     */
+    private static final String INITIALIZATION_FAILURE = "Failed to initialize component [{}] in advance";
+
+    /**
+     * The default maximum number of instances kept in the pool of each pooled component.
+     */
+    private static final int DEFAULT_POOL_MAX_IDLE = 16;
+
     private ComponentEventManager eventManager;
 
+    private int poolMaxIdle = DEFAULT_POOL_MAX_IDLE;
+
+    /**
+     * Records the components creation timings and lookups, {@code null} when not profiling.
+     */
+    private volatile ComponentProfiler profiler;
+
     /**
      * Used as fallback for lookup methods.
      */
@@ -78,15 +116,260 @@ public class EmbeddableComponentManager implements ComponentManager, Disposable
          */
         public volatile R instance;
 
-        public ComponentEntry(ComponentDescriptor<R> descriptor, R instance)
+        /**
+         * The resolved injection points of the component dependencies. Lazily initialized on first instantiation.
+         */
+        public volatile DependencyInjector[] injectors;
+
+        /**
+         * The singleton instance creation in progress (or done). Threads looking up the component while it's being
+         * created wait for this future instead of blocking on a monitor.
+         */
+        public final AtomicReference<FutureTask<R>> creation = new AtomicReference<FutureTask<R>>();
+
+        /**
+         * The instances of the component, {@code null} if the component is not pooled.
+         */
+        public final ComponentPool<R> pool;
+
+        public ComponentEntry(ComponentDescriptor<R> descriptor, R instance, ComponentPool<R> pool)
         {
             this.descriptor = descriptor;
             this.instance = instance;
+            this.pool = pool;
+        }
+    }
+
+    /**
+     * A component which is not a singleton, looked up each time it's accessed through a live collection.
+     */
+    private static final class LookupInstance
+    {
+        private final ComponentManager componentManager;
+
+        private final Type role;
+
+        private final String hint;
+
+        LookupInstance(ComponentManager componentManager, Type role, String hint)
+        {
+            this.componentManager = componentManager;
+            this.role = role;
+            this.hint = hint;
+        }
+
+        Object get()
+        {
+            try {
+                return this.componentManager.getInstance(this.role, this.hint);
+            } catch (ComponentLookupException e) {
+                throw new IllegalStateException("Failed to lookup component ["
+                    + new RoleHint<Object>(this.role, this.hint) + "]", e);
+            }
+        }
+    }
+
+    /**
+     * Immutable snapshot of the components of a role, including the ones coming from the parent Component Manager.
+     * Singletons are stored directly, the other components as {@link LookupInstance}s.
+     * 
+     * @param <R> the role type
+     */
+    private static class RoleInstances<R>
+    {
+        /**
+         * The version of the role at the time the snapshot was built.
+         */
+        public final long version;
+
+        /**
+         * The parent Component Manager instances used to build this snapshot, {@code null} if there was no parent or
+         * if the parent is not an {@link EmbeddableComponentManager}.
+         */
+        public final RoleInstances<R> parentInstances;
+
+        public final Map<String, Object> map;
+
+        public final List<Object> list;
+
+        public RoleInstances(long version, RoleInstances<R> parentInstances, Map<String, Object> map)
+        {
+            this.version = version;
+            this.parentInstances = parentInstances;
+            this.map = Collections.unmodifiableMap(map);
+            this.list = Collections.unmodifiableList(new ArrayList<Object>(map.values()));
+        }
+
+        @SuppressWarnings("unchecked")
+        static <R> R resolve(Object value)
+        {
+            return (R) (value instanceof LookupInstance ? ((LookupInstance) value).get() : value);
+        }
+    }
+
+    /**
+     * Read only {@link List} of the instances of a role, always up to date with the registered components.
+     * 
+     * @param <R> the role type
+     */
+    private class LiveInstanceList<R> extends AbstractList<R>
+    {
+        private final Type role;
+
+        public LiveInstanceList(Type role)
+        {
+            this.role = role;
+        }
+
+        @Override
+        public R get(int index)
+        {
+            return RoleInstances.resolve(getRoleInstances(this.role).list.get(index));
+        }
+
+        @Override
+        public int size()
+        {
+            return getRoleInstances(this.role).list.size();
+        }
+
+        @Override
+        public Iterator<R> iterator()
+        {
+            // Iterate on a consistent snapshot
+            final Iterator<Object> iterator = getRoleInstances(this.role).list.iterator();
+
+            return new Iterator<R>()
+            {
+                @Override
+                public boolean hasNext()
+                {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public R next()
+                {
+                    return RoleInstances.resolve(iterator.next());
+                }
+
+                @Override
+                public void remove()
+                {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+
+    /**
+     * Read only {@link Map} of the instances of a role indexed by hint, always up to date with the registered
+     * components.
+     * 
+     * @param <R> the role type
+     */
+    private class LiveInstanceMap<R> extends AbstractMap<String, R>
+    {
+        private final Type role;
+
+        public LiveInstanceMap(Type role)
+        {
+            this.role = role;
+        }
+
+        @Override
+        public R get(Object key)
+        {
+            return RoleInstances.resolve(getRoleInstances(this.role).map.get(key));
+        }
+
+        @Override
+        public boolean containsKey(Object key)
+        {
+            return getRoleInstances(this.role).map.containsKey(key);
+        }
+
+        @Override
+        public int size()
+        {
+            return getRoleInstances(this.role).map.size();
+        }
+
+        @Override
+        public Set<Map.Entry<String, R>> entrySet()
+        {
+            // Iterate on a consistent snapshot
+            final Set<Map.Entry<String, Object>> entries = getRoleInstances(this.role).map.entrySet();
+
+            return new AbstractSet<Map.Entry<String, R>>()
+            {
+                @Override
+                public Iterator<Map.Entry<String, R>> iterator()
+                {
+                    final Iterator<Map.Entry<String, Object>> iterator = entries.iterator();
+
+                    return new Iterator<Map.Entry<String, R>>()
+                    {
+                        @Override
+                        public boolean hasNext()
+                        {
+                            return iterator.hasNext();
+                        }
+
+                        @Override
+                        public Map.Entry<String, R> next()
+                        {
+                            Map.Entry<String, Object> entry = iterator.next();
+
+                            return new AbstractMap.SimpleImmutableEntry<String, R>(entry.getKey(),
+                                RoleInstances.<R> resolve(entry.getValue()));
+                        }
+
+                        @Override
+                        public void remove()
+                        {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                }
+
+                @Override
+                public int size()
+                {
+                    return entries.size();
+                }
+            };
         }
     }
 
-    private Map<RoleHint< ? >, ComponentEntry< ? >> componentEntries =
-        new ConcurrentHashMap<RoleHint< ? >, ComponentEntry< ? >>();
+    /**
+     * The registered components indexed by role type and then by role hint. Indexing by role type first allows listing
+     * the implementations of a role without going through all the registered components.
+     */
+    private ConcurrentMap<Type, Map<String, ComponentEntry< ? >>> componentEntries =
+        new ConcurrentHashMap<Type, Map<String, ComponentEntry< ? >>>();
+
+    /**
+     * Version of the registered components of each role, incremented each time a component of the role is registered
+     * or unregistered so that the cached instances of the role can be rebuilt.
+     */
+    private final ConcurrentMap<Type, AtomicLong> roleVersions = new ConcurrentHashMap<Type, AtomicLong>();
+
+    /**
+     * The instances of each role, shared by the live {@link List} and {@link Map} injected in component fields.
+     */
+    private final ConcurrentMap<Type, RoleInstances< ? >> roleInstances =
+        new ConcurrentHashMap<Type, RoleInstances< ? >>();
+
+    /**
+     * The pooled instances returned by this Component Manager and not released yet.
+     */
+    private final BorrowedInstances borrowedInstances = new BorrowedInstances();
+
+    /**
+     * The components currently being created by the current thread, used to detect dependency cycles.
+     */
+    private final ThreadLocal<List<ComponentEntry< ? >>> creationChain = new ThreadLocal<List<ComponentEntry< ? >>>();
 
     private Logger logger = LoggerFactory.getLogger(EmbeddableComponentManager.class);
 
@@ -98,6 +381,10 @@ public ComponentEntry(ComponentDescriptor<R> descriptor, R instance)
     public EmbeddableComponentManager()
     {
         registerThis();
+
+        if (Boolean.getBoolean(ComponentProfiler.ENABLED_PROPERTY)) {
+            registerProfiler(new ComponentProfiler());
+        }
     }
 
     /**
@@ -133,6 +420,235 @@ public void initialize(ClassLoader classLoader)
         }
     }
 
+    /**
+     * Create all the singleton components registered in this component manager (the parent is not taken into account)
+     * instead of waiting for them to be looked up the first time. The components which don't depend on each other are
+     * created in parallel and the dependencies of a component are always created before it. The components which are
+     * part of a dependency cycle (or depend on one) are reported and left to be created on first lookup.
+     * 
+     * @param threads the maximum number of threads to use to create the components
+     * @throws InterruptedException if the current thread is interrupted while waiting for the components creation
+     * @since 5.4M1
+     */
+    public void initializeSingletons(int threads) throws InterruptedException
+    {
+        // Build the dependency graph of the components which still need to be created
+        Map<ComponentEntry< ? >, List<ComponentEntry< ? >>> dependents =
+            new HashMap<ComponentEntry< ? >, List<ComponentEntry< ? >>>();
+        for (Map<String, ComponentEntry< ? >> entries : this.componentEntries.values()) {
+            for (ComponentEntry< ? > entry : entries.values()) {
+                if (entry.instance == null && entry.descriptor.getImplementation() != null) {
+                    dependents.put(entry, new ArrayList<ComponentEntry< ? >>());
+                }
+            }
+        }
+        Map<ComponentEntry< ? >, Set<ComponentEntry< ? >>> dependencyEntries = getDependencyEntries(dependents);
+        Map<ComponentEntry< ? >, AtomicInteger> remainingDependencies =
+            new HashMap<ComponentEntry< ? >, AtomicInteger>();
+        for (Map.Entry<ComponentEntry< ? >, Set<ComponentEntry< ? >>> entry : dependencyEntries.entrySet()) {
+            Set<ComponentEntry< ? >> dependencies = entry.getValue();
+            dependencies.retainAll(dependents.keySet());
+            for (ComponentEntry< ? > dependency : dependencies) {
+                dependents.get(dependency).add(entry.getKey());
+            }
+            remainingDependencies.put(entry.getKey(), new AtomicInteger(dependencies.size()));
+        }
+
+        // Exclude the components which are part of a dependency cycle (or depend on one)
+        List<ComponentEntry< ? >> sortedEntries = sortEntries(dependents, remainingDependencies);
+        if (sortedEntries.size() < dependents.size()) {
+            Set<ComponentEntry< ? >> sortedEntriesSet = new HashSet<ComponentEntry< ? >>(sortedEntries);
+            List<RoleHint< ? >> cycleComponents = new ArrayList<RoleHint< ? >>();
+            for (ComponentEntry< ? > entry : dependents.keySet()) {
+                if (!sortedEntriesSet.contains(entry)) {
+                    cycleComponents.add(getRoleHint(entry.descriptor));
+                }
+            }
+            this.logger.warn("The following components are part of a dependency cycle or depend on one and won't be"
+                + " initialized in advance: {}", cycleComponents);
+        }
+
+        // Create the components in parallel as soon as all their dependencies have been created
+        SingletonsInitializer initializer =
+            new SingletonsInitializer(threads, sortedEntries.size(), dependents, remainingDependencies);
+        try {
+            for (ComponentEntry< ? > entry : sortedEntries) {
+                if (remainingDependencies.get(entry).get() == 0) {
+                    initializer.initialize(entry);
+                }
+            }
+
+            initializer.waitForCompletion();
+        } finally {
+            initializer.shutdown();
+        }
+    }
+
+    /**
+     * @param dependents the components depending on each component
+     * @param remainingDependencies the number of dependencies of each component
+     * @return the components in dependency order, without the ones which are part of (or depend on) a cycle
+     */
+    private List<ComponentEntry< ? >> sortEntries(Map<ComponentEntry< ? >, List<ComponentEntry< ? >>> dependents,
+        Map<ComponentEntry< ? >, AtomicInteger> remainingDependencies)
+    {
+        Map<ComponentEntry< ? >, Integer> counters = new HashMap<ComponentEntry< ? >, Integer>();
+        List<ComponentEntry< ? >> sortedEntries = new ArrayList<ComponentEntry< ? >>(dependents.size());
+        for (Map.Entry<ComponentEntry< ? >, AtomicInteger> entry : remainingDependencies.entrySet()) {
+            counters.put(entry.getKey(), entry.getValue().get());
+            if (entry.getValue().get() == 0) {
+                sortedEntries.add(entry.getKey());
+            }
+        }
+
+        for (int i = 0; i < sortedEntries.size(); ++i) {
+            for (ComponentEntry< ? > dependent : dependents.get(sortedEntries.get(i))) {
+                int counter = counters.get(dependent) - 1;
+                counters.put(dependent, counter);
+                if (counter == 0) {
+                    sortedEntries.add(dependent);
+                }
+            }
+        }
+
+        return sortedEntries;
+    }
+
+    /**
+     * @param dependents the components to create, the ones whose dependencies cannot be resolved are removed and
+     *            logged like the components which fail to be created
+     * @return the entries of this component manager each component will lookup during its creation
+     */
+    private Map<ComponentEntry< ? >, Set<ComponentEntry< ? >>> getDependencyEntries(
+        Map<ComponentEntry< ? >, List<ComponentEntry< ? >>> dependents)
+    {
+        Map<ComponentEntry< ? >, Set<ComponentEntry< ? >>> dependencyEntries =
+            new HashMap<ComponentEntry< ? >, Set<ComponentEntry< ? >>>();
+
+        for (Iterator<ComponentEntry< ? >> it = dependents.keySet().iterator(); it.hasNext();) {
+            ComponentEntry< ? > entry = it.next();
+            try {
+                dependencyEntries.put(entry, getDependencyEntries(entry));
+            } catch (Exception e) {
+                this.logger.warn(INITIALIZATION_FAILURE, getRoleHint(entry.descriptor), e);
+                it.remove();
+            }
+        }
+
+        return dependencyEntries;
+    }
+
+    /**
+     * @param componentEntry the component entry
+     * @return the entries of this component manager the passed component will lookup during its creation
+     */
+    private Set<ComponentEntry< ? >> getDependencyEntries(ComponentEntry< ? > componentEntry)
+    {
+        Set<ComponentEntry< ? >> dependencies = new HashSet<ComponentEntry< ? >>();
+
+        for (DependencyInjector injector : getInjectors(componentEntry)) {
+            ComponentDependency< ? > dependency = injector.getDependency();
+
+            switch (injector.getKind()) {
+                case COMPONENT:
+                    ComponentEntry< ? > dependencyEntry =
+                        getComponentEntry(dependency.getRoleType(), dependency.getRoleHint());
+                    if (dependencyEntry != null) {
+                        dependencies.add(dependencyEntry);
+                    }
+                    break;
+                case LIST:
+                case MAP:
+                    Map<String, ComponentEntry< ? >> entries =
+                        this.componentEntries.get(injector.getGenericRoleType());
+                    if (entries != null) {
+                        dependencies.addAll(entries.values());
+                    }
+                    break;
+                default:
+                    // Loggers don't have dependencies and providers are resolved lazily
+                    break;
+            }
+        }
+
+        return dependencies;
+    }
+
+    /**
+     * Create the singleton components on a thread pool as soon as all their dependencies have been created.
+     */
+    private final class SingletonsInitializer
+    {
+        private final ExecutorService executor;
+
+        private final CountDownLatch latch;
+
+        private final Map<ComponentEntry< ? >, List<ComponentEntry< ? >>> dependents;
+
+        private final Map<ComponentEntry< ? >, AtomicInteger> remainingDependencies;
+
+        SingletonsInitializer(int threads, int size, Map<ComponentEntry< ? >, List<ComponentEntry< ? >>> dependents,
+            Map<ComponentEntry< ? >, AtomicInteger> remainingDependencies)
+        {
+            this.executor = Executors.newFixedThreadPool(Math.max(threads, 1), new ThreadFactory()
+            {
+                private final AtomicInteger counter = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable)
+                {
+                    Thread thread = new Thread(runnable);
+                    thread.setDaemon(true);
+                    thread.setName("Component initialization " + this.counter.incrementAndGet());
+
+                    return thread;
+                }
+            });
+            this.latch = new CountDownLatch(size);
+            this.dependents = dependents;
+            this.remainingDependencies = remainingDependencies;
+        }
+
+        void initialize(final ComponentEntry< ? > componentEntry)
+        {
+            this.executor.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try {
+                        // Per lookup components are only part of the graph to respect their own dependencies
+                        if (componentEntry.descriptor.getInstantiationStrategy()
+                            == ComponentInstantiationStrategy.SINGLETON) {
+                            getComponentInstance(componentEntry);
+                        }
+                    } catch (Throwable e) {
+                        logger.warn(INITIALIZATION_FAILURE, getRoleHint(componentEntry.descriptor), e);
+                    } finally {
+                        // Start the components which were only waiting for this one
+                        for (ComponentEntry< ? > dependent : dependents.get(componentEntry)) {
+                            if (remainingDependencies.get(dependent).decrementAndGet() == 0) {
+                                initialize(dependent);
+                            }
+                        }
+
+                        latch.countDown();
+                    }
+                }
+            });
+        }
+
+        void waitForCompletion() throws InterruptedException
+        {
+            this.latch.await();
+        }
+
+        void shutdown()
+        {
+            this.executor.shutdownNow();
+        }
+    }
+
     @Override
     public boolean hasComponent(Type role)
     {
@@ -142,7 +658,7 @@ public boolean hasComponent(Type role)
     @Override
     public boolean hasComponent(Type role, String hint)
     {
-        if (this.componentEntries.containsKey(new RoleHint<Object>(role, hint))) {
+        if (getComponentEntry(role, hint) != null) {
             return true;
         }
 
@@ -152,13 +668,13 @@ public boolean hasComponent(Type role, String hint)
     @Override
     public <T> T getInstance(Type roleType) throws ComponentLookupException
     {
-        return getComponentInstance(new RoleHint<T>(roleType));
+        return getComponentInstance(roleType, null);
     }
 
     @Override
     public <T> T getInstance(Type roleType, String roleHint) throws ComponentLookupException
     {
-        return getComponentInstance(new RoleHint<T>(roleType, roleHint));
+        return getComponentInstance(roleType, roleHint);
     }
 
     @Override
@@ -177,14 +693,14 @@ public <T> Map<String, T> getInstanceMap(Type role) throws ComponentLookupExcept
     {
         Map<String, T> objects = new HashMap<String, T>();
 
-        for (Map.Entry<RoleHint< ? >, ComponentEntry< ? >> entry : this.componentEntries.entrySet()) {
-            RoleHint< ? > roleHint = entry.getKey();
-
-            if (role.equals(roleHint.getRoleType())) {
+        Map<String, ComponentEntry< ? >> entries = this.componentEntries.get(role);
+        if (entries != null) {
+            for (Map.Entry<String, ComponentEntry< ? >> entry : entries.entrySet()) {
                 try {
-                    objects.put(roleHint.getHint(), getComponentInstance((ComponentEntry<T>) entry.getValue()));
+                    objects.put(entry.getKey(), getComponentInstance((ComponentEntry<T>) entry.getValue()));
                 } catch (Exception e) {
-                    throw new ComponentLookupException("Failed to lookup component [" + roleHint + "]", e);
+                    throw new ComponentLookupException("Failed to lookup component ["
+                        + new RoleHint<T>(role, entry.getKey()) + "]", e);
                 }
             }
         }
@@ -207,7 +723,7 @@ public <T> Map<String, T> getInstanceMap(Type role) throws ComponentLookupExcept
     public <T> ComponentDescriptor<T> getComponentDescriptor(Type role, String hint)
     {
         ComponentDescriptor<T> result = null;
-        ComponentEntry<T> componentEntry = (ComponentEntry<T>) this.componentEntries.get(new RoleHint<T>(role, hint));
+        ComponentEntry<T> componentEntry = (ComponentEntry<T>) getComponentEntry(role, hint);
         if (componentEntry == null) {
             // Check in parent!
             if (getParent() != null) {
@@ -226,9 +742,10 @@ public <T> List<ComponentDescriptor<T>> getComponentDescriptorList(Type role)
     {
         Map<String, ComponentDescriptor<T>> descriptors = new HashMap<String, ComponentDescriptor<T>>();
 
-        for (Map.Entry<RoleHint< ? >, ComponentEntry< ? >> entry : this.componentEntries.entrySet()) {
-            if (entry.getKey().getRoleType().equals(role)) {
-                descriptors.put(entry.getKey().getHint(), (ComponentDescriptor<T>) entry.getValue().descriptor);
+        Map<String, ComponentEntry< ? >> entries = this.componentEntries.get(role);
+        if (entries != null) {
+            for (Map.Entry<String, ComponentEntry< ? >> entry : entries.entrySet()) {
+                descriptors.put(entry.getKey(), (ComponentDescriptor<T>) entry.getValue().descriptor);
             }
         }
 
@@ -246,6 +763,74 @@ public <T> List<ComponentDescriptor<T>> getComponentDescriptorList(Type role)
         return new ArrayList<ComponentDescriptor<T>>(descriptors.values());
     }
 
+    /**
+     * @param role the role of the component
+     * @param hint the hint of the component
+     * @return the statistics of the pool of instances of the component or {@code null} if the component is not pooled
+     *         or not registered in this Component Manager
+     * @since 5.4M1
+     */
+    public ComponentPoolStatistics getComponentPoolStatistics(Type role, String hint)
+    {
+        ComponentEntry< ? > entry = getComponentEntry(role, hint);
+
+        return entry != null ? entry.pool : null;
+    }
+
+    /**
+     * @param poolMaxIdle the maximum number of instances kept in the pool of each pooled component registered after
+     *            this call, must be greater than 0
+     * @since 5.4M1
+     */
+    public void setComponentPoolMaxIdle(int poolMaxIdle)
+    {
+        if (poolMaxIdle < 1) {
+            throw new IllegalArgumentException("The maximum number of pooled instances must be greater than 0, got ["
+                + poolMaxIdle + "]");
+        }
+
+        this.poolMaxIdle = poolMaxIdle;
+    }
+
+    /**
+     * @return the profiler recording the components creation timings and lookups, {@code null} when not profiling
+     * @since 5.4M1
+     */
+    public ComponentProfiler getProfiler()
+    {
+        return this.profiler;
+    }
+
+    /**
+     * @param profiler the profiler recording the components creation timings and lookups, {@code null} to stop
+     *            profiling
+     * @since 5.4M1
+     */
+    public void setProfiler(ComponentProfiler profiler)
+    {
+        registerProfiler(profiler);
+    }
+
+    /**
+     * Use the passed profiler and make it available as {@link ComponentManagerProfiler} component.
+     * 
+     * @param newProfiler the profiler to use, {@code null} to stop profiling
+     */
+    private void registerProfiler(ComponentProfiler newProfiler)
+    {
+        this.profiler = newProfiler;
+
+        if (newProfiler != null) {
+            DefaultComponentDescriptor<ComponentManagerProfiler> cd =
+                new DefaultComponentDescriptor<ComponentManagerProfiler>();
+            cd.setRoleType(ComponentManagerProfiler.class);
+
+            registerComponent(cd, newProfiler);
+        } else {
+            unregisterComponent(ComponentManagerProfiler.class, null);
+        }
+    }
+
     @Override
     public ComponentEventManager getComponentEventManager()
     {
@@ -270,14 +855,41 @@ public void setParent(ComponentManager parentComponentManager)
         this.parent = parentComponentManager;
     }
 
-    private <T> T createInstance(ComponentDescriptor<T> descriptor) throws Exception
+    private <T> T createInstance(ComponentEntry<T> componentEntry) throws Exception
+    {
+        checkCreationCycle(componentEntry);
+
+        List<ComponentEntry< ? >> chain = this.creationChain.get();
+        if (chain == null) {
+            chain = new ArrayList<ComponentEntry< ? >>();
+            this.creationChain.set(chain);
+        }
+
+        ComponentProfiler currentProfiler = this.profiler;
+        long start = currentProfiler != null ? currentProfiler.start() : 0;
+
+        chain.add(componentEntry);
+        try {
+            return createInstance(componentEntry.descriptor, getInjectors(componentEntry));
+        } finally {
+            if (currentProfiler != null) {
+                currentProfiler.created(componentEntry.descriptor, start);
+            }
+
+            chain.remove(chain.size() - 1);
+            if (chain.isEmpty()) {
+                this.creationChain.remove();
+            }
+        }
+    }
+
+    private <T> T createInstance(ComponentDescriptor<T> descriptor, DependencyInjector[] injectors) throws Exception
     {
         T instance = descriptor.getImplementation().newInstance();
 
         // Set each dependency
-        for (ComponentDependency< ? > dependency : descriptor.getComponentDependencies()) {
-
-            // TODO: Handle dependency cycles
+        for (DependencyInjector injector : injectors) {
+            ComponentDependency< ? > dependency = injector.getDependency();
 
             // Handle different field types
             Object fieldValue;
@@ -291,42 +903,170 @@ private <T> T createInstance(ComponentDescriptor<T> descriptor) throws Exception
             // Step 3: No producer found, handle scalar and collection types by looking up standard component
             // implementations.
 
-            Class< ? > dependencyRoleClass = ReflectionUtils.getTypeClass(dependency.getRoleType());
-
-            if (dependencyRoleClass.isAssignableFrom(Logger.class)) {
-                fieldValue = createLogger(instance.getClass());
-            } else if (dependencyRoleClass.isAssignableFrom(List.class)) {
-                fieldValue = getInstanceList(ReflectionUtils.getLastTypeGenericArgument(dependency.getRoleType()));
-            } else if (dependencyRoleClass.isAssignableFrom(Map.class)) {
-                fieldValue = getInstanceMap(ReflectionUtils.getLastTypeGenericArgument(dependency.getRoleType()));
-            } else if (dependencyRoleClass.isAssignableFrom(Provider.class)) {
-                // Check if there's a Provider registered for the type
-                if (hasComponent(dependency.getRoleType(), dependency.getRoleHint())) {
+            switch (injector.getKind()) {
+                case LOGGER:
+                    fieldValue = createLogger(instance.getClass());
+                    break;
+                case LIST:
+                    fieldValue = getInstanceList(injector.getGenericRoleType());
+                    break;
+                case MAP:
+                    fieldValue = getInstanceMap(injector.getGenericRoleType());
+                    break;
+                case LIVE_LIST:
+                    fieldValue = new LiveInstanceList<Object>(injector.getGenericRoleType());
+                    break;
+                case LIVE_MAP:
+                    fieldValue = new LiveInstanceMap<Object>(injector.getGenericRoleType());
+                    break;
+                case PROVIDER:
+                    // Check if there's a Provider registered for the type
+                    if (hasComponent(dependency.getRoleType(), dependency.getRoleHint())) {
+                        fieldValue = getInstance(dependency.getRoleType(), dependency.getRoleHint());
+                    } else {
+                        fieldValue =
+                            new GenericProvider<Object>(this, new RoleHint<Object>(injector.getGenericRoleType(),
+                                dependency.getRoleHint()));
+                    }
+                    break;
+                default:
                     fieldValue = getInstance(dependency.getRoleType(), dependency.getRoleHint());
-                } else {
-                    fieldValue =
-                        new GenericProvider<Object>(this, new RoleHint<Object>(
-                            ReflectionUtils.getLastTypeGenericArgument(dependency.getRoleType()),
-                            dependency.getRoleHint()));
-                }
-            } else {
-                fieldValue = getInstance(dependency.getRoleType(), dependency.getRoleHint());
+                    break;
             }
 
-            // Set the field by introspection
+            // Set the field
             if (fieldValue != null) {
-                ReflectionUtils.setFieldValue(instance, dependency.getName(), fieldValue);
+                injector.inject(instance, fieldValue);
             }
         }
 
         // Call Lifecycle Handlers
+        ComponentProfiler currentProfiler = this.profiler;
+        long start = currentProfiler != null ? currentProfiler.start() : 0;
         for (LifecycleHandler lifecycleHandler : this.lifecycleHandlers) {
             lifecycleHandler.handle(instance, descriptor, this);
         }
+        if (currentProfiler != null) {
+            currentProfiler.initialized(descriptor, start);
+        }
 
         return instance;
     }
 
+    /**
+     * Return the components of the passed role, reusing the last snapshot as long as no component of the role has
+     * been registered or unregistered since it was built, in this Component Manager or its parent.
+     * <p>
+     * Pooled components are left out since nothing would give back to the pool the instances borrowed through the
+     * snapshot. A singleton which cannot be looked up makes the build fail with an {@link IllegalStateException} so
+     * that it's retried on the next access instead of being cached as missing.
+     * <p>
+     * When the parent is not an {@link EmbeddableComponentManager} its components are only updated after a change of
+     * the role in this Component Manager since it's not possible to know when they change.
+     * 
+     * @param role the role type
+     * @return the current components of the role
+     */
+    @SuppressWarnings("unchecked")
+    private <T> RoleInstances<T> getRoleInstances(Type role)
+    {
+        long version = getRoleVersion(role).get();
+
+        ComponentManager parentComponentManager = getParent();
+        RoleInstances<T> parentInstances = null;
+        if (parentComponentManager instanceof EmbeddableComponentManager) {
+            parentInstances = ((EmbeddableComponentManager) parentComponentManager).getRoleInstances(role);
+        }
+
+        RoleInstances<T> instances = (RoleInstances<T>) this.roleInstances.get(role);
+        if (instances != null && instances.version == version && instances.parentInstances == parentInstances) {
+            return instances;
+        }
+
+        Map<String, Object> objects = new HashMap<String, Object>();
+
+        Map<String, ComponentEntry< ? >> entries = this.componentEntries.get(role);
+        if (entries != null) {
+            for (Map.Entry<String, ComponentEntry< ? >> entry : entries.entrySet()) {
+                addRoleInstance(objects, this, role, entry.getValue().descriptor, entry.getKey());
+            }
+        }
+
+        // Add parent's components which are not overridden by this Component Manager
+        if (parentInstances != null) {
+            for (Map.Entry<String, Object> entry : parentInstances.map.entrySet()) {
+                if (!objects.containsKey(entry.getKey())) {
+                    objects.put(entry.getKey(), entry.getValue());
+                }
+            }
+        } else if (parentComponentManager != null) {
+            for (ComponentDescriptor<T> descriptor : parentComponentManager.<T> getComponentDescriptorList(role)) {
+                if (!objects.containsKey(descriptor.getRoleHint())) {
+                    addRoleInstance(objects, parentComponentManager, role, descriptor, descriptor.getRoleHint());
+                }
+            }
+        }
+
+        instances = new RoleInstances<T>(version, parentInstances, objects);
+
+        this.roleInstances.put(role, instances);
+
+        return instances;
+    }
+
+    private void addRoleInstance(Map<String, Object> objects, ComponentManager componentManager, Type role,
+        ComponentDescriptor< ? > descriptor, String hint)
+    {
+        ComponentInstantiationStrategy strategy = descriptor.getInstantiationStrategy();
+        if (strategy == ComponentInstantiationStrategy.SINGLETON) {
+            objects.put(hint, new LookupInstance(componentManager, role, hint).get());
+        } else if (strategy != ComponentInstantiationStrategy.POOLED) {
+            objects.put(hint, new LookupInstance(componentManager, role, hint));
+        }
+    }
+
+    private AtomicLong getRoleVersion(Type role)
+    {
+        AtomicLong version = this.roleVersions.get(role);
+
+        if (version == null) {
+            version = new AtomicLong();
+            AtomicLong existingVersion = this.roleVersions.putIfAbsent(role, version);
+            if (existingVersion != null) {
+                version = existingVersion;
+            }
+        }
+
+        return version;
+    }
+
+    /**
+     * Indicate that the instances of the passed role changed.
+     * 
+     * @param role the role type
+     */
+    private void invalidateRoleInstances(Type role)
+    {
+        getRoleVersion(role).incrementAndGet();
+    }
+
+    /**
+     * @param componentEntry the component entry
+     * @return the injection points of the component dependencies, resolved only once for each entry
+     */
+    private DependencyInjector[] getInjectors(ComponentEntry< ? > componentEntry)
+    {
+        DependencyInjector[] injectors = componentEntry.injectors;
+
+        if (injectors == null) {
+            // Several threads might resolve the injectors at the same time but they would all get the same result
+            injectors = DependencyInjector.createInjectors(componentEntry.descriptor);
+            componentEntry.injectors = injectors;
+        }
+
+        return injectors;
+    }
+
     /**
      * Create a Logger instance to inject.
      */
@@ -335,25 +1075,36 @@ protected Object createLogger(Class< ? > instanceClass)
         return LoggerFactory.getLogger(instanceClass);
     }
 
-    @SuppressWarnings("unchecked")
     protected <T> T getComponentInstance(RoleHint<T> roleHint) throws ComponentLookupException
+    {
+        return getComponentInstance(roleHint.getRoleType(), roleHint.getHint());
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T getComponentInstance(Type roleType, String roleHint) throws ComponentLookupException
     {
         T instance;
 
-        ComponentEntry<T> componentEntry = (ComponentEntry<T>) this.componentEntries.get(roleHint);
+        ComponentProfiler currentProfiler = this.profiler;
+        if (currentProfiler != null) {
+            currentProfiler.lookup(roleType);
+        }
+
+        ComponentEntry<T> componentEntry = (ComponentEntry<T>) getComponentEntry(roleType, roleHint);
 
         if (componentEntry != null) {
             try {
                 instance = getComponentInstance(componentEntry);
             } catch (Throwable e) {
                 throw new ComponentLookupException(String.format("Failed to lookup component [%s] identified by [%s]",
-                    componentEntry.descriptor.getImplementation().getName(), roleHint.toString()), e);
+                    componentEntry.descriptor.getImplementation().getName(), new RoleHint<T>(roleType, roleHint)), e);
             }
         } else {
             if (getParent() != null) {
-                instance = getParent().getInstance(roleHint.getRoleType(), roleHint.getHint());
+                instance = getParent().getInstance(roleType, roleHint != null ? roleHint : DEFAULT_HINT);
             } else {
-                throw new ComponentLookupException("Can't find descriptor for the component [" + roleHint + "]");
+                throw new ComponentLookupException("Can't find descriptor for the component ["
+                    + new RoleHint<T>(roleType, roleHint) + "]");
             }
         }
 
@@ -371,23 +1122,97 @@ private <T> T getComponentInstance(ComponentEntry<T> componentEntry) throws Exce
                 // If the instance exists return it
                 instance = componentEntry.instance;
             } else {
-                synchronized (componentEntry) {
-                    // Recheck in case it has been created while we were waiting
-                    if (componentEntry.instance != null) {
-                        instance = componentEntry.instance;
-                    } else {
-                        componentEntry.instance = createInstance(descriptor);
-                        instance = componentEntry.instance;
-                    }
-                }
+                instance = getSingletonInstance(componentEntry);
             }
+        } else if (componentEntry.pool != null) {
+            instance = componentEntry.pool.take();
+            if (instance == null) {
+                instance = createInstance(componentEntry);
+                componentEntry.pool.created();
+            }
+            this.borrowedInstances.add(instance, componentEntry.pool);
         } else {
-            instance = createInstance(descriptor);
+            instance = createInstance(componentEntry);
         }
 
         return instance;
     }
 
+    private <T> T getSingletonInstance(final ComponentEntry<T> componentEntry) throws Exception
+    {
+        // Waiting for a creation started by the current thread would never end
+        checkCreationCycle(componentEntry);
+
+        // Only one thread creates the instance, the others wait for the result
+        FutureTask<T> creation;
+        do {
+            creation = componentEntry.creation.get();
+            if (creation == null) {
+                FutureTask<T> newCreation = new FutureTask<T>(new Callable<T>()
+                {
+                    @Override
+                    public T call() throws Exception
+                    {
+                        T instance = createInstance(componentEntry);
+                        componentEntry.instance = instance;
+
+                        return instance;
+                    }
+                });
+                if (componentEntry.creation.compareAndSet(null, newCreation)) {
+                    creation = newCreation;
+                    creation.run();
+                }
+            }
+        } while (creation == null);
+
+        try {
+            return creation.get();
+        } catch (ExecutionException e) {
+            // Allow the next lookup to try again
+            componentEntry.creation.compareAndSet(creation, null);
+
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+
+            throw e;
+        }
+    }
+
+    /**
+     * @param componentEntry the component about to be created by the current thread
+     * @throws ComponentLookupException if the component is already being created by the current thread
+     */
+    private void checkCreationCycle(ComponentEntry< ? > componentEntry) throws ComponentLookupException
+    {
+        List<ComponentEntry< ? >> chain = this.creationChain.get();
+
+        if (chain != null && chain.contains(componentEntry)) {
+            StringBuilder message = new StringBuilder("Dependency cycle detected: ");
+            for (ComponentEntry< ? > entry : chain.subList(chain.indexOf(componentEntry), chain.size())) {
+                message.append('[').append(getRoleHint(entry.descriptor)).append("] -> ");
+            }
+            message.append('[').append(getRoleHint(componentEntry.descriptor)).append(']');
+
+            throw new ComponentLookupException(message.toString());
+        }
+    }
+
+    /**
+     * @param roleType the component role type
+     * @param roleHint the component role hint, {@code null} meaning the default hint
+     * @return the registered entry or {@code null} if there is none in this component manager
+     */
+    private ComponentEntry< ? > getComponentEntry(Type roleType, String roleHint)
+    {
+        Map<String, ComponentEntry< ? >> entries = this.componentEntries.get(roleType);
+
+        return entries != null ? entries.get(roleHint != null ? roleHint : DEFAULT_HINT) : null;
+    }
+
     // Add
 
     private <T> RoleHint<T> getRoleHint(ComponentDescriptor<T> componentDescriptor)
@@ -415,10 +1240,24 @@ public <T> void registerComponent(ComponentDescriptor<T> componentDescriptor, T
 
     private <T> void addComponent(RoleHint<T> roleHint, ComponentDescriptor<T> descriptor, T instance)
     {
-        ComponentEntry<T> componentEntry = new ComponentEntry<T>(descriptor, instance);
+        ComponentPool<T> pool = null;
+        if (descriptor.getInstantiationStrategy() == ComponentInstantiationStrategy.POOLED) {
+            pool = new ComponentPool<T>(this.poolMaxIdle);
+        }
+        ComponentEntry<T> componentEntry = new ComponentEntry<T>(descriptor, instance, pool);
 
         // Register new component
-        this.componentEntries.put(roleHint, componentEntry);
+        Map<String, ComponentEntry< ? >> entries = this.componentEntries.get(roleHint.getRoleType());
+        if (entries == null) {
+            entries = new ConcurrentHashMap<String, ComponentEntry< ? >>();
+            Map<String, ComponentEntry< ? >> existingEntries =
+                this.componentEntries.putIfAbsent(roleHint.getRoleType(), entries);
+            if (existingEntries != null) {
+                entries = existingEntries;
+            }
+        }
+        entries.put(roleHint.getHint(), componentEntry);
+        invalidateRoleInstances(roleHint.getRoleType());
 
         // Send event about component registration
         if (this.eventManager != null) {
@@ -448,13 +1287,24 @@ public void unregisterComponent(ComponentDescriptor< ? > componentDescriptor)
     @SuppressWarnings("unchecked")
     public void release(Object component) throws ComponentLifecycleException
     {
+        // Give back pooled instances to their pool
+        if (releasePooledInstance(component)) {
+            return;
+        }
+
         // First find the descriptor matching the passed component
         RoleHint< ? > key = null;
         ComponentDescriptor< ? > oldDescriptor = null;
-        for (Map.Entry<RoleHint< ? >, ComponentEntry< ? >> entry : this.componentEntries.entrySet()) {
-            if (entry.getValue().instance == component) {
-                key = entry.getKey();
-                oldDescriptor = entry.getValue().descriptor;
+        for (Map<String, ComponentEntry< ? >> entries : this.componentEntries.values()) {
+            for (ComponentEntry< ? > entry : entries.values()) {
+                if (entry.instance == component) {
+                    oldDescriptor = entry.descriptor;
+                    key = getRoleHint(oldDescriptor);
+                    break;
+                }
+            }
+
+            if (key != null) {
                 break;
             }
         }
@@ -475,11 +1325,49 @@ public void release(Object component) throws ComponentLifecycleException
         }
     }
 
+    /**
+     * @param component the component instance
+     * @return true if the instance was taken from a pool and not released yet, false otherwise
+     * @throws ComponentLifecycleException if the instance had to be disposed and the disposal failed
+     */
+    @SuppressWarnings("unchecked")
+    private boolean releasePooledInstance(Object component) throws ComponentLifecycleException
+    {
+        ComponentPool<Object> pool = (ComponentPool<Object>) this.borrowedInstances.remove(component);
+
+        if (pool != null) {
+            pool.release(component);
+
+            return true;
+        }
+
+        return false;
+    }
+
     private void releaseInstance(ComponentEntry< ? > componentEntry) throws ComponentLifecycleException
     {
+        // Discard the pooled instances
+        if (componentEntry.pool != null) {
+            componentEntry.pool.clear();
+        }
+
+        // Wait for the end of the creation if the instance is being created. This is done outside of the entry monitor
+        // since the creation might need it.
+        FutureTask< ? > creation = componentEntry.creation.get();
+        if (componentEntry.instance == null && creation != null && !isCreatedByCurrentThread(componentEntry)) {
+            try {
+                creation.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                // No instance to release
+            }
+        }
+
         // Make sure the singleton component instance can't be "lost" (impossible to dispose because returned but not
         // stored).
         synchronized (componentEntry) {
+            // The creation stores the instance in the entry before completing
             Object instance = componentEntry.instance;
 
             // Give a chance to the component to clean up
@@ -488,9 +1376,17 @@ private void releaseInstance(ComponentEntry< ? > componentEntry) throws Componen
             }
 
             componentEntry.instance = null;
+            componentEntry.creation.set(null);
         }
     }
 
+    private boolean isCreatedByCurrentThread(ComponentEntry< ? > componentEntry)
+    {
+        List<ComponentEntry< ? >> chain = this.creationChain.get();
+
+        return chain != null && chain.contains(componentEntry);
+    }
+
     private void releaseComponentEntry(ComponentEntry< ? > componentEntry) throws ComponentLifecycleException
     {
         // clean existing instance
@@ -501,9 +1397,12 @@ private void removeComponent(RoleHint< ? > roleHint) throws ComponentLifecycleEx
     {
         // Make sure to remove the entry from the map before destroying it to reduce at the minimum the risk of
         // lookupping something invalid
-        ComponentEntry< ? > componentEntry = this.componentEntries.remove(roleHint);
+        Map<String, ComponentEntry< ? >> entries = this.componentEntries.get(roleHint.getRoleType());
+        ComponentEntry< ? > componentEntry = entries != null ? entries.remove(roleHint.getHint()) : null;
 
         if (componentEntry != null) {
+            invalidateRoleInstances(roleHint.getRoleType());
+
             ComponentDescriptor< ? > oldDescriptor = componentEntry.descriptor;
 
             // We don't want the component manager to dispose itself just because it's not registered as component*
@@ -539,14 +1438,13 @@ private int sortEntry(List<RoleHint< ? >> keys, int index)
         int newIndex = index;
 
         RoleHint< ? > key = keys.get(index);
-        ComponentEntry< ? > componentEntry = this.componentEntries.get(key);
+        ComponentEntry< ? > componentEntry = getComponentEntry(key.getRoleType(), key.getHint());
 
         for (ComponentDependency< ? > dependency : componentEntry.descriptor.getComponentDependencies()) {
             RoleHint< ? > dependencyRole = new RoleHint<Object>(dependency.getRoleType(), dependency.getRoleHint());
 
             int dependencyIndex = keys.indexOf(dependencyRole);
 
-            
             if (dependencyIndex != -1 && dependencyIndex < newIndex) {
                 dependencyIndex = sortEntry(keys, dependencyIndex);
 
@@ -565,11 +1463,16 @@ private int sortEntry(List<RoleHint< ? >> keys, int index)
     @Override
     public void dispose()
     {
-        List<RoleHint< ? >> keys = new ArrayList<RoleHint< ? >>(this.componentEntries.keySet());
+        List<RoleHint< ? >> keys = new ArrayList<RoleHint< ? >>();
+        for (Map.Entry<Type, Map<String, ComponentEntry< ? >>> entries : this.componentEntries.entrySet()) {
+            for (String hint : entries.getValue().keySet()) {
+                keys.add(new RoleHint<Object>(entries.getKey(), hint));
+            }
+        }
 
         // Exclude this component
         RoleHint<ComponentManager> cmRoleHint = new RoleHint<ComponentManager>(ComponentManager.class);
-        ComponentEntry< ? > cmEntry = this.componentEntries.get(cmRoleHint);
+        ComponentEntry< ? > cmEntry = getComponentEntry(cmRoleHint.getRoleType(), cmRoleHint.getHint());
         if (cmEntry != null && cmEntry.instance == this) {
             keys.remove(cmRoleHint);
         }
@@ -581,18 +1484,21 @@ public void dispose()
 
         // Dispose old components
         for (RoleHint< ? > key : keys) {
-            ComponentEntry< ? > componentEntry = this.componentEntries.get(key);
+            ComponentEntry< ? > componentEntry = getComponentEntry(key.getRoleType(), key.getHint());
 
             synchronized (componentEntry) {
                 Object instance = componentEntry.instance;
 
-                if (instance instanceof Disposable) {
-                    try {
+                try {
+                    if (instance instanceof Disposable) {
                         ((Disposable) instance).dispose();
-                    } catch (ComponentLifecycleException e) {
-                        this.logger.error("Failed to dispose component with role type [{}] and role hint [{}]",
-                            componentEntry.descriptor.getRoleType(), componentEntry.descriptor.getRoleHint(), e);
                     }
+                    if (componentEntry.pool != null) {
+                        componentEntry.pool.clear();
+                    }
+                } catch (ComponentLifecycleException e) {
+                    this.logger.error("Failed to dispose component with role type [{}] and role hint [{}]",
+                        componentEntry.descriptor.getRoleType(), componentEntry.descriptor.getRoleHint(), e);
                 }
             }
         }
@@ -601,7 +1507,11 @@ public void dispose()
         // components that have to use a component already disposed (usually because it dynamically requires it and
         // there is no way for the ComponentManager to know that dependency).
         for (RoleHint< ? > key : keys) {
-            this.componentEntries.remove(key);
+            Map<String, ComponentEntry< ? >> entries = this.componentEntries.get(key.getRoleType());
+            if (entries != null) {
+                entries.remove(key.getHint());
+                invalidateRoleInstances(key.getRoleType());
+            }
         }
     }
 
@@ -613,9 +1523,11 @@ public void dispose()
     public <T> List<ComponentDescriptor<T>> getComponentDescriptorList(Class<T> role)
     {
         List<ComponentDescriptor<T>> results = new ArrayList<ComponentDescriptor<T>>();
-        for (Map.Entry<RoleHint< ? >, ComponentEntry< ? >> entry : this.componentEntries.entrySet()) {
-            if (entry.getKey().getRoleClass() == role) {
-                results.add((ComponentDescriptor<T>) entry.getValue().descriptor);
+        for (Map.Entry<Type, Map<String, ComponentEntry< ? >>> entries : this.componentEntries.entrySet()) {
+            if (ReflectionUtils.getTypeClass(entries.getKey()) == role) {
+                for (ComponentEntry< ? > entry : entries.getValue().values()) {
+                    results.add((ComponentDescriptor<T>) entry.descriptor);
+                }
             }
         }
         return results;
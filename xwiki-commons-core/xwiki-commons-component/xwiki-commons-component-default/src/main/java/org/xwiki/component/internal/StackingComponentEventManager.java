@@ -19,6 +19,8 @@
  */
 package org.xwiki.component.internal;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Stack;
 
 import org.xwiki.component.descriptor.ComponentDescriptor;
@@ -26,6 +28,7 @@
 import org.xwiki.component.event.ComponentDescriptorRemovedEvent;
 import org.xwiki.component.manager.ComponentEventManager;
 import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.observation.EventNotification;
 import org.xwiki.observation.ObservationManager;
 import org.xwiki.observation.event.Event;
 
@@ -83,13 +86,18 @@ public void notifyComponentUnregistered(ComponentDescriptor< ? > descriptor, Com
     }
 
     /**
-     * Force to send all stored events.
+     * Force to send all stored events, in one batch.
      */
     public synchronized void flushEvents()
     {
+        List<EventNotification> notifications = new ArrayList<EventNotification>(this.events.size());
         while (!this.events.isEmpty()) {
             ComponentEventEntry entry = this.events.pop();
-            sendEvent(entry.event, entry.descriptor, entry.componentManager);
+            notifications.add(new EventNotification(entry.event, entry.componentManager, entry.descriptor));
+        }
+
+        if (this.observationManager != null && !notifications.isEmpty()) {
+            this.observationManager.notify(notifications);
         }
     }
 
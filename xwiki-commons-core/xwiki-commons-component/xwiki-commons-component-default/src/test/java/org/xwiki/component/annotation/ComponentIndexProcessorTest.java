@@ -0,0 +1,176 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.annotation;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.component.descriptor.ComponentDescriptor;
+
+/**
+ * Unit tests for {@link ComponentIndexProcessor}: compile some components with the processor enabled and compare the
+ * generated index with the result of the annotation introspection.
+ * 
+ * @version $Id$
+ * @since 5.4M1
+ */
+public class ComponentIndexProcessorTest
+{
+    private static final String PACKAGE = "org.xwiki.component.annotation.indexed";
+
+    private static final String[][] SOURCES = {
+        {"GenericRole", "@Role public interface GenericRole<T> {}"},
+        {"SimpleRole", "@Role public interface SimpleRole {}"},
+        {"AbstractSimpleComponent", "public abstract class AbstractSimpleComponent implements SimpleRole {"
+            + " @Inject private Logger logger; @Inject @Named(\"other\") private SimpleRole other; }"},
+        {"GenericComponent", "@Component @Named(\"hint\") @InstantiationStrategy(ComponentInstantiationStrategy"
+            + ".PER_LOOKUP) public class GenericComponent implements GenericRole<String> {"
+            + " @Inject private List<GenericRole<String>> all; @Inject private Map<String, SimpleRole> map;"
+            + " @Inject private Provider<SimpleRole> provider; }"},
+        {"SimpleComponent", "@Component(hints = {\"one\", \"two\"}) @Singleton"
+            + " public class SimpleComponent extends AbstractSimpleComponent {"
+            + " @Inject private GenericRole<String> generic; }"},
+        {"ExplicitRoleComponent", "@Component(roles = SimpleRole.class)"
+            + " public class ExplicitRoleComponent implements SimpleRole, GenericRole<Integer> {}"}
+    };
+
+    private static final String IMPORTS = "package " + PACKAGE + ";\n"
+        + "import java.util.*;\n"
+        + "import javax.inject.*;\n"
+        + "import org.slf4j.Logger;\n"
+        + "import org.xwiki.component.annotation.*;\n"
+        + "import org.xwiki.component.descriptor.ComponentInstantiationStrategy;\n";
+
+    private File sourceDirectory;
+
+    private File classesDirectory;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        File directory = new File("target/" + getClass().getSimpleName());
+        delete(directory);
+
+        this.sourceDirectory = new File(directory, "sources");
+        this.classesDirectory = new File(directory, "classes");
+        this.classesDirectory.mkdirs();
+    }
+
+    private void delete(File file)
+    {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private List<File> writeSources() throws Exception
+    {
+        File packageDirectory = new File(this.sourceDirectory, PACKAGE.replace('.', '/'));
+        packageDirectory.mkdirs();
+
+        List<File> files = new ArrayList<File>();
+        for (String[] source : SOURCES) {
+            File file = new File(packageDirectory, source[0] + ".java");
+            Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+            try {
+                writer.write(IMPORTS);
+                writer.write(source[1]);
+            } finally {
+                writer.close();
+            }
+            files.add(file);
+        }
+
+        return files;
+    }
+
+    private void compile(List<File> files) throws Exception
+    {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        Assert.assertNotNull("The tests must be executed with a JDK", compiler);
+
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null);
+        try {
+            JavaCompiler.CompilationTask task =
+                compiler.getTask(null, fileManager, diagnostics, Arrays.asList("-d",
+                    this.classesDirectory.getPath(), "-classpath", System.getProperty("java.class.path")), null,
+                    fileManager.getJavaFileObjectsFromFiles(files));
+            task.setProcessors(Arrays.asList(new ComponentIndexProcessor()));
+
+            Assert.assertTrue(diagnostics.getDiagnostics().toString(), task.call());
+        } finally {
+            fileManager.close();
+        }
+    }
+
+    @Test
+    public void generatedIndexSameAsAnnotations() throws Exception
+    {
+        compile(writeSources());
+
+        ComponentIndex index = new ComponentIndex();
+        InputStream indexStream =
+            new FileInputStream(new File(this.classesDirectory, ComponentAnnotationLoader.COMPONENT_INDEX));
+        try {
+            index.read(indexStream);
+        } finally {
+            indexStream.close();
+        }
+
+        URLClassLoader classLoader =
+            new URLClassLoader(new URL[] {this.classesDirectory.toURI().toURL()}, getClass().getClassLoader());
+        ComponentAnnotationLoader loader = new ComponentAnnotationLoader();
+        for (String component : Arrays.asList("GenericComponent", "SimpleComponent", "ExplicitRoleComponent")) {
+            Class< ? > componentClass = classLoader.loadClass(PACKAGE + '.' + component);
+
+            List<ComponentDescriptor< ? >> indexedDescriptors = index.getComponentDescriptors(componentClass, classLoader);
+
+            Assert.assertNotNull("Component [" + component + "] is not indexed", indexedDescriptors);
+            Assert.assertEquals(loader.getComponentsDescriptors(componentClass), indexedDescriptors);
+        }
+
+        // Abstract classes are not components
+        Assert.assertNull(index.getComponentDescriptors(
+            classLoader.loadClass(PACKAGE + ".AbstractSimpleComponent"), classLoader));
+    }
+}
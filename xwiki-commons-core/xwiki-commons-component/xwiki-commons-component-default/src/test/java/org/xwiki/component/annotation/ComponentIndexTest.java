@@ -0,0 +1,94 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.annotation;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.xwiki.component.descriptor.ComponentDescriptor;
+import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
+
+/**
+ * Unit tests for {@link ComponentIndex}.
+ * 
+ * @version $Id$
+ * @since 5.4M1
+ */
+public class ComponentIndexTest
+{
+    @Role
+    public interface GenericRole<T>
+    {
+    }
+
+    @Component
+    @Named("hint")
+    @InstantiationStrategy(ComponentInstantiationStrategy.PER_LOOKUP)
+    public static class GenericRoleImpl implements GenericRole<String>
+    {
+        @Inject
+        private Logger logger;
+
+        @Inject
+        @Named("other")
+        private GenericRole<String> other;
+
+        @Inject
+        private List<GenericRole<String>> all;
+    }
+
+    private static final String INDEX = "# Generated\n"
+        + "component=org.xwiki.component.annotation.ComponentIndexTest$GenericRoleImpl\n"
+        + "strategy=PER_LOOKUP\n"
+        + "role=org.xwiki.component.annotation.ComponentIndexTest$GenericRole<java.lang.String>\n"
+        + "hint=hint\n"
+        + "dependency=logger:org.slf4j.Logger\n"
+        + "dependency=other:org.xwiki.component.annotation.ComponentIndexTest$GenericRole<java.lang.String>:other\n"
+        + "dependency=all:java.util.List<org.xwiki.component.annotation.ComponentIndexTest$GenericRole"
+        + "<java.lang.String>>\n";
+
+    @Test
+    public void getComponentDescriptorsSameAsAnnotations() throws Exception
+    {
+        ComponentIndex index = new ComponentIndex();
+        index.read(new ByteArrayInputStream(INDEX.getBytes("UTF-8")));
+
+        List<ComponentDescriptor< ? >> indexedDescriptors =
+            index.getComponentDescriptors(GenericRoleImpl.class, getClass().getClassLoader());
+
+        Assert.assertEquals(new ComponentAnnotationLoader().getComponentsDescriptors(GenericRoleImpl.class),
+            indexedDescriptors);
+    }
+
+    @Test
+    public void getComponentDescriptorsWhenNotIndexed() throws Exception
+    {
+        ComponentIndex index = new ComponentIndex();
+        index.read(new ByteArrayInputStream(INDEX.getBytes("UTF-8")));
+
+        Assert.assertNull(index.getComponentDescriptors(getClass(), getClass().getClassLoader()));
+    }
+}
@@ -19,27 +19,34 @@
  */
 package org.xwiki.component.embed;
 
+import java.io.StringWriter;
 import java.lang.reflect.Type;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.jmock.Expectations;
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
 import org.slf4j.Logger;
+import org.xwiki.component.annotation.LiveCollection;
 import org.xwiki.component.descriptor.ComponentDescriptor;
 import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
 import org.xwiki.component.descriptor.DefaultComponentDependency;
 import org.xwiki.component.descriptor.DefaultComponentDescriptor;
+import org.xwiki.component.internal.multi.DelegateComponentManager;
 import org.xwiki.component.manager.ComponentEventManager;
 import org.xwiki.component.manager.ComponentLifecycleException;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.manager.ComponentManagerProfiler;
 import org.xwiki.component.manager.ComponentRepositoryException;
 import org.xwiki.component.phase.Disposable;
 import org.xwiki.component.phase.Initializable;
 import org.xwiki.component.phase.InitializationException;
+import org.xwiki.component.phase.Poolable;
+import org.xwiki.component.util.DefaultParameterizedType;
 import org.xwiki.test.jmock.JMockRule;
 
 /**
@@ -107,6 +114,98 @@ public Logger getLogger()
         }
     }
 
+    public static class DependencyRoleImpl implements Role
+    {
+        protected Role dependency;
+
+        public Role getDependency()
+        {
+            return this.dependency;
+        }
+    }
+
+    public static class ExtendedDependencyRoleImpl extends DependencyRoleImpl
+    {
+    }
+
+    public static class SingletonRoleImpl extends DependencyRoleImpl
+    {
+        public static final AtomicInteger CREATIONS = new AtomicInteger();
+
+        public SingletonRoleImpl()
+        {
+            CREATIONS.incrementAndGet();
+        }
+    }
+
+    public static class OtherSingletonRoleImpl extends DependencyRoleImpl
+    {
+        public static final AtomicInteger CREATIONS = new AtomicInteger();
+
+        public OtherSingletonRoleImpl()
+        {
+            CREATIONS.incrementAndGet();
+        }
+    }
+
+    public static class CycleRoleImpl extends DependencyRoleImpl
+    {
+        public static final AtomicInteger CREATIONS = new AtomicInteger();
+
+        public CycleRoleImpl()
+        {
+            CREATIONS.incrementAndGet();
+        }
+    }
+
+    public static class CollectionsRoleImpl
+    {
+        @LiveCollection
+        private List<Role> list;
+
+        @LiveCollection
+        private Map<String, Role> map;
+    }
+
+    public static class CopiedCollectionsRoleImpl
+    {
+        private List<Role> list;
+
+        private Map<String, Role> map;
+    }
+
+    public static class PooledRoleImpl implements Role, Poolable
+    {
+        private int resets;
+
+        private boolean valid = true;
+
+        @Override
+        public void reset()
+        {
+            ++this.resets;
+        }
+
+        @Override
+        public boolean validate()
+        {
+            return this.valid;
+        }
+    }
+
+    public static class FailingRoleImpl implements Role, Initializable
+    {
+        public static volatile boolean failing = true;
+
+        @Override
+        public void initialize() throws InitializationException
+        {
+            if (failing) {
+                throw new InitializationException("Failed to initialize");
+            }
+        }
+    }
+
     @Test
     public void testLookupThisComponentManager() throws ComponentLookupException
     {
@@ -287,6 +386,37 @@ public void testGetInstanceListAndMapWhenSomeComponentsInParent() throws Excepti
         Assert.assertSame(roleImpl, instances.get("default"));
     }
 
+    @Test
+    public void getInstanceMapAfterUnregisteringOneHint() throws Exception
+    {
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+
+        DefaultComponentDescriptor<Role> cd1 = new DefaultComponentDescriptor<Role>();
+        cd1.setRoleType(Role.class);
+        cd1.setRoleHint("hint1");
+        cd1.setImplementation(RoleImpl.class);
+        ecm.registerComponent(cd1);
+
+        DefaultComponentDescriptor<Role> cd2 = new DefaultComponentDescriptor<Role>();
+        cd2.setRoleType(Role.class);
+        cd2.setRoleHint("hint2");
+        cd2.setImplementation(OtherRoleImpl.class);
+        ecm.registerComponent(cd2);
+
+        Assert.assertEquals(2, ecm.getInstanceMap(Role.class).size());
+
+        ecm.unregisterComponent(Role.class, "hint1");
+
+        Map<String, Role> instances = ecm.getInstanceMap(Role.class);
+        Assert.assertEquals(1, instances.size());
+        Assert.assertSame(OtherRoleImpl.class, instances.get("hint2").getClass());
+        Assert.assertFalse(ecm.hasComponent(Role.class, "hint1"));
+        Assert.assertEquals(1, ecm.getComponentDescriptorList((Type) Role.class).size());
+
+        // Make sure other roles are not impacted
+        Assert.assertSame(ecm, ecm.getInstance(ComponentManager.class));
+    }
+
     @Test
     public void testHasComponent() throws Exception
     {
@@ -331,6 +461,454 @@ public void testLoggingInjection() throws Exception
         Assert.assertNotNull(impl.getLogger());
     }
 
+    @Test
+    public void testInheritedFieldInjectionForPerLookupComponent() throws Exception
+    {
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+
+        DefaultComponentDescriptor<Role> cd = new DefaultComponentDescriptor<Role>();
+        cd.setRoleType(Role.class);
+        cd.setImplementation(RoleImpl.class);
+        ecm.registerComponent(cd);
+
+        DefaultComponentDescriptor<Role> d = new DefaultComponentDescriptor<Role>();
+        d.setRoleType(Role.class);
+        d.setRoleHint("dependency");
+        d.setImplementation(ExtendedDependencyRoleImpl.class);
+        d.setInstantiationStrategy(ComponentInstantiationStrategy.PER_LOOKUP);
+
+        DefaultComponentDependency<Role> dependencyDescriptor = new DefaultComponentDependency<Role>();
+        dependencyDescriptor.setRoleType(Role.class);
+        dependencyDescriptor.setName("DEPENDENCY");
+
+        d.addComponentDependency(dependencyDescriptor);
+        ecm.registerComponent(d);
+
+        ExtendedDependencyRoleImpl impl1 = ecm.getInstance(Role.class, "dependency");
+        ExtendedDependencyRoleImpl impl2 = ecm.getInstance(Role.class, "dependency");
+
+        Assert.assertNotSame(impl1, impl2);
+        Assert.assertSame(ecm.getInstance(Role.class), impl1.getDependency());
+        Assert.assertSame(ecm.getInstance(Role.class), impl2.getDependency());
+    }
+
+    @Test
+    public void initializeSingletons() throws Exception
+    {
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+
+        registerDependencyComponent(ecm, SingletonRoleImpl.class, "hint1", "hint2");
+        registerDependencyComponent(ecm, OtherSingletonRoleImpl.class, "hint2", null);
+
+        ecm.initializeSingletons(2);
+
+        Assert.assertEquals(1, SingletonRoleImpl.CREATIONS.get());
+        Assert.assertEquals(1, OtherSingletonRoleImpl.CREATIONS.get());
+
+        DependencyRoleImpl component = ecm.getInstance(Role.class, "hint1");
+        Assert.assertSame(ecm.getInstance(Role.class, "hint2"), component.getDependency());
+        Assert.assertEquals(1, SingletonRoleImpl.CREATIONS.get());
+    }
+
+    @Test
+    public void initializeSingletonsWithInvalidDependency() throws Exception
+    {
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+
+        registerDependencyComponent(ecm, SingletonRoleImpl.class, "hint1", "hint2");
+        registerDependencyComponent(ecm, OtherSingletonRoleImpl.class, "hint2", null);
+
+        // A dependency without role type cannot be resolved
+        DefaultComponentDescriptor<Role> cd = new DefaultComponentDescriptor<Role>();
+        cd.setRoleType(Role.class);
+        cd.setRoleHint("invalid");
+        cd.setImplementation(DependencyRoleImpl.class);
+        DefaultComponentDependency<Role> dependencyDescriptor = new DefaultComponentDependency<Role>();
+        dependencyDescriptor.setName("dependency");
+        cd.addComponentDependency(dependencyDescriptor);
+        ecm.registerComponent(cd);
+
+        int creations = SingletonRoleImpl.CREATIONS.get();
+        int otherCreations = OtherSingletonRoleImpl.CREATIONS.get();
+
+        ecm.initializeSingletons(2);
+
+        Assert.assertEquals(creations + 1, SingletonRoleImpl.CREATIONS.get());
+        Assert.assertEquals(otherCreations + 1, OtherSingletonRoleImpl.CREATIONS.get());
+    }
+
+    @Test
+    public void initializeSingletonsWithCycle() throws Exception
+    {
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+
+        registerDependencyComponent(ecm, CycleRoleImpl.class, "cycle1", "cycle2");
+        registerDependencyComponent(ecm, CycleRoleImpl.class, "cycle2", "cycle1");
+
+        ecm.initializeSingletons(2);
+
+        Assert.assertEquals(0, CycleRoleImpl.CREATIONS.get());
+    }
+
+    @Test
+    public void getInstanceWithCycle() throws Exception
+    {
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+
+        registerDependencyComponent(ecm, DependencyRoleImpl.class, "cycle1", "cycle2");
+        registerDependencyComponent(ecm, DependencyRoleImpl.class, "cycle2", "cycle1");
+
+        try {
+            ecm.getInstance(Role.class, "cycle1");
+            Assert.fail("Should have thrown an exception");
+        } catch (ComponentLookupException expected) {
+            Throwable cause = expected;
+            while (cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            Assert.assertTrue(cause.getMessage(), cause.getMessage().startsWith("Dependency cycle detected: "));
+        }
+
+        // The failed creation should not be remembered
+        ecm.unregisterComponent(Role.class, "cycle2");
+        registerDependencyComponent(ecm, DependencyRoleImpl.class, "cycle2", null);
+
+        DependencyRoleImpl component = ecm.getInstance(Role.class, "cycle1");
+        Assert.assertSame(ecm.getInstance(Role.class, "cycle2"), component.getDependency());
+    }
+
+    @Test
+    public void injectLiveCollections() throws Exception
+    {
+        EmbeddableComponentManager parent = new EmbeddableComponentManager();
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+        ecm.setParent(parent);
+
+        registerDependencyComponent(ecm, DependencyRoleImpl.class, "hint1", null);
+        registerCollectionsComponent(ecm, CollectionsRoleImpl.class);
+
+        CollectionsRoleImpl component = ecm.getInstance(CollectionsRoleImpl.class);
+
+        Assert.assertEquals(1, component.list.size());
+        Assert.assertSame(ecm.getInstance(Role.class, "hint1"), component.list.get(0));
+        Assert.assertSame(component.list.get(0), component.map.get("hint1"));
+
+        // Components registered after the injection are visible, including the ones from the parent
+        registerDependencyComponent(ecm, DependencyRoleImpl.class, "hint2", null);
+        registerDependencyComponent(parent, DependencyRoleImpl.class, "parent", null);
+
+        Assert.assertEquals(3, component.list.size());
+        Assert.assertSame(ecm.getInstance(Role.class, "hint2"), component.map.get("hint2"));
+        Assert.assertSame(parent.getInstance(Role.class, "parent"), component.map.get("parent"));
+
+        // Unregistered components disappear
+        ecm.unregisterComponent(Role.class, "hint2");
+        parent.unregisterComponent(Role.class, "parent");
+
+        Assert.assertEquals(1, component.list.size());
+        Assert.assertFalse(component.map.containsKey("hint2"));
+        Assert.assertFalse(component.map.containsKey("parent"));
+    }
+
+    @Test
+    public void injectCollectionsCopy() throws Exception
+    {
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+
+        registerDependencyComponent(ecm, DependencyRoleImpl.class, "hint1", null);
+        registerCollectionsComponent(ecm, CopiedCollectionsRoleImpl.class);
+
+        CopiedCollectionsRoleImpl component = ecm.getInstance(CopiedCollectionsRoleImpl.class);
+
+        Assert.assertEquals(1, component.list.size());
+        Assert.assertSame(ecm.getInstance(Role.class, "hint1"), component.map.get("hint1"));
+
+        // Not annotated with LiveCollection: the component gets its own modifiable copy
+        component.list.add(new DependencyRoleImpl());
+        component.map.remove("hint1");
+
+        registerDependencyComponent(ecm, DependencyRoleImpl.class, "hint2", null);
+
+        Assert.assertEquals(2, component.list.size());
+        Assert.assertTrue(component.map.isEmpty());
+    }
+
+    @Test
+    public void injectLiveCollectionsWithPerLookupComponent() throws Exception
+    {
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+
+        DefaultComponentDescriptor<Role> perLookup = new DefaultComponentDescriptor<Role>();
+        perLookup.setRoleType(Role.class);
+        perLookup.setRoleHint("perlookup");
+        perLookup.setImplementation(RoleImpl.class);
+        perLookup.setInstantiationStrategy(ComponentInstantiationStrategy.PER_LOOKUP);
+        ecm.registerComponent(perLookup);
+
+        registerCollectionsComponent(ecm, CollectionsRoleImpl.class);
+
+        CollectionsRoleImpl component = ecm.getInstance(CollectionsRoleImpl.class);
+
+        // A new instance is created each time the component is accessed
+        Assert.assertNotNull(component.map.get("perlookup"));
+        Assert.assertNotSame(component.map.get("perlookup"), component.map.get("perlookup"));
+        Assert.assertNotSame(component.list.get(0), component.list.get(0));
+    }
+
+    @Test
+    public void injectLiveCollectionsWithNonEmbeddableParent() throws Exception
+    {
+        EmbeddableComponentManager parent = new EmbeddableComponentManager();
+        DelegateComponentManager delegate = new DelegateComponentManager();
+        delegate.setComponentManager(parent);
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+        ecm.setParent(delegate);
+
+        registerDependencyComponent(parent, DependencyRoleImpl.class, "parent", null);
+        registerDependencyComponent(parent, DependencyRoleImpl.class, "hint1", null);
+        registerDependencyComponent(ecm, DependencyRoleImpl.class, "hint1", null);
+        registerCollectionsComponent(ecm, CollectionsRoleImpl.class);
+
+        CollectionsRoleImpl component = ecm.getInstance(CollectionsRoleImpl.class);
+
+        Assert.assertEquals(2, component.list.size());
+        Assert.assertSame(parent.getInstance(Role.class, "parent"), component.map.get("parent"));
+        Assert.assertSame(ecm.getInstance(Role.class, "hint1"), component.map.get("hint1"));
+
+        // The components of a parent which is not an EmbeddableComponentManager are updated with the role
+        registerDependencyComponent(parent, DependencyRoleImpl.class, "parent2", null);
+        registerDependencyComponent(ecm, DependencyRoleImpl.class, "hint2", null);
+
+        Assert.assertEquals(4, component.list.size());
+        Assert.assertSame(parent.getInstance(Role.class, "parent2"), component.map.get("parent2"));
+    }
+
+    @Test
+    public void injectLiveCollectionsWithPooledComponent() throws Exception
+    {
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+
+        DefaultComponentDescriptor<Role> pooled = new DefaultComponentDescriptor<Role>();
+        pooled.setRoleType(Role.class);
+        pooled.setRoleHint("pooled");
+        pooled.setImplementation(PooledRoleImpl.class);
+        pooled.setInstantiationStrategy(ComponentInstantiationStrategy.POOLED);
+        ecm.registerComponent(pooled);
+
+        registerDependencyComponent(ecm, DependencyRoleImpl.class, "hint1", null);
+        registerCollectionsComponent(ecm, CollectionsRoleImpl.class);
+
+        CollectionsRoleImpl component = ecm.getInstance(CollectionsRoleImpl.class);
+
+        // Pooled components are left out so that no instance is borrowed from the pool without being released
+        Assert.assertEquals(1, component.list.size());
+        Assert.assertFalse(component.map.containsKey("pooled"));
+        Assert.assertEquals(0, ecm.getComponentPoolStatistics(Role.class, "pooled").getLookupCount());
+    }
+
+    @Test
+    public void injectLiveCollectionsWithFailingComponent() throws Exception
+    {
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+
+        DefaultComponentDescriptor<Role> failing = new DefaultComponentDescriptor<Role>();
+        failing.setRoleType(Role.class);
+        failing.setRoleHint("failing");
+        failing.setImplementation(FailingRoleImpl.class);
+        ecm.registerComponent(failing);
+
+        registerCollectionsComponent(ecm, CollectionsRoleImpl.class);
+
+        CollectionsRoleImpl component = ecm.getInstance(CollectionsRoleImpl.class);
+
+        FailingRoleImpl.failing = true;
+        try {
+            component.list.size();
+            Assert.fail("Should have thrown an exception");
+        } catch (IllegalStateException expected) {
+            Assert.assertTrue(expected.getCause() instanceof ComponentLookupException);
+        } finally {
+            FailingRoleImpl.failing = false;
+        }
+
+        // The failure is not cached: the component is looked up again on next access
+        Assert.assertEquals(1, component.list.size());
+        Assert.assertSame(ecm.getInstance(Role.class, "failing"), component.map.get("failing"));
+    }
+
+    @Test
+    public void getPooledInstance() throws Exception
+    {
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+
+        DefaultComponentDescriptor<Role> cd = new DefaultComponentDescriptor<Role>();
+        cd.setRoleType(Role.class);
+        cd.setImplementation(PooledRoleImpl.class);
+        cd.setInstantiationStrategy(ComponentInstantiationStrategy.POOLED);
+        ecm.registerComponent(cd);
+
+        PooledRoleImpl instance1 = ecm.getInstance(Role.class);
+        PooledRoleImpl instance2 = ecm.getInstance(Role.class);
+        Assert.assertNotSame(instance1, instance2);
+
+        // Released instances are reset and reused
+        ecm.release(instance1);
+        Assert.assertEquals(1, instance1.resets);
+        Assert.assertSame(instance1, ecm.getInstance(Role.class));
+
+        // Invalid instances are discarded
+        ecm.release(instance1);
+        instance1.valid = false;
+        Assert.assertNotSame(instance1, ecm.getInstance(Role.class));
+
+        ComponentPoolStatistics statistics = ecm.getComponentPoolStatistics(Role.class, "default");
+        Assert.assertEquals(4, statistics.getLookupCount());
+        Assert.assertEquals(3, statistics.getCreatedCount());
+        Assert.assertEquals(2, statistics.getReleasedCount());
+        Assert.assertEquals(1, statistics.getDiscardedCount());
+        Assert.assertEquals(0, statistics.getIdleCount());
+
+        // The component is still registered
+        Assert.assertTrue(ecm.hasComponent(Role.class));
+    }
+
+    @Test
+    public void releasePooledInstance() throws Exception
+    {
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+
+        for (String hint : new String[] {"hint1", "hint2"}) {
+            DefaultComponentDescriptor<Role> cd = new DefaultComponentDescriptor<Role>();
+            cd.setRoleType(Role.class);
+            cd.setRoleHint(hint);
+            cd.setImplementation(PooledRoleImpl.class);
+            cd.setInstantiationStrategy(ComponentInstantiationStrategy.POOLED);
+            ecm.registerComponent(cd);
+        }
+
+        // The instance goes back to the pool of the component it was taken from
+        PooledRoleImpl instance = ecm.getInstance(Role.class, "hint2");
+        ecm.release(instance);
+        Assert.assertEquals(0, ecm.getComponentPoolStatistics(Role.class, "hint1").getIdleCount());
+        Assert.assertEquals(1, ecm.getComponentPoolStatistics(Role.class, "hint2").getIdleCount());
+
+        // Releasing twice the same instance or an instance which was not taken from a pool is ignored
+        ecm.release(instance);
+        ecm.release(new PooledRoleImpl());
+        ecm.release(null);
+        Assert.assertEquals(1, ecm.getComponentPoolStatistics(Role.class, "hint2").getIdleCount());
+        Assert.assertEquals(1, instance.resets);
+
+        Assert.assertSame(instance, ecm.getInstance(Role.class, "hint2"));
+        Assert.assertNotSame(instance, ecm.getInstance(Role.class, "hint2"));
+
+        // Instances released after the component has been unregistered are discarded instead of being reset
+        ecm.unregisterComponent(Role.class, "hint2");
+        ecm.release(instance);
+        Assert.assertEquals(1, instance.resets);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setComponentPoolMaxIdleWithInvalidValue()
+    {
+        new EmbeddableComponentManager().setComponentPoolMaxIdle(0);
+    }
+
+    @Test
+    public void profile() throws Exception
+    {
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+        ecm.setProfiler(new ComponentProfiler());
+
+        registerDependencyComponent(ecm, DependencyRoleImpl.class, "hint1", "hint2");
+        registerDependencyComponent(ecm, DependencyRoleImpl.class, "hint2", null);
+
+        ecm.getInstance(Role.class, "hint1");
+        ecm.getInstance(Role.class, "hint1");
+
+        // Two explicit lookups and one for the injected dependency
+        Assert.assertEquals(Long.valueOf(3), ecm.getProfiler().getLookupCounts().get(Role.class));
+        Assert.assertTrue(ecm.getProfiler().getInitializationDurations().containsKey(
+            DependencyRoleImpl.class.getName()));
+
+        StringWriter writer = new StringWriter();
+        ecm.getProfiler().writeTrace(writer);
+        String trace = writer.toString();
+        Assert.assertTrue(trace, trace.startsWith("{\"traceEvents\":["));
+        Assert.assertTrue(trace, trace.contains("\"cat\":\"create\""));
+        Assert.assertTrue(trace, trace.contains("\"cat\":\"initialize\""));
+        Assert.assertTrue(trace, trace.contains("\"name\":\"thread_name\""));
+
+        // The profiler is available as a component while profiling
+        Assert.assertSame(ecm.getProfiler(), ecm.getInstance(ComponentManagerProfiler.class));
+
+        ecm.setProfiler(null);
+
+        Assert.assertFalse(ecm.hasComponent(ComponentManagerProfiler.class));
+    }
+
+    @Test
+    public void profileTraceIsValidJSON() throws Exception
+    {
+        final ComponentProfiler profiler = new ComponentProfiler();
+        final DefaultComponentDescriptor<Role> cd = new DefaultComponentDescriptor<Role>();
+        cd.setRoleType(Role.class);
+        cd.setImplementation(RoleImpl.class);
+
+        Thread thread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                profiler.created(cd, profiler.start());
+            }
+        }, "quote\" backslash\\ tab\t");
+        thread.start();
+        thread.join();
+
+        StringWriter writer = new StringWriter();
+        profiler.writeTrace(writer);
+        String trace = writer.toString();
+        Assert.assertTrue(trace, trace.contains("{\"name\":\"quote\\\" backslash\\\\ tab\\u0009\"}"));
+    }
+
+    private void registerCollectionsComponent(EmbeddableComponentManager ecm, Class< ? > implementation)
+        throws Exception
+    {
+        DefaultComponentDescriptor<Object> cd = new DefaultComponentDescriptor<Object>();
+        cd.setRoleType(implementation);
+        cd.setImplementation(implementation);
+        DefaultComponentDependency<List<Role>> listDependency = new DefaultComponentDependency<List<Role>>();
+        listDependency.setRoleType(new DefaultParameterizedType(null, List.class, Role.class));
+        listDependency.setName("list");
+        cd.addComponentDependency(listDependency);
+        DefaultComponentDependency<Map<String, Role>> mapDependency =
+            new DefaultComponentDependency<Map<String, Role>>();
+        mapDependency.setRoleType(new DefaultParameterizedType(null, Map.class, String.class, Role.class));
+        mapDependency.setName("map");
+        cd.addComponentDependency(mapDependency);
+        ecm.registerComponent(cd);
+    }
+
+    private void registerDependencyComponent(EmbeddableComponentManager ecm,
+        Class< ? extends DependencyRoleImpl> implementation, String hint, String dependencyHint) throws Exception
+    {
+        DefaultComponentDescriptor<Role> cd = new DefaultComponentDescriptor<Role>();
+        cd.setRoleType(Role.class);
+        cd.setRoleHint(hint);
+        cd.setImplementation(implementation);
+
+        if (dependencyHint != null) {
+            DefaultComponentDependency<Role> dependencyDescriptor = new DefaultComponentDependency<Role>();
+            dependencyDescriptor.setRoleType(Role.class);
+            dependencyDescriptor.setRoleHint(dependencyHint);
+            dependencyDescriptor.setName("dependency");
+            cd.addComponentDependency(dependencyDescriptor);
+        }
+
+        ecm.registerComponent(cd);
+    }
+
     private ComponentManager createParentComponentManager() throws Exception
     {
         return createParentComponentManager(null);
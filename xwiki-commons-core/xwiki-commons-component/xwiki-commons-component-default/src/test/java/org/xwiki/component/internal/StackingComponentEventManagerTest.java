@@ -20,6 +20,7 @@
 package org.xwiki.component.internal;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 
 import org.jmock.Expectations;
@@ -31,6 +32,7 @@
 import org.xwiki.component.event.ComponentDescriptorAddedEvent;
 import org.xwiki.component.event.ComponentDescriptorRemovedEvent;
 import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.observation.EventNotification;
 import org.xwiki.observation.ObservationManager;
 
 /**
@@ -97,17 +99,17 @@ public void flushEvents()
         final ComponentDescriptorRemovedEvent removedEvent =
             new ComponentDescriptorRemovedEvent(this.descriptor2.getRoleType(), this.descriptor2.getRoleHint());
 
+        // The stacked events are sent in one batch, last stacked first
+        final Collection<EventNotification> notifications =
+            Arrays.asList(new EventNotification(removedEvent, this.mockComponentManager, this.descriptor2),
+                new EventNotification(removedEvent, null, this.descriptor2), new EventNotification(addedEvent,
+                    this.mockComponentManager, this.descriptor1), new EventNotification(addedEvent, null,
+                    this.descriptor1));
+
         this.mockery.checking(new Expectations()
         {
             {
-                oneOf(mockObservationManager).notify(with(equal(addedEvent)), with(same(mockComponentManager)),
-                    with(same(descriptor1)));
-                oneOf(mockObservationManager).notify(with(equal(addedEvent)), with(aNull(Object.class)),
-                    with(same(descriptor1)));
-                oneOf(mockObservationManager).notify(with(equal(removedEvent)), with(same(mockComponentManager)),
-                    with(same(descriptor2)));
-                oneOf(mockObservationManager).notify(with(equal(removedEvent)), with(aNull(Object.class)),
-                    with(same(descriptor2)));
+                oneOf(mockObservationManager).notify(with(equal(notifications)));
             }
         });
 
@@ -0,0 +1,147 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.context;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Typed key of an {@link ExecutionContext} property. Each key is associated to a small index when created so that the
+ * execution context can store the property in an array slot instead of a hash map.
+ * <p>
+ * The properties declared with a key are still accessible with the {@link String} API using the key name.
+ * 
+ * @param <T> the type of the property value
+ * @version $Id$
+ * @since 5.4M1
+ */
+public final class ContextKey<T>
+{
+    /**
+     * The created keys, indexed by name.
+     */
+    private static final ConcurrentMap<String, ContextKey< ? >> KEYS = new ConcurrentHashMap<String, ContextKey< ? >>();
+
+    /**
+     * The name of the property.
+     */
+    private final String name;
+
+    /**
+     * The type of the property value.
+     */
+    private final Class<T> type;
+
+    /**
+     * The index of the slot where the property is stored.
+     */
+    private final int index;
+
+    /**
+     * @param name the name of the property
+     * @param type the type of the property value
+     * @param index the index of the slot where the property is stored
+     */
+    private ContextKey(String name, Class<T> type, int index)
+    {
+        this.name = name;
+        this.type = type;
+        this.index = index;
+    }
+
+    /**
+     * Get the key associated to the passed property name, creating it the first time.
+     * 
+     * @param <T> the type of the property value
+     * @param name the name of the property
+     * @param type the type of the property value
+     * @return the key
+     * @throws IllegalArgumentException if a key already exist for this name with a type of a different name
+     */
+    public static <T> ContextKey<T> get(String name, Class<T> type)
+    {
+        ContextKey< ? > key = KEYS.get(name);
+
+        if (key == null || key.type != type) {
+            synchronized (KEYS) {
+                key = KEYS.get(name);
+                if (key == null) {
+                    key = new ContextKey<T>(name, type, KEYS.size());
+                    KEYS.put(name, key);
+                } else if (key.type != type) {
+                    if (!key.type.getName().equals(type.getName())) {
+                        throw new IllegalArgumentException(String.format(
+                            "The property [%s] is already associated to type [%s] and can't be associated to type "
+                                + "[%s]", name, key.type, type));
+                    }
+
+                    // Same class loaded by another class loader (e.g. a reloaded extension): keep the same slot
+                    key = new ContextKey<T>(name, type, key.index);
+                    KEYS.put(name, key);
+                }
+            }
+        }
+
+        // Safe since the type of the key has just been checked
+        @SuppressWarnings("unchecked")
+        ContextKey<T> typedKey = (ContextKey<T>) key;
+
+        return typedKey;
+    }
+
+    /**
+     * @param name the name of the property
+     * @return the key associated to the passed property name, {@code null} if none has been created
+     */
+    static ContextKey< ? > lookup(String name)
+    {
+        return KEYS.get(name);
+    }
+
+    /**
+     * @return the name of the property
+     */
+    public String getName()
+    {
+        return this.name;
+    }
+
+    /**
+     * @return the type of the property value
+     */
+    public Class<T> getType()
+    {
+        return this.type;
+    }
+
+    /**
+     * @return the index of the slot where the property is stored
+     */
+    int getIndex()
+    {
+        return this.index;
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.name;
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.context;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.xwiki.context.internal.ExecutionContextProperty;
+
+/**
+ * The properties of an {@link ExecutionContext}. The properties having a {@link ContextKey} are stored in the slot of
+ * the key index and the other ones in a map.
+ * 
+ * @version $Id$
+ * @since 5.4M1
+ */
+final class ContextProperties
+{
+    /**
+     * Slots of an instance not containing any keyed property.
+     */
+    private static final ExecutionContextProperty[] NO_SLOTS = new ExecutionContextProperty[0];
+
+    /**
+     * The properties having a {@link ContextKey} at the time they were added, indexed by key index.
+     */
+    private ExecutionContextProperty[] slots = NO_SLOTS;
+
+    /**
+     * The properties without {@link ContextKey} at the time they were added.
+     */
+    private final Map<String, ExecutionContextProperty> named = new HashMap<String, ExecutionContextProperty>();
+
+    /**
+     * The number of properties.
+     */
+    private int size;
+
+    /**
+     * The number of properties whose value is cloned with the property.
+     */
+    private int cloneValueCount;
+
+    /**
+     * @param key the name of the property
+     * @return the property, {@code null} if none is associated to the passed name
+     */
+    ExecutionContextProperty get(String key)
+    {
+        ContextKey< ? > contextKey = ContextKey.lookup(key);
+
+        return contextKey != null ? get(contextKey) : this.named.get(key);
+    }
+
+    /**
+     * @param key the key of the property
+     * @return the property, {@code null} if none is associated to the passed key
+     */
+    ExecutionContextProperty get(ContextKey< ? > key)
+    {
+        int index = key.getIndex();
+        ExecutionContextProperty property = index < this.slots.length ? this.slots[index] : null;
+
+        if (property == null && !this.named.isEmpty()) {
+            // The property might have been added before the key was created
+            property = this.named.get(key.getName());
+        }
+
+        return property;
+    }
+
+    /**
+     * @param property the property to add, not already in this instance
+     */
+    void add(ExecutionContextProperty property)
+    {
+        ContextKey< ? > contextKey = ContextKey.lookup(property.getKey());
+
+        if (contextKey != null) {
+            int index = contextKey.getIndex();
+            if (index >= this.slots.length) {
+                this.slots = Arrays.copyOf(this.slots, index + 1);
+            }
+            this.slots[index] = property;
+        } else {
+            this.named.put(property.getKey(), property);
+        }
+
+        count(property, 1);
+    }
+
+    /**
+     * @param property the added or removed property
+     * @param delta 1 when the property is added, -1 when it's removed
+     */
+    private void count(ExecutionContextProperty property, int delta)
+    {
+        this.size += delta;
+        if (property.isCloneValue()) {
+            this.cloneValueCount += delta;
+        }
+    }
+
+    /**
+     * @param key the name of the property to remove
+     */
+    void remove(String key)
+    {
+        ContextKey< ? > contextKey = ContextKey.lookup(key);
+        int index = contextKey != null ? contextKey.getIndex() : this.slots.length;
+
+        ExecutionContextProperty property;
+        if (index < this.slots.length && this.slots[index] != null) {
+            property = this.slots[index];
+            this.slots[index] = null;
+        } else {
+            property = this.named.remove(key);
+        }
+
+        if (property != null) {
+            count(property, -1);
+        }
+    }
+
+    /**
+     * @return the number of properties
+     */
+    int size()
+    {
+        return this.size;
+    }
+
+    /**
+     * @return true if there isn't any property
+     */
+    boolean isEmpty()
+    {
+        return this.size == 0;
+    }
+
+    /**
+     * @return true if the value of one of the properties is cloned with the property
+     */
+    boolean hasCloneValue()
+    {
+        return this.cloneValueCount > 0;
+    }
+
+    /**
+     * @return the properties
+     */
+    List<ExecutionContextProperty> values()
+    {
+        List<ExecutionContextProperty> values = new ArrayList<ExecutionContextProperty>(this.size);
+
+        for (ExecutionContextProperty property : this.slots) {
+            if (property != null) {
+                values.add(property);
+            }
+        }
+        values.addAll(this.named.values());
+
+        return values;
+    }
+
+    /**
+     * @return a copy of this instance in which the properties which are not final are copied too
+     */
+    ContextProperties copy()
+    {
+        ContextProperties copy = new ContextProperties();
+
+        copy.slots = this.slots.length > 0 ? new ExecutionContextProperty[this.slots.length] : NO_SLOTS;
+        for (int i = 0; i < this.slots.length; ++i) {
+            copy.slots[i] = copy(this.slots[i]);
+        }
+        for (ExecutionContextProperty property : this.named.values()) {
+            copy.named.put(property.getKey(), copy(property));
+        }
+        copy.size = this.size;
+        copy.cloneValueCount = this.cloneValueCount;
+
+        return copy;
+    }
+
+    /**
+     * @param property the property to copy
+     * @return the copied property
+     */
+    private ExecutionContextProperty copy(ExecutionContextProperty property)
+    {
+        // The value of a final property never change so there is no need to copy it
+        return property == null || property.isFinal() ? property : property.copy();
+    }
+
+    /**
+     * @return the inherited properties of this instance, this instance itself if all its properties are inherited
+     */
+    ContextProperties getInherited()
+    {
+        ContextProperties inherited = new ContextProperties();
+
+        inherited.slots = this.slots.length > 0 ? new ExecutionContextProperty[this.slots.length] : NO_SLOTS;
+        for (int i = 0; i < this.slots.length; ++i) {
+            ExecutionContextProperty property = this.slots[i];
+            if (property != null && property.isInherited()) {
+                inherited.slots[i] = property;
+                inherited.count(property, 1);
+            }
+        }
+        for (ExecutionContextProperty property : this.named.values()) {
+            if (property.isInherited()) {
+                inherited.named.put(property.getKey(), property);
+                inherited.count(property, 1);
+            }
+        }
+
+        return inherited.size == this.size ? this : inherited;
+    }
+}
@@ -19,8 +19,12 @@
  */
 package org.xwiki.context;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.Map;
-import java.util.HashMap;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,7 +46,19 @@
     /**
      * @see #getProperty(String)
      */
-    private Map<String, ExecutionContextProperty> properties = new HashMap<String, ExecutionContextProperty>();
+    private ContextProperties properties = new ContextProperties();
+
+    /**
+     * Indicate that {@link #properties} and the properties it contains may be shared with other execution contexts or
+     * with maps returned by {@link #getProperties()}, in which case they must be copied before being modified.
+     */
+    private boolean shared;
+
+    /**
+     * The properties to inherit from this context, shared with the contexts which inherited them. {@code null} when not
+     * computed yet or outdated.
+     */
+    private ContextProperties inheritedProperties;
 
     /**
      * @param key the key under which is stored the property to retrieve
@@ -50,8 +66,35 @@
      */
     public Object getProperty(String key)
     {
-        ExecutionContextProperty property = properties.get(key);
+        return getValue(key, properties.get(key));
+    }
 
+    /**
+     * @param <T> the type of the property value
+     * @param key the key under which is stored the property to retrieve
+     * @return the value of the property matching the passed key
+     * @since 5.4M1
+     */
+    public <T> T getProperty(ContextKey<T> key)
+    {
+        Object value = getValue(key, properties.get(key));
+
+        // The property might have been set with the String API
+        if (value != null && !key.getType().isInstance(value)) {
+            throw new ClassCastException(String.format("The value of property [%s] is of type [%s] instead of [%s]",
+                key, value.getClass().getName(), key.getType().getName()));
+        }
+
+        return key.getType().cast(value);
+    }
+
+    /**
+     * @param key the key of the property
+     * @param property the property, {@code null} if not declared
+     * @return the value of the property
+     */
+    private Object getValue(Object key, ExecutionContextProperty property)
+    {
         if (property == null) {
             LOGGER.debug("Getting undefined property {} from execution context.", key);
             return null;
@@ -70,36 +113,101 @@ public DeclarationBuilder newProperty(String key)
         return new DeclarationBuilder(key);
     }
 
+    /**
+     * @param key the key of the property
+     * @return a builder object for performing the declaration, with the type of the key. The property will not be
+     *         declared until the declare method is called on the builder object.
+     * @since 5.4M1
+     */
+    public DeclarationBuilder newProperty(ContextKey< ? > key)
+    {
+        return new DeclarationBuilder(key.getName()).type(key.getType());
+    }
+
     /**
      * @param key the key under which is stored the property to retrieve
      * @return {@code true} if there is a property declared for the given key.
      */
     public boolean hasProperty(String key)
     {
-        return properties.containsKey(key);
+        return properties.get(key) != null;
+    }
+
+    /**
+     * @param key the key under which is stored the property to retrieve
+     * @return {@code true} if there is a property declared for the given key
+     * @since 5.4M1
+     */
+    public boolean hasProperty(ContextKey< ? > key)
+    {
+        return properties.get(key) != null;
     }
 
     /**
-     * @return all the context properties
+     * Since 5.4M1 the returned map is a read only snapshot which throws {@link UnsupportedOperationException} when
+     * modified, while it used to be a new modifiable {@link java.util.HashMap}: callers which modify the result have
+     * to copy it first.
+     *
+     * @return all the context properties, as a read only snapshot
      */
     public Map<String, Object> getProperties()
     {
-        Map<String, Object> map = new HashMap<String, Object>();
+        this.shared = true;
 
-        for (Map.Entry<String, ExecutionContextProperty> entry : properties.entrySet()) {
-            map.put(entry.getKey(), entry.getValue().getValue());
+        return new PropertiesMap(this.properties);
+    }
+
+    /**
+     * Make sure the properties are not shared with anything else before modifying them.
+     */
+    private void prepareModification()
+    {
+        if (this.shared) {
+            this.properties = this.properties.copy();
+            this.shared = false;
+        }
+
+        this.inheritedProperties = null;
+    }
+
+    /**
+     * @return the properties to inherit from this context, not to be modified
+     */
+    private ContextProperties getInheritedProperties()
+    {
+        if (this.inheritedProperties == null) {
+            this.inheritedProperties = this.properties.getInherited();
         }
 
-        return map;
+        // The inherited properties are going to be shared
+        this.shared = true;
+
+        return this.inheritedProperties;
     }
-    
+
     /**
      * @param key remove the property whose key matches the passed key
      */
     public void removeProperty(String key)
     {
-        ExecutionContextProperty property = properties.get(key);
+        removeProperty(key, properties.get(key));
+    }
+
+    /**
+     * @param key remove the property whose key matches the passed key
+     * @since 5.4M1
+     */
+    public void removeProperty(ContextKey< ? > key)
+    {
+        removeProperty(key.getName(), properties.get(key));
+    }
 
+    /**
+     * @param key the key of the property to remove
+     * @param property the property to remove, {@code null} if not declared
+     */
+    private void removeProperty(String key, ExecutionContextProperty property)
+    {
         if (property == null) {
             LOGGER.warn("Tried to remove non-existing property [{}] from execution context.", key);
             return;
@@ -109,6 +217,8 @@ public void removeProperty(String key)
             throw new PropertyIsFinalException(key);
         }
 
+        prepareModification();
+
         this.properties.remove(key);
     }
 
@@ -118,14 +228,39 @@ public void removeProperty(String key)
      */
     public void setProperty(String key, Object value)
     {
-        ExecutionContextProperty property = properties.get(key);
+        setValue(key, properties.get(key), value, null);
+    }
+
+    /**
+     * @param <T> the type of the property value
+     * @param key the key under which to save the passed property value
+     * @param value the value to set
+     * @since 5.4M1
+     */
+    public <T> void setProperty(ContextKey<T> key, T value)
+    {
+        setValue(key.getName(), properties.get(key), value, key.getType());
+    }
+
+    /**
+     * @param key the key of the property
+     * @param currentProperty the property, {@code null} if not declared
+     * @param value the value to set
+     * @param type the type of the value if the property need to be declared
+     */
+    private void setValue(String key, ExecutionContextProperty currentProperty, Object value, Class< ? > type)
+    {
+        ExecutionContextProperty property = currentProperty;
 
         if (property == null) {
             LOGGER.debug("Implicit declaration of property {}.", key);
-            newProperty(key).declare();
-            property = properties.get(key);
+            property = new ExecutionContextProperty(key, null, false, false, false, false, type);
+            declareProperty(property);
         } else if (property.isFinal()) {
             throw new PropertyIsFinalException(key);
+        } else if (this.shared) {
+            prepareModification();
+            property = properties.get(key);
         }
 
         property.setValue(value);
@@ -152,11 +287,13 @@ public void setProperties(Map<String, Object> properties)
      */
     private void declareProperty(ExecutionContextProperty property)
     {
-        if (properties.containsKey(property.getKey())) {
+        if (properties.get(property.getKey()) != null) {
             throw new PropertyAlreadyExistsException(property.getKey());
         }
 
-        properties.put(property.getKey(), property);
+        prepareModification();
+
+        properties.add(property);
     }
 
     /**
@@ -170,6 +307,9 @@ private void declareProperty(ExecutionContextProperty property)
      *
      * It is an error if this context contain a value that was declared as 'inherited' and 'final' in the inherited
      * execution context and an exception will be thrown.
+     *
+     * When this context is empty the inherited properties are shared with the inherited context, each context copying
+     * them the first time it modifies its properties.
      * 
      * @param executionContext The execution to inherit.
      * @throws IllegalStateException if the execution context cannot be inherited.
@@ -177,12 +317,80 @@ private void declareProperty(ExecutionContextProperty property)
      */
     public void inheritFrom(ExecutionContext executionContext)
     {
-        for (ExecutionContextProperty property : executionContext.properties.values()) {
-            if (property.isInherited()) {
-                if (this.properties.containsKey(property.getKey())) {
-                    checkIfInheritedPropertyMayBeIgnored(property);
-                } else {
+        ContextProperties inherited = executionContext.getInheritedProperties();
+
+        if (this.properties.isEmpty() && !inherited.hasCloneValue()) {
+            this.properties = inherited;
+            this.shared = true;
+            this.inheritedProperties = inherited;
+        } else {
+            for (ExecutionContextProperty property : inherited.values()) {
+                inheritProperty(property);
+            }
+        }
+    }
+
+    /**
+     * Inherit some of the properties marked for inheritance from the given execution context.
+     *
+     * @param executionContext the execution to inherit
+     * @param keys the keys of the properties to inherit, the keys of properties not marked for inheritance or not
+     *            declared in the inherited context are ignored
+     * @throws IllegalStateException if the execution context cannot be inherited
+     * @see #inheritFrom(ExecutionContext)
+     * @since 5.4M1
+     */
+    public void inheritFrom(ExecutionContext executionContext, Collection<String> keys)
+    {
+        ContextProperties inherited = executionContext.getInheritedProperties();
+
+        for (String key : keys) {
+            ExecutionContextProperty property = inherited.get(key);
+            if (property != null) {
+                inheritProperty(property);
+            }
+        }
+    }
+
+    /**
+     * @param property the property to inherit
+     * @throws IllegalStateException if the property cannot be inherited
+     */
+    private void inheritProperty(ExecutionContextProperty property)
+    {
+        if (this.properties.get(property.getKey()) != null) {
+            checkIfInheritedPropertyMayBeIgnored(property);
+        } else {
+            declareProperty(property.clone());
+        }
+    }
+
+    /**
+     * Copy the properties of a prototype execution context in this context, as if the initializers which filled the
+     * prototype were called on this context.
+     *
+     * The values of the properties declared with {@link DeclarationBuilder#cloneValue()} are cloned, the other ones
+     * are shared with the prototype. When this context is empty the properties are shared with the prototype until
+     * this context modifies them.
+     *
+     * @param prototype the execution context to copy, not modified afterward
+     * @throws PropertyIsFinalException if a property of the prototype is final in this context
+     * @since 5.4M1
+     */
+    public void copyFrom(ExecutionContext prototype)
+    {
+        if (this.properties.isEmpty() && !prototype.properties.hasCloneValue()) {
+            prototype.shared = true;
+            this.properties = prototype.properties;
+            this.shared = true;
+            this.inheritedProperties = null;
+        } else {
+            for (ExecutionContextProperty property : prototype.properties.values()) {
+                ExecutionContextProperty currentProperty = this.properties.get(property.getKey());
+                if (currentProperty == null) {
                     declareProperty(property.clone());
+                } else {
+                    setValue(property.getKey(), currentProperty, property.clone().getValue(), null);
                 }
             }
         }
@@ -205,6 +413,121 @@ private void checkIfInheritedPropertyMayBeIgnored(ExecutionContextProperty prope
         }
     }
 
+    /**
+     * Read-only view of the values of properties which are never modified.
+     */
+    private static final class PropertiesMap extends AbstractMap<String, Object>
+    {
+        /**
+         * The viewed properties.
+         */
+        private final ContextProperties properties;
+
+        /**
+         * @param properties the viewed properties
+         */
+        PropertiesMap(ContextProperties properties)
+        {
+            this.properties = properties;
+        }
+
+        @Override
+        public int size()
+        {
+            return this.properties.size();
+        }
+
+        @Override
+        public boolean containsKey(Object key)
+        {
+            return key instanceof String && this.properties.get((String) key) != null;
+        }
+
+        @Override
+        public Object get(Object key)
+        {
+            ExecutionContextProperty property = key instanceof String ? this.properties.get((String) key) : null;
+
+            return property != null ? property.getValue() : null;
+        }
+
+        @Override
+        public Set<Map.Entry<String, Object>> entrySet()
+        {
+            return new PropertiesEntrySet(this.properties);
+        }
+    }
+
+    /**
+     * Read-only set of the entries of a {@link PropertiesMap}.
+     */
+    private static final class PropertiesEntrySet extends AbstractSet<Map.Entry<String, Object>>
+    {
+        /**
+         * The viewed properties.
+         */
+        private final ContextProperties properties;
+
+        /**
+         * @param properties the viewed properties
+         */
+        PropertiesEntrySet(ContextProperties properties)
+        {
+            this.properties = properties;
+        }
+
+        @Override
+        public int size()
+        {
+            return this.properties.size();
+        }
+
+        @Override
+        public Iterator<Map.Entry<String, Object>> iterator()
+        {
+            return new PropertiesEntryIterator(this.properties.values().iterator());
+        }
+    }
+
+    /**
+     * Read-only iterator over the entries of a {@link PropertiesMap}.
+     */
+    private static final class PropertiesEntryIterator implements Iterator<Map.Entry<String, Object>>
+    {
+        /**
+         * The iterator over the viewed properties.
+         */
+        private final Iterator<ExecutionContextProperty> iterator;
+
+        /**
+         * @param iterator the iterator over the viewed properties
+         */
+        PropertiesEntryIterator(Iterator<ExecutionContextProperty> iterator)
+        {
+            this.iterator = iterator;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return this.iterator.hasNext();
+        }
+
+        @Override
+        public Map.Entry<String, Object> next()
+        {
+            ExecutionContextProperty property = this.iterator.next();
+
+            return new AbstractMap.SimpleImmutableEntry<String, Object>(property.getKey(), property.getValue());
+        }
+
+        @Override
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+
     /**
      * Builder class for declaring a new proprety.
      *
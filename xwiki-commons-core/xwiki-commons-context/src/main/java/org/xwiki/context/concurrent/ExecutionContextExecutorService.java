@@ -0,0 +1,211 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.context.concurrent;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+
+/**
+ * Thread pool executing the tasks in an {@link ExecutionContext} inheriting the properties of the execution context of
+ * the thread which submitted them.
+ * <p>
+ * The inherited properties are captured when the task is submitted and restored in the thread executing it without
+ * calling the {@link org.xwiki.context.ExecutionContextInitializer}s. Tasks needing a fully initialized execution
+ * context should use {@link ExecutionContextRunnable} instead.
+ * 
+ * @version $Id$
+ * @since 5.4M1
+ */
+public class ExecutionContextExecutorService extends ThreadPoolExecutor
+{
+    /**
+     * Used to capture and restore the execution contexts.
+     */
+    private final Execution execution;
+
+    /**
+     * The keys of the properties to capture, {@code null} to capture all the inherited properties.
+     */
+    private final Collection<String> propertyKeys;
+
+    /**
+     * The time when the executor was created, in nanoseconds.
+     */
+    private final long creationTime = System.nanoTime();
+
+    /**
+     * The total time spent executing tasks, in nanoseconds.
+     */
+    private final AtomicLong busyTime = new AtomicLong();
+
+    /**
+     * The number of submitted tasks.
+     */
+    private final AtomicLong submittedTaskCount = new AtomicLong();
+
+    /**
+     * Wrap a task to execute it in the execution context captured when it was submitted.
+     */
+    private class ContextRunnable implements Runnable
+    {
+        /**
+         * The task.
+         */
+        private final Runnable command;
+
+        /**
+         * The context holding the captured properties.
+         */
+        private final ExecutionContext context;
+
+        /**
+         * @param command the task
+         * @param context the context holding the captured properties
+         */
+        ContextRunnable(Runnable command, ExecutionContext context)
+        {
+            this.command = command;
+            this.context = context;
+        }
+
+        @Override
+        public void run()
+        {
+            // The task might be executed by the thread which submitted it
+            boolean hasContext = execution.getContext() != null;
+
+            execution.pushContext(this.context);
+
+            long startTime = System.nanoTime();
+            try {
+                this.command.run();
+            } finally {
+                busyTime.addAndGet(System.nanoTime() - startTime);
+
+                if (hasContext) {
+                    execution.popContext();
+                } else {
+                    execution.removeContext();
+                }
+            }
+        }
+    }
+
+    /**
+     * @param threads the number of threads executing the tasks
+     * @param threadFactory the factory used to create the threads executing the tasks
+     * @param componentManager used to lookup the {@link Execution}
+     * @throws ComponentLookupException when failing to lookup the {@link Execution}
+     */
+    public ExecutionContextExecutorService(int threads, ThreadFactory threadFactory, ComponentManager componentManager)
+        throws ComponentLookupException
+    {
+        this(threads, threadFactory, componentManager.<Execution>getInstance(Execution.class), null);
+    }
+
+    /**
+     * @param threads the number of threads executing the tasks
+     * @param threadFactory the factory used to create the threads executing the tasks
+     * @param execution used to capture and restore the execution contexts
+     * @param propertyKeys the keys of the inherited properties to capture, {@code null} to capture all the inherited
+     *            properties
+     */
+    public ExecutionContextExecutorService(int threads, ThreadFactory threadFactory, Execution execution,
+        Collection<String> propertyKeys)
+    {
+        super(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), threadFactory);
+
+        this.execution = execution;
+        this.propertyKeys = propertyKeys != null ? new ArrayList<String>(propertyKeys) : null;
+    }
+
+    @Override
+    protected void beforeExecute(Thread thread, Runnable task)
+    {
+        super.beforeExecute(thread, task);
+
+        // Forget what a previous task might have left in the thread
+        // so that the task only sees the properties captured when it was submitted
+        this.execution.removeContext();
+    }
+
+    @Override
+    public void execute(Runnable command)
+    {
+        ExecutionContext context = new ExecutionContext();
+
+        ExecutionContext currentContext = this.execution.getContext();
+        if (currentContext != null) {
+            if (this.propertyKeys != null) {
+                context.inheritFrom(currentContext, this.propertyKeys);
+            } else {
+                context.inheritFrom(currentContext);
+            }
+        }
+
+        super.execute(new ContextRunnable(command, context));
+
+        this.submittedTaskCount.incrementAndGet();
+    }
+
+    /**
+     * @return the number of tasks waiting to be executed
+     */
+    public int getQueueSize()
+    {
+        return getQueue().size();
+    }
+
+    /**
+     * @return the number of submitted tasks
+     */
+    public long getSubmittedTaskCount()
+    {
+        return this.submittedTaskCount.get();
+    }
+
+    /**
+     * @return the total time spent executing tasks, in milliseconds
+     */
+    public long getBusyTime()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(this.busyTime.get());
+    }
+
+    /**
+     * @return the part of the threads time spent executing tasks since the executor was created, between 0 and 1
+     */
+    public double getUtilization()
+    {
+        long capacity = (System.nanoTime() - this.creationTime) * getMaximumPoolSize();
+
+        return capacity > 0 ? Math.min(1D, (double) this.busyTime.get() / capacity) : 0D;
+    }
+}
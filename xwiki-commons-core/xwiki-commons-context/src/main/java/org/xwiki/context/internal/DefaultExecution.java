@@ -19,7 +19,8 @@
  */
 package org.xwiki.context.internal;
 
-import java.util.Stack;
+import java.util.Arrays;
+import java.util.EmptyStackException;
 
 import javax.inject.Singleton;
 
@@ -31,6 +32,9 @@
  * Holds the Execution Context object. Note that we require this Execution component since we want to be able to pass
  * the Execution Context to singleton components. Thus this holder is a singleton itself and the Execution Context is
  * saved as a ThreadLocal variable.
+ * <p>
+ * When the {@value #SCOPED_PROPERTY} system property is {@code true} the Execution Context is bound using a
+ * {@link ScopedExecution} instead.
  * 
  * @version $Id$
  * @since 1.5M2
@@ -39,59 +43,164 @@
 @Singleton
 public class DefaultExecution implements Execution
 {
+    /**
+     * The system property indicating if the execution context should be bound using a {@link ScopedExecution}.
+     * 
+     * @since 5.4M1
+     */
+    public static final String SCOPED_PROPERTY = "xwiki.execution.scoped";
+
     /**
      * Isolate the execution context by thread.
      */
-    private ThreadLocal<Stack<ExecutionContext>> context = new ThreadLocal<Stack<ExecutionContext>>();
+    private ThreadLocal<ContextStack> context = new ThreadLocal<ContextStack>();
+
+    /**
+     * The implementation to use instead of the thread stack, {@code null} when the thread stack is used.
+     */
+    private final Execution scopedExecution = Boolean.getBoolean(SCOPED_PROPERTY) ? new ScopedExecution() : null;
+
+    /**
+     * Unsynchronized stack of execution contexts, only accessed by the thread it's associated to.
+     */
+    private static final class ContextStack
+    {
+        /**
+         * The initial capacity of the stack.
+         */
+        private static final int INITIAL_CAPACITY = 8;
+
+        /**
+         * The stacked contexts.
+         */
+        private ExecutionContext[] elements = new ExecutionContext[INITIAL_CAPACITY];
+
+        /**
+         * The number of stacked contexts.
+         */
+        private int size;
+
+        /**
+         * @return true if the stack does not contain any context
+         */
+        boolean isEmpty()
+        {
+            return this.size == 0;
+        }
+
+        /**
+         * @return the context at the top of the stack
+         */
+        ExecutionContext peek()
+        {
+            if (this.size == 0) {
+                throw new EmptyStackException();
+            }
+
+            return this.elements[this.size - 1];
+        }
+
+        /**
+         * @param context the context to put at the top of the stack
+         */
+        void push(ExecutionContext context)
+        {
+            if (this.size == this.elements.length) {
+                this.elements = Arrays.copyOf(this.elements, this.size * 2);
+            }
+
+            this.elements[this.size++] = context;
+        }
+
+        /**
+         * Remove the context at the top of the stack.
+         */
+        void pop()
+        {
+            if (this.size == 0) {
+                throw new EmptyStackException();
+            }
+
+            this.elements[--this.size] = null;
+        }
+
+        /**
+         * @param context the context replacing the one at the top of the stack
+         */
+        void set(ExecutionContext context)
+        {
+            this.elements[this.size - 1] = context;
+        }
+    }
 
     @Override
     public void pushContext(ExecutionContext context)
     {
-        Stack<ExecutionContext> stack = this.context.get();
-        if (stack == null) {
-            stack = new Stack<ExecutionContext>();
-            this.context.set(stack);
-        } else if (!stack.isEmpty()) {
-            context.inheritFrom(stack.peek());
-        }
+        if (this.scopedExecution != null) {
+            this.scopedExecution.pushContext(context);
+        } else {
+            ContextStack stack = this.context.get();
+            if (stack == null) {
+                stack = new ContextStack();
+                this.context.set(stack);
+            } else if (!stack.isEmpty()) {
+                context.inheritFrom(stack.peek());
+            }
 
-        stack.push(context);
+            stack.push(context);
+        }
     }
 
     @Override
     public void popContext()
     {
-        this.context.get().pop();
+        if (this.scopedExecution != null) {
+            this.scopedExecution.popContext();
+        } else {
+            this.context.get().pop();
+        }
     }
 
     @Override
     public ExecutionContext getContext()
     {
-        Stack<ExecutionContext> stack = this.context.get();
+        if (this.scopedExecution != null) {
+            return this.scopedExecution.getContext();
+        }
+
+        ContextStack stack = this.context.get();
         return stack == null || stack.isEmpty() ? null : stack.peek();
     }
 
     @Override
     public void setContext(ExecutionContext context)
     {
-        Stack<ExecutionContext> stack = this.context.get();
-        if (stack == null) {
-            stack = new Stack<ExecutionContext>();
-            this.context.set(stack);
-            stack.push(context);
-        } else if (stack.isEmpty()) {
-            stack.push(context);
+        if (this.scopedExecution != null) {
+            this.scopedExecution.setContext(context);
         } else {
-            if (context != null) {
-                context.inheritFrom(stack.peek());
+            ContextStack stack = this.context.get();
+            if (stack == null) {
+                stack = new ContextStack();
+                this.context.set(stack);
+                stack.push(context);
+            } else if (stack.isEmpty()) {
+                stack.push(context);
+            } else {
+                if (context != null) {
+                    context.inheritFrom(stack.peek());
+                }
+                stack.set(context);
             }
-            stack.set(stack.size() - 1, context);
         }
     }
 
     @Override
     public void removeContext()
     {
-        this.context.remove();
+        if (this.scopedExecution != null) {
+            this.scopedExecution.removeContext();
+        } else {
+            this.context.remove();
+        }
     }
 }
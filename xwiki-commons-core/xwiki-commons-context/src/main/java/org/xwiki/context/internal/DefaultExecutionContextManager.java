@@ -19,18 +19,26 @@
  */
 package org.xwiki.context.internal;
 
+import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.descriptor.ComponentDescriptor;
+import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
+import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.component.manager.ComponentManager;
 import org.xwiki.context.Execution;
 import org.xwiki.context.ExecutionContext;
 import org.xwiki.context.ExecutionContextException;
 import org.xwiki.context.ExecutionContextInitializer;
 import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.context.PrototypeInitializer;
 
 /**
  * Default implementation of {@link ExecutionContextManager}.
@@ -48,10 +56,185 @@ public class DefaultExecutionContextManager implements ExecutionContextManager
     private Execution execution;
 
     /**
-     * Used to initialize the passed {@link ExecutionContext}.
+     * Used to lookup the registered initializers.
      */
     @Inject
-    private List<ExecutionContextInitializer> initializers = new ArrayList<ExecutionContextInitializer>();
+    private ComponentManager componentManager;
+
+    /**
+     * The initializers added with {@link #addExecutionContextInitializer(ExecutionContextInitializer)}.
+     */
+    private final List<ExecutionContextInitializer> initializers =
+        new CopyOnWriteArrayList<ExecutionContextInitializer>();
+
+    /**
+     * The result of the {@link PrototypeInitializer}s and the other initializers, {@code null} when not built yet or
+     * outdated.
+     */
+    private volatile Prototype prototype;
+
+    /**
+     * A step of the initialization of an execution context.
+     */
+    private interface InitializationStep
+    {
+        /**
+         * @param context the execution context to initialize
+         * @throws ExecutionContextException when failing to initialize the execution context
+         */
+        void initialize(ExecutionContext context) throws ExecutionContextException;
+    }
+
+    /**
+     * Copy the properties set by consecutive {@link PrototypeInitializer}s.
+     */
+    private static final class CopyPrototypeStep implements InitializationStep
+    {
+        /**
+         * The context filled by the {@link PrototypeInitializer}s.
+         */
+        private final ExecutionContext prototypeContext = new ExecutionContext();
+
+        @Override
+        public void initialize(ExecutionContext context) throws ExecutionContextException
+        {
+            try {
+                context.copyFrom(this.prototypeContext);
+            } catch (RuntimeException e) {
+                throw new ExecutionContextException("Failed to initialize the execution context from the prototype.",
+                    e);
+            }
+        }
+    }
+
+    /**
+     * Call an initializer which is kept for the whole life of the prototype.
+     */
+    private static final class InitializerStep implements InitializationStep
+    {
+        /**
+         * The initializer to call.
+         */
+        private final ExecutionContextInitializer initializer;
+
+        /**
+         * @param initializer the initializer to call
+         */
+        InitializerStep(ExecutionContextInitializer initializer)
+        {
+            this.initializer = initializer;
+        }
+
+        @Override
+        public void initialize(ExecutionContext context) throws ExecutionContextException
+        {
+            this.initializer.initialize(context);
+        }
+    }
+
+    /**
+     * Lookup a registered initializer which is not a singleton each time it's called.
+     */
+    private final class LookupStep implements InitializationStep
+    {
+        /**
+         * The descriptor of the initializer to lookup.
+         */
+        private final ComponentDescriptor<ExecutionContextInitializer> descriptor;
+
+        /**
+         * @param descriptor the descriptor of the initializer to lookup
+         */
+        LookupStep(ComponentDescriptor<ExecutionContextInitializer> descriptor)
+        {
+            this.descriptor = descriptor;
+        }
+
+        @Override
+        public void initialize(ExecutionContext context) throws ExecutionContextException
+        {
+            lookupInitializer(this.descriptor).initialize(context);
+        }
+    }
+
+    /**
+     * The execution context filled by the {@link PrototypeInitializer}s and the other initializers, in the order they
+     * have to be applied on each initialized execution context.
+     */
+    private static final class Prototype
+    {
+        /**
+         * The descriptors of the registered initializers when the prototype was built, used to know when the
+         * prototype is outdated.
+         */
+        private final List<ComponentDescriptor<ExecutionContextInitializer>> descriptors;
+
+        /**
+         * The steps to apply, in the order of the initializers.
+         */
+        private final List<InitializationStep> steps = new ArrayList<InitializationStep>();
+
+        /**
+         * The step receiving the properties of the current {@link PrototypeInitializer}s, {@code null} when the last
+         * added initializer is not a {@link PrototypeInitializer}.
+         */
+        private CopyPrototypeStep currentCopy;
+
+        /**
+         * @param descriptors the descriptors of the registered initializers
+         */
+        Prototype(List<ComponentDescriptor<ExecutionContextInitializer>> descriptors)
+        {
+            this.descriptors = descriptors;
+        }
+
+        /**
+         * @param initializer the initializer to call now if it's a {@link PrototypeInitializer} or on each initialized
+         *            execution context otherwise
+         * @throws ExecutionContextException in case the {@link PrototypeInitializer} fails to execute
+         */
+        void addInitializer(ExecutionContextInitializer initializer) throws ExecutionContextException
+        {
+            if (isPrototypeInitializer(initializer.getClass())) {
+                if (this.currentCopy == null) {
+                    this.currentCopy = new CopyPrototypeStep();
+                    this.steps.add(this.currentCopy);
+                }
+                initializer.initialize(this.currentCopy.prototypeContext);
+            } else {
+                addStep(new InitializerStep(initializer));
+            }
+        }
+
+        /**
+         * @param step the step to apply on each initialized execution context
+         */
+        void addStep(InitializationStep step)
+        {
+            this.currentCopy = null;
+            this.steps.add(step);
+        }
+
+        /**
+         * @param currentDescriptors the descriptors of the currently registered initializers
+         * @return {@code true} if the prototype has been built from the same descriptors, compared by identity since
+         *         they are not recreated as long as the components are registered
+         */
+        boolean isBuiltFrom(List<ComponentDescriptor<ExecutionContextInitializer>> currentDescriptors)
+        {
+            if (this.descriptors.size() != currentDescriptors.size()) {
+                return false;
+            }
+
+            for (int i = 0; i < this.descriptors.size(); ++i) {
+                if (this.descriptors.get(i) != currentDescriptors.get(i)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
 
     /**
      * Default constructor.
@@ -74,6 +257,8 @@ public DefaultExecutionContextManager(Execution execution)
     @Override
     public ExecutionContext clone(ExecutionContext context) throws ExecutionContextException
     {
+        Prototype currentPrototype = getPrototype();
+
         ExecutionContext clonedContext = new ExecutionContext();
 
         // Ideally we would like to do a deep cloning here. However it's just too hard since we don't control
@@ -89,7 +274,7 @@ public ExecutionContext clone(ExecutionContext context) throws ExecutionContextE
             throw new ExecutionContextException("Failed to push cloned execution context.", e);
         }
         try {
-            runInitializers(clonedContext);
+            runInitializers(clonedContext, currentPrototype.steps);
         } finally {
             // #initialize set the context but we just want to clone it so we need to restore it
             this.execution.popContext();
@@ -101,6 +286,8 @@ public ExecutionContext clone(ExecutionContext context) throws ExecutionContextE
     @Override
     public void initialize(ExecutionContext context) throws ExecutionContextException
     {
+        Prototype currentPrototype = getPrototype();
+
         // Make sure we set Execution Context in the Execution component before we call the initialization
         // so that we don't get any NPE if some initializer code asks to get the Execution Context. This
         // happens for example with the Velocity Execution Context initializer which in turns calls the Velocity
@@ -115,20 +302,111 @@ public void initialize(ExecutionContext context) throws ExecutionContextExceptio
             throw new ExecutionContextException("Failed to set the execution context.", e);
         }
 
-        runInitializers(context);
+        // Copied after the inherited properties, as if the prototype initializers were called now
+        runInitializers(context, currentPrototype.steps);
+    }
+
+    /**
+     * @return the prototype associated to the current initializers, rebuilt when an initializer has been registered,
+     *         unregistered or added
+     * @throws ExecutionContextException in case one {@link PrototypeInitializer} fails to execute
+     */
+    private Prototype getPrototype() throws ExecutionContextException
+    {
+        List<ComponentDescriptor<ExecutionContextInitializer>> descriptors = getDescriptors();
+
+        Prototype currentPrototype = this.prototype;
+
+        if (currentPrototype == null || !currentPrototype.isBuiltFrom(descriptors)) {
+            synchronized (this) {
+                currentPrototype = this.prototype;
+                if (currentPrototype == null || !currentPrototype.isBuiltFrom(descriptors)) {
+                    currentPrototype = buildPrototype(descriptors);
+                    this.prototype = currentPrototype;
+                }
+            }
+        }
+
+        return currentPrototype;
+    }
+
+    /**
+     * @param descriptors the descriptors of the registered initializers
+     * @return the new prototype, applying the registered initializers and then the added ones in their order
+     * @throws ExecutionContextException in case one {@link PrototypeInitializer} fails to execute
+     */
+    private Prototype buildPrototype(List<ComponentDescriptor<ExecutionContextInitializer>> descriptors)
+        throws ExecutionContextException
+    {
+        Prototype newPrototype = new Prototype(descriptors);
+
+        for (ComponentDescriptor<ExecutionContextInitializer> descriptor : descriptors) {
+            // Initializers which are not singletons are looked up each time, as long as they don't fill the prototype
+            if (descriptor.getInstantiationStrategy() == ComponentInstantiationStrategy.SINGLETON
+                || isPrototypeInitializer(descriptor.getImplementation())) {
+                newPrototype.addInitializer(lookupInitializer(descriptor));
+            } else {
+                newPrototype.addStep(new LookupStep(descriptor));
+            }
+        }
+
+        for (ExecutionContextInitializer initializer : this.initializers) {
+            newPrototype.addInitializer(initializer);
+        }
+
+        return newPrototype;
+    }
+
+    /**
+     * @return the descriptors of the registered initializers
+     */
+    private List<ComponentDescriptor<ExecutionContextInitializer>> getDescriptors()
+    {
+        if (this.componentManager == null) {
+            return Collections.emptyList();
+        }
+
+        return this.componentManager.getComponentDescriptorList((Type) ExecutionContextInitializer.class);
+    }
+
+    /**
+     * @param descriptor the descriptor of the initializer
+     * @return the initializer
+     * @throws ExecutionContextException when failing to lookup the initializer
+     */
+    private ExecutionContextInitializer lookupInitializer(ComponentDescriptor<ExecutionContextInitializer> descriptor)
+        throws ExecutionContextException
+    {
+        try {
+            return this.componentManager.getInstance(descriptor.getRoleType(), descriptor.getRoleHint());
+        } catch (ComponentLookupException e) {
+            throw new ExecutionContextException("Failed to lookup the execution context initializer ["
+                + descriptor.getRoleHint() + "]", e);
+        }
+    }
+
+    /**
+     * @param implementation the implementation of an initializer
+     * @return {@code true} if the initializer fills the prototype
+     */
+    private static boolean isPrototypeInitializer(Class< ? > implementation)
+    {
+        return implementation.isAnnotationPresent(PrototypeInitializer.class);
     }
 
     /**
      * Run the initializers.
      *
      * @param context the execution context to initialize
+     * @param steps the initialization steps of the prototype
      * 
      * @throws ExecutionContextException in case one {@link ExecutionContextInitializer} fails to execute
      */
-    private void runInitializers(ExecutionContext context) throws ExecutionContextException
+    private void runInitializers(ExecutionContext context, List<InitializationStep> steps)
+        throws ExecutionContextException
     {
-        for (ExecutionContextInitializer initializer : this.initializers) {
-            initializer.initialize(context);
+        for (InitializationStep step : steps) {
+            step.initialize(context);
         }
     }
 
@@ -137,6 +415,10 @@ private void runInitializers(ExecutionContext context) throws ExecutionContextEx
      */
     public void addExecutionContextInitializer(ExecutionContextInitializer initializer)
     {
-        this.initializers.add(initializer);
+        // Synchronized with the build of the prototype so that it cannot miss the added initializer
+        synchronized (this) {
+            this.initializers.add(initializer);
+            this.prototype = null;
+        }
     }
 }
@@ -140,6 +140,15 @@ public boolean isInherited()
         return this.inherited;
     }
 
+    /**
+     * @return wether the value should be cloned when the property is cloned or not
+     * @since 5.4M1
+     */
+    public boolean isCloneValue()
+    {
+        return this.cloneValue;
+    }
+
     /**
      * @return the type of the value
      */
@@ -184,6 +193,23 @@ public ExecutionContextProperty clone()
         return clone;
     }
 
+    /**
+     * Copy this property without cloning its value, to let an execution context modify a property it used to share
+     * with other execution contexts.
+     *
+     * @return a copy of this property holding the same value
+     * @since 5.4M1
+     */
+    public ExecutionContextProperty copy()
+    {
+        ExecutionContextProperty copy = new ExecutionContextProperty(getKey(), getValue(), this.cloneValue, isFinal(),
+            isInherited(), this.nonNull, getType());
+
+        copy.clonedFrom = this.clonedFrom;
+
+        return copy;
+    }
+
     /**
      * Check that this instance was cloned from the specified instance.
      *
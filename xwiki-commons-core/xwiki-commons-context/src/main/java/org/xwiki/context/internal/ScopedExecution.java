@@ -0,0 +1,125 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.context.internal;
+
+import java.util.EmptyStackException;
+
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+
+/**
+ * {@link Execution} binding the current execution context in an immutable scope. Pushing a context creates a new scope
+ * linked to the current one instead of modifying a stack.
+ * <p>
+ * The created threads start without execution context: nothing is inherited implicitly since a thread can outlive the
+ * request which created it, as the threads of a pool do. Tasks which need the inherited properties of the current
+ * context should be submitted to an {@link org.xwiki.context.concurrent.ExecutionContextExecutorService}, which copies
+ * them when the task is submitted.
+ * 
+ * @version $Id$
+ * @since 5.4M1
+ */
+public class ScopedExecution implements Execution
+{
+    /**
+     * The current scope of each thread.
+     */
+    private final ThreadLocal<Scope> scope = new ThreadLocal<Scope>();
+
+    /**
+     * Immutable link between an execution context and the scope it has been pushed in.
+     */
+    private static final class Scope
+    {
+        /**
+         * The execution context.
+         */
+        private final ExecutionContext context;
+
+        /**
+         * The scope to restore when the context is popped.
+         */
+        private final Scope parent;
+
+        /**
+         * @param context the execution context
+         * @param parent the scope to restore when the context is popped
+         */
+        Scope(ExecutionContext context, Scope parent)
+        {
+            this.context = context;
+            this.parent = parent;
+        }
+    }
+
+    @Override
+    public void pushContext(ExecutionContext context)
+    {
+        Scope current = this.scope.get();
+        if (current != null && current.context != null) {
+            context.inheritFrom(current.context);
+        }
+
+        this.scope.set(new Scope(context, current));
+    }
+
+    @Override
+    public void popContext()
+    {
+        Scope current = this.scope.get();
+        if (current == null) {
+            throw new EmptyStackException();
+        }
+
+        if (current.parent != null) {
+            this.scope.set(current.parent);
+        } else {
+            this.scope.remove();
+        }
+    }
+
+    @Override
+    public ExecutionContext getContext()
+    {
+        Scope current = this.scope.get();
+
+        return current != null ? current.context : null;
+    }
+
+    @Override
+    public void setContext(ExecutionContext context)
+    {
+        Scope current = this.scope.get();
+        if (current == null) {
+            this.scope.set(new Scope(context, null));
+        } else {
+            if (context != null && current.context != null) {
+                context.inheritFrom(current.context);
+            }
+            this.scope.set(new Scope(context, current.parent));
+        }
+    }
+
+    @Override
+    public void removeContext()
+    {
+        this.scope.remove();
+    }
+}
@@ -22,7 +22,6 @@
 import org.junit.Test;
 import org.junit.Assert;
 
-import java.util.Map;
 import java.lang.reflect.Field;
 
 import org.xwiki.context.internal.ExecutionContextProperty;
@@ -41,15 +40,13 @@
      * @param key The property key
      * @return the execution context property corresponding to the given key.
      */
-    @SuppressWarnings("unchecked")
     private ExecutionContextProperty fetch(ExecutionContext context, String key) throws Exception
     {
         Field propertiesField = ExecutionContext.class.getDeclaredField("properties");
 
         propertiesField.setAccessible(true);
 
-        Map<String, ExecutionContextProperty> properties
-            = (Map<String, ExecutionContextProperty>) propertiesField.get(context);
+        ContextProperties properties = (ContextProperties) propertiesField.get(context);
 
         return properties.get(key);
     }
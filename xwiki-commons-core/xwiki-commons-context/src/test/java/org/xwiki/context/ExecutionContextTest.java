@@ -21,10 +21,14 @@
 
 import static org.hamcrest.Matchers.hasEntry;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -38,6 +42,10 @@
  */
 public class ExecutionContextTest
 {
+    public static class Value
+    {
+    }
+
     @Rule
     public LogRule logrule = new LogRule();
 
@@ -59,6 +67,57 @@ public void inheritance()
         assertTrue(context.getProperty("shadowed").equals("shadowed"));
     }
 
+    @Test
+    public void sharedInheritance()
+    {
+        ExecutionContext parent = new ExecutionContext();
+
+        parent.newProperty("inherited").inherited().initial("parent").declare();
+        parent.newProperty("final").inherited().initial("final").makeFinal().declare();
+        parent.newProperty("notinherited").initial("parent").declare();
+
+        ExecutionContext context = new ExecutionContext();
+        context.inheritFrom(parent);
+
+        assertEquals("parent", context.getProperty("inherited"));
+        assertFalse(context.hasProperty("notinherited"));
+
+        ExecutionContext child = new ExecutionContext();
+        child.inheritFrom(context);
+
+        context.setProperty("inherited", "context");
+        context.setProperty("other", "context");
+
+        assertEquals("parent", parent.getProperty("inherited"));
+        assertEquals("parent", child.getProperty("inherited"));
+        assertFalse(child.hasProperty("other"));
+
+        parent.setProperty("inherited", "parent2");
+        child.setProperty("inherited", "child");
+
+        assertEquals("parent2", parent.getProperty("inherited"));
+        assertEquals("context", context.getProperty("inherited"));
+        assertEquals("child", child.getProperty("inherited"));
+
+        // Inheriting again a final property shared with the parent is allowed
+        child.inheritFrom(context);
+        assertEquals("final", child.getProperty("final"));
+    }
+
+    @Test
+    public void inheritanceWithClonedValue()
+    {
+        ExecutionContext parent = new ExecutionContext();
+        HashMap<String, String> value = new HashMap<String, String>();
+        parent.newProperty("cloned").inherited().cloneValue().initial(value).declare();
+
+        ExecutionContext context = new ExecutionContext();
+        context.inheritFrom(parent);
+
+        assertEquals(value, context.getProperty("cloned"));
+        assertFalse(value == context.getProperty("cloned"));
+    }
+
     @Test(expected = IllegalStateException.class)
     public void illegalInheritance()
     {
@@ -79,6 +138,103 @@ public void getProperties()
         Map<String, Object> properties = context.getProperties();
         assertEquals(1, properties.size());
         assertThat(properties, hasEntry("key", (Object) "value"));
+
+        context.setProperty("key", "value2");
+        context.setProperty("key2", "value2");
+
+        assertEquals(1, properties.size());
+        assertEquals("value", properties.get("key"));
+    }
+
+    @Test
+    public void contextKey()
+    {
+        ContextKey<String> key = ContextKey.get("test.key", String.class);
+
+        assertSame(key, ContextKey.get("test.key", String.class));
+
+        ExecutionContext context = new ExecutionContext();
+
+        assertFalse(context.hasProperty(key));
+        assertNull(context.getProperty(key));
+
+        context.setProperty(key, "value");
+
+        assertTrue(context.hasProperty(key));
+        assertEquals("value", context.getProperty(key));
+        assertEquals("value", context.getProperty("test.key"));
+        assertEquals("value", context.getProperties().get("test.key"));
+
+        context.setProperty("test.key", "value2");
+
+        assertEquals("value2", context.getProperty(key));
+
+        context.removeProperty(key);
+
+        assertFalse(context.hasProperty("test.key"));
+    }
+
+    @Test
+    public void contextKeyCreatedAfterDeclaration()
+    {
+        ExecutionContext context = new ExecutionContext();
+        context.setProperty("test.latekey", "value");
+
+        ContextKey<String> key = ContextKey.get("test.latekey", String.class);
+
+        assertEquals("value", context.getProperty(key));
+
+        context.setProperty(key, "value2");
+
+        assertEquals("value2", context.getProperty("test.latekey"));
+        assertEquals(1, context.getProperties().size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void contextKeyWithWrongType()
+    {
+        ContextKey<String> key = ContextKey.get("test.typedkey", String.class);
+        ExecutionContext context = new ExecutionContext();
+        context.newProperty(key).declare();
+
+        context.setProperty("test.typedkey", 42);
+    }
+
+    @Test(expected = ClassCastException.class)
+    public void contextKeyWithValueOfWrongType()
+    {
+        ExecutionContext context = new ExecutionContext();
+        context.setProperty("test.untypedkey", 42);
+
+        ContextKey<String> key = ContextKey.get("test.untypedkey", String.class);
+
+        context.getProperty(key);
+    }
+
+    @Test
+    public void contextKeyWithTypeFromAnotherClassLoader() throws Exception
+    {
+        ContextKey<Value> key = ContextKey.get("test.reloadedkey", Value.class);
+
+        ClassLoader classLoader =
+            new URLClassLoader(new URL[] {Value.class.getProtectionDomain().getCodeSource().getLocation()}, null);
+        Class< ? > reloadedType = classLoader.loadClass(Value.class.getName());
+        ContextKey< ? > reloadedKey = ContextKey.get("test.reloadedkey", reloadedType);
+
+        assertSame(reloadedType, reloadedKey.getType());
+
+        // Both keys point to the same property
+        ExecutionContext context = new ExecutionContext();
+        context.setProperty(key, new Value());
+
+        assertTrue(context.hasProperty(reloadedKey));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void contextKeyWithAnotherType()
+    {
+        ContextKey.get("test.otherkey", String.class);
+        ContextKey.get("test.otherkey", Integer.class);
     }
 
     @Test
@@ -0,0 +1,150 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.context.concurrent;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.internal.DefaultExecution;
+import org.xwiki.context.internal.ScopedExecution;
+
+/**
+ * Validate {@link ExecutionContextExecutorService}.
+ * 
+ * @version $Id$
+ */
+public class ExecutionContextExecutorServiceTest
+{
+    private Execution execution = new DefaultExecution();
+
+    private ExecutionContextExecutorService executor;
+
+    @After
+    public void tearDown() throws InterruptedException
+    {
+        this.executor.shutdown();
+        this.executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    private ExecutionContext submit(Callable<ExecutionContext> task) throws Exception
+    {
+        ExecutionContext context = new ExecutionContext();
+        context.newProperty("inherited").inherited().initial("value").declare();
+        context.newProperty("inherited2").inherited().initial("value2").declare();
+        context.newProperty("notinherited").initial("value").declare();
+        this.execution.setContext(context);
+
+        try {
+            return this.executor.submit(task).get(10, TimeUnit.SECONDS);
+        } finally {
+            this.execution.removeContext();
+        }
+    }
+
+    private Callable<ExecutionContext> getContextTask()
+    {
+        return new Callable<ExecutionContext>()
+        {
+            @Override
+            public ExecutionContext call() throws Exception
+            {
+                return execution.getContext();
+            }
+        };
+    }
+
+    @Test
+    public void propagateInheritedProperties() throws Exception
+    {
+        this.executor =
+            new ExecutionContextExecutorService(1, Executors.defaultThreadFactory(), this.execution, null);
+
+        ExecutionContext context = submit(getContextTask());
+
+        Assert.assertEquals("value", context.getProperty("inherited"));
+        Assert.assertEquals("value2", context.getProperty("inherited2"));
+        Assert.assertFalse(context.hasProperty("notinherited"));
+
+        Assert.assertEquals(1, this.executor.getSubmittedTaskCount());
+        Assert.assertEquals(0, this.executor.getQueueSize());
+    }
+
+    @Test
+    public void propagateSelectedProperties() throws Exception
+    {
+        this.executor =
+            new ExecutionContextExecutorService(1, Executors.defaultThreadFactory(), this.execution,
+                Arrays.asList("inherited", "notinherited"));
+
+        ExecutionContext context = submit(getContextTask());
+
+        Assert.assertEquals("value", context.getProperty("inherited"));
+        Assert.assertFalse(context.hasProperty("inherited2"));
+        Assert.assertFalse(context.hasProperty("notinherited"));
+    }
+
+    @Test
+    public void removeContextAfterExecution() throws Exception
+    {
+        this.executor =
+            new ExecutionContextExecutorService(1, Executors.defaultThreadFactory(), this.execution, null);
+
+        submit(getContextTask());
+
+        ExecutionContext context = this.executor.submit(getContextTask()).get(10, TimeUnit.SECONDS);
+
+        Assert.assertFalse(context.hasProperty("inherited"));
+    }
+
+    @Test
+    public void reusePoolThreadWithScopedExecution() throws Exception
+    {
+        this.execution = new ScopedExecution();
+        this.executor =
+            new ExecutionContextExecutorService(1, Executors.defaultThreadFactory(), this.execution, null);
+
+        // The pool thread is created by the first submission, the task gets the properties of the submitting thread
+        ExecutionContext context1 = new ExecutionContext();
+        context1.newProperty("user").inherited().makeFinal().initial("alice").declare();
+        this.execution.setContext(context1);
+        this.executor.submit(getContextTask()).get(10, TimeUnit.SECONDS);
+        this.execution.removeContext();
+
+        // The following tasks executed by the same thread don't see it
+        ExecutionContext context2 = new ExecutionContext();
+        context2.newProperty("user").inherited().makeFinal().initial("bob").declare();
+        this.execution.setContext(context2);
+        ExecutionContext taskContext = this.executor.submit(getContextTask()).get(10, TimeUnit.SECONDS);
+        this.execution.removeContext();
+
+        Assert.assertEquals("bob", taskContext.getProperty("user"));
+
+        taskContext = this.executor.submit(getContextTask()).get(10, TimeUnit.SECONDS);
+
+        Assert.assertFalse(taskContext.hasProperty("user"));
+    }
+}
@@ -19,6 +19,7 @@
  */
 package org.xwiki.context.internal;
 
+import java.lang.reflect.Type;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -26,10 +27,17 @@
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.mockito.Mockito;
+import org.xwiki.component.descriptor.ComponentDescriptor;
+import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
+import org.xwiki.component.descriptor.DefaultComponentDescriptor;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.util.ReflectionUtils;
 import org.xwiki.context.Execution;
 import org.xwiki.context.ExecutionContext;
 import org.xwiki.context.ExecutionContextException;
 import org.xwiki.context.ExecutionContextInitializer;
+import org.xwiki.context.PrototypeInitializer;
 
 /**
  * Unit tests for {@link ExecutionContext}.
@@ -40,6 +48,182 @@
 @SuppressWarnings("unchecked")
 public class DefaultExecutionContextManagerTest
 {
+    @PrototypeInitializer
+    private static class TestPrototypeInitializer implements ExecutionContextInitializer
+    {
+        private int calls;
+
+        @Override
+        public void initialize(ExecutionContext context) throws ExecutionContextException
+        {
+            ++this.calls;
+
+            context.newProperty("shared").initial("value").inherited().declare();
+            context.newProperty("cloned").initial(new HashMap<String, String>()).cloneValue().declare();
+        }
+    }
+
+    private static class TestInitializer implements ExecutionContextInitializer
+    {
+        private int calls;
+
+        @Override
+        public void initialize(ExecutionContext context) throws ExecutionContextException
+        {
+            ++this.calls;
+
+            context.setProperty("dynamic", this.calls);
+        }
+    }
+
+    private static class PrototypeCheckingInitializer implements ExecutionContextInitializer
+    {
+        private Boolean prototypeApplied;
+
+        @Override
+        public void initialize(ExecutionContext context) throws ExecutionContextException
+        {
+            this.prototypeApplied = context.hasProperty("shared");
+        }
+    }
+
+    @Test
+    public void initializeFromPrototype() throws Exception
+    {
+        Execution execution = new DefaultExecution();
+        DefaultExecutionContextManager contextManager = new DefaultExecutionContextManager(execution);
+
+        TestPrototypeInitializer prototypeInitializer = new TestPrototypeInitializer();
+        TestInitializer initializer = new TestInitializer();
+        contextManager.addExecutionContextInitializer(prototypeInitializer);
+        contextManager.addExecutionContextInitializer(initializer);
+
+        ExecutionContext context1 = new ExecutionContext();
+        contextManager.initialize(context1);
+        ExecutionContext context2 = contextManager.clone(context1);
+
+        Assert.assertEquals(1, prototypeInitializer.calls);
+        Assert.assertEquals(2, initializer.calls);
+
+        Assert.assertEquals("value", context1.getProperty("shared"));
+        Assert.assertEquals("value", context2.getProperty("shared"));
+        Assert.assertNotSame(context1.getProperty("cloned"), context2.getProperty("cloned"));
+        Assert.assertEquals(1, context1.getProperty("dynamic"));
+        Assert.assertEquals(2, context2.getProperty("dynamic"));
+
+        context2.setProperty("shared", "modified");
+
+        Assert.assertEquals("value", context1.getProperty("shared"));
+
+        // Adding an initializer invalidates the prototype
+        contextManager.addExecutionContextInitializer(new TestInitializer());
+        contextManager.initialize(new ExecutionContext());
+
+        Assert.assertEquals(2, prototypeInitializer.calls);
+    }
+
+    @Test
+    public void initializeWithRegisteredInitializers() throws Exception
+    {
+        Execution execution = new DefaultExecution();
+        DefaultExecutionContextManager contextManager = new DefaultExecutionContextManager(execution);
+
+        ComponentManager componentManager = Mockito.mock(ComponentManager.class);
+        ReflectionUtils.setFieldValue(contextManager, "componentManager", componentManager);
+
+        TestPrototypeInitializer prototypeInitializer = new TestPrototypeInitializer();
+        TestInitializer initializer = new TestInitializer();
+        ComponentDescriptor<ExecutionContextInitializer> prototypeDescriptor =
+            registerInitializer(componentManager, "prototype", ComponentInstantiationStrategy.SINGLETON,
+                prototypeInitializer);
+        setRegisteredInitializers(componentManager, prototypeDescriptor,
+            registerInitializer(componentManager, "initializer", ComponentInstantiationStrategy.SINGLETON,
+                initializer));
+
+        contextManager.initialize(new ExecutionContext());
+        contextManager.initialize(new ExecutionContext());
+
+        Assert.assertEquals(1, prototypeInitializer.calls);
+        Assert.assertEquals(2, initializer.calls);
+
+        // Unregistered initializers are not called anymore and the new ones are
+        TestInitializer newInitializer = new TestInitializer();
+        setRegisteredInitializers(componentManager, prototypeDescriptor,
+            registerInitializer(componentManager, "new", ComponentInstantiationStrategy.SINGLETON, newInitializer));
+
+        ExecutionContext context = new ExecutionContext();
+        contextManager.initialize(context);
+
+        Assert.assertEquals(2, prototypeInitializer.calls);
+        Assert.assertEquals(2, initializer.calls);
+        Assert.assertEquals(1, newInitializer.calls);
+        Assert.assertEquals("value", context.getProperty("shared"));
+    }
+
+    @Test
+    public void initializeWithPerLookupInitializer() throws Exception
+    {
+        Execution execution = new DefaultExecution();
+        DefaultExecutionContextManager contextManager = new DefaultExecutionContextManager(execution);
+        ComponentManager componentManager = Mockito.mock(ComponentManager.class);
+        ReflectionUtils.setFieldValue(contextManager, "componentManager", componentManager);
+
+        TestPrototypeInitializer prototypeInitializer = new TestPrototypeInitializer();
+        TestInitializer initializer1 = new TestInitializer();
+        TestInitializer initializer2 = new TestInitializer();
+        setRegisteredInitializers(componentManager,
+            registerInitializer(componentManager, "prototype", ComponentInstantiationStrategy.SINGLETON,
+                prototypeInitializer),
+            registerInitializer(componentManager, "perlookup", ComponentInstantiationStrategy.PER_LOOKUP,
+                initializer1, initializer2));
+
+        contextManager.initialize(new ExecutionContext());
+        contextManager.initialize(new ExecutionContext());
+
+        // A new instance is looked up each time without rebuilding the prototype
+        Assert.assertEquals(1, prototypeInitializer.calls);
+        Assert.assertEquals(1, initializer1.calls);
+        Assert.assertEquals(1, initializer2.calls);
+    }
+
+    @Test
+    public void initializeInDeclaredOrder() throws Exception
+    {
+        Execution execution = new DefaultExecution();
+        DefaultExecutionContextManager contextManager = new DefaultExecutionContextManager(execution);
+
+        PrototypeCheckingInitializer before = new PrototypeCheckingInitializer();
+        PrototypeCheckingInitializer after = new PrototypeCheckingInitializer();
+        contextManager.addExecutionContextInitializer(before);
+        contextManager.addExecutionContextInitializer(new TestPrototypeInitializer());
+        contextManager.addExecutionContextInitializer(after);
+
+        contextManager.initialize(new ExecutionContext());
+
+        // The prototype properties are copied at the position of the prototype initializer
+        Assert.assertFalse(before.prototypeApplied);
+        Assert.assertTrue(after.prototypeApplied);
+    }
+
+    @Test
+    public void initializeWithInheritedProperty() throws Exception
+    {
+        Execution execution = new DefaultExecution();
+        ExecutionContext currentContext = new ExecutionContext();
+        currentContext.newProperty("inherited").initial("current").inherited().declare();
+        execution.setContext(currentContext);
+
+        DefaultExecutionContextManager contextManager = new DefaultExecutionContextManager(execution);
+        contextManager.addExecutionContextInitializer(new TestPrototypeInitializer());
+
+        ExecutionContext context = new ExecutionContext();
+        contextManager.initialize(context);
+
+        // The prototype is copied after the inherited properties
+        Assert.assertEquals("current", context.getProperty("inherited"));
+        Assert.assertEquals("value", context.getProperty("shared"));
+    }
+
     /**
      * Verify we have different objects in the Execution Context after the clone.
      */
@@ -72,4 +256,28 @@ public void initialize(ExecutionContext context) throws ExecutionContextExceptio
         Assert.assertSame(xwikicontext, clonedContext.getProperty("property1"));
         Assert.assertNotSame(xwikicontext, clonedContext.getProperty("property2"));
     }
+
+    private ComponentDescriptor<ExecutionContextInitializer> registerInitializer(ComponentManager componentManager,
+        String hint, ComponentInstantiationStrategy strategy, ExecutionContextInitializer instance,
+        ExecutionContextInitializer... nextInstances) throws Exception
+    {
+        DefaultComponentDescriptor<ExecutionContextInitializer> descriptor =
+            new DefaultComponentDescriptor<ExecutionContextInitializer>();
+        descriptor.setRoleType(ExecutionContextInitializer.class);
+        descriptor.setRoleHint(hint);
+        descriptor.setImplementation(instance.getClass());
+        descriptor.setInstantiationStrategy(strategy);
+
+        Mockito.when(componentManager.<ExecutionContextInitializer> getInstance(ExecutionContextInitializer.class,
+            hint)).thenReturn(instance, nextInstances);
+
+        return descriptor;
+    }
+
+    private void setRegisteredInitializers(ComponentManager componentManager,
+        ComponentDescriptor<ExecutionContextInitializer>... descriptors)
+    {
+        Mockito.when(componentManager.<ExecutionContextInitializer> getComponentDescriptorList(
+            (Type) ExecutionContextInitializer.class)).thenReturn(Arrays.asList(descriptors));
+    }
 }
@@ -0,0 +1,125 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.context.internal;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+
+/**
+ * Unit tests for {@link ScopedExecution}.
+ * 
+ * @version $Id$
+ */
+public class ScopedExecutionTest
+{
+    @Test
+    public void setContext() throws Exception
+    {
+        Execution execution = new ScopedExecution();
+
+        Assert.assertNull(execution.getContext());
+
+        ExecutionContext context1 = new ExecutionContext();
+        context1.newProperty("inherited").inherited().initial("value").declare();
+
+        execution.setContext(context1);
+
+        Assert.assertSame(context1, execution.getContext());
+
+        ExecutionContext context2 = new ExecutionContext();
+
+        // Add new level 1
+
+        execution.pushContext(context2);
+
+        Assert.assertSame(context2, execution.getContext());
+        Assert.assertEquals("value", context2.getProperty("inherited"));
+
+        // Change level 1
+
+        ExecutionContext context3 = new ExecutionContext();
+
+        execution.setContext(context3);
+
+        Assert.assertSame(context3, execution.getContext());
+        Assert.assertEquals("value", context3.getProperty("inherited"));
+
+        // Go back to level 0
+
+        execution.popContext();
+
+        Assert.assertSame(context1, execution.getContext());
+
+        // Go back to no context
+
+        execution.popContext();
+
+        Assert.assertNull(execution.getContext());
+    }
+
+    @Test
+    public void removeContext() throws Exception
+    {
+        Execution execution = new ScopedExecution();
+
+        execution.pushContext(new ExecutionContext());
+        execution.pushContext(new ExecutionContext());
+        execution.pushContext(new ExecutionContext());
+
+        execution.removeContext();
+
+        Assert.assertNull(execution.getContext());
+    }
+
+    @Test
+    public void childThreadStartsWithoutContext() throws Exception
+    {
+        final Execution execution = new ScopedExecution();
+
+        ExecutionContext context = new ExecutionContext();
+        context.newProperty("inherited").inherited().initial("value").declare();
+        execution.pushContext(context);
+
+        final ExecutionContext[] childContexts = new ExecutionContext[2];
+        Thread thread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                childContexts[0] = execution.getContext();
+                execution.pushContext(new ExecutionContext());
+                childContexts[1] = execution.getContext();
+            }
+        });
+        thread.start();
+        thread.join(10000);
+
+        // Nothing is inherited implicitly by the child thread
+        Assert.assertNull(childContexts[0]);
+        Assert.assertFalse(childContexts[1].hasProperty("inherited"));
+
+        // The child thread did not modify the scope of the parent thread
+        Assert.assertSame(context, execution.getContext());
+
+        execution.removeContext();
+    }
+}
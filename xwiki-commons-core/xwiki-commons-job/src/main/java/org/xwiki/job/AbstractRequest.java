@@ -124,6 +124,24 @@ public void setInteractive(boolean interactive)
         setProperty(PROPERTY_INTERACTIVE, interactive);
     }
 
+    /**
+     * @return the maximum number of log events kept in the job status, 0 means unbounded
+     * @since 5.4M1
+     */
+    public int getLogCapacity()
+    {
+        return this.<Integer> getProperty(PROPERTY_LOG_CAPACITY, 0);
+    }
+
+    /**
+     * @param logCapacity the maximum number of log events kept in the job status, 0 means unbounded
+     * @since 5.4M1
+     */
+    public void setLogCapacity(int logCapacity)
+    {
+        setProperty(PROPERTY_LOG_CAPACITY, logCapacity);
+    }
+
     /**
      * @param key the name of the property
      * @param value the value of the property
@@ -44,6 +44,14 @@ public interface Request extends Serializable
      */
     String PROPERTY_INTERACTIVE = "interactive";
 
+    /**
+     * The maximum number of log events kept in the job status, 0 means unbounded. When not set, the
+     * {@code job.logCapacity} configuration property is used (unbounded by default).
+     *
+     * @since 5.4M1
+     */
+    String PROPERTY_LOG_CAPACITY = "logCapacity";
+
     /**
      * @return list based identifier used to access the job. If none is provided the job will not be accessible by id
      *         and the status of the job will not be stored.
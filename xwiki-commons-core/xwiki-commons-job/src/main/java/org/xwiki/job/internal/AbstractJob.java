@@ -29,7 +29,10 @@
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.InstantiationStrategy;
 import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
+import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.job.AbstractRequest;
 import org.xwiki.job.Job;
 import org.xwiki.job.JobContext;
 import org.xwiki.job.Request;
@@ -53,6 +56,12 @@
 @InstantiationStrategy(ComponentInstantiationStrategy.PER_LOOKUP)
 public abstract class AbstractJob<R extends Request, S extends AbstractJobStatus< ? super R>> implements Job
 {
+    /**
+     * The configuration property indicating the maximum number of log events kept in the status of a job which request
+     * does not indicate any.
+     */
+    private static final String LOG_CAPACITY_CONFIGURATION = "job.logCapacity";
+
     /**
      * Component manager.
      */
@@ -89,6 +98,7 @@
     @Inject
     protected JobContext jobContext;
 
+
     /**
      * The job request.
      */
@@ -125,9 +135,38 @@ public S getStatus()
     public void initialize(Request request)
     {
         this.request = castRequest(request);
+
+        if (this.request instanceof AbstractRequest && !this.request.containsProperty(Request.PROPERTY_LOG_CAPACITY)) {
+            int logCapacity = getDefaultLogCapacity();
+            if (logCapacity > 0) {
+                ((AbstractRequest) this.request).setLogCapacity(logCapacity);
+            }
+        }
+
         this.status = createNewStatus(this.request);
     }
 
+    /**
+     * @return the maximum number of log events kept in the status of a job which request does not indicate any, taken
+     *         from the {@value #LOG_CAPACITY_CONFIGURATION} configuration property, 0 (unbounded) if there is no
+     *         configuration
+     */
+    private int getDefaultLogCapacity()
+    {
+        // Looked up instead of injected since the configuration is optional (e.g. in unit tests)
+        if (this.componentManager != null && this.componentManager.hasComponent(ConfigurationSource.class)) {
+            try {
+                ConfigurationSource configuration = this.componentManager.getInstance(ConfigurationSource.class);
+
+                return configuration.getProperty(LOG_CAPACITY_CONFIGURATION, 0);
+            } catch (ComponentLookupException e) {
+                this.logger.warn("Failed to lookup the configuration, the log of the job won't be bounded", e);
+            }
+        }
+
+        return 0;
+    }
+
     @Override
     public void run()
     {
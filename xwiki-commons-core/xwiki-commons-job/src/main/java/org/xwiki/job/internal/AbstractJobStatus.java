@@ -66,7 +66,7 @@
     /**
      * Log sent during job execution.
      */
-    private LogQueue logs = new LogQueue();
+    private LogQueue logs;
 
     /**
      * @see #getStartDate()
@@ -121,6 +121,9 @@ public AbstractJobStatus(R request, ObservationManager observationManager, Logge
         this.observationManager = observationManager;
         this.loggerManager = loggerManager;
         this.subJob = subJob;
+
+        Integer logCapacity = request != null ? request.<Integer> getProperty(Request.PROPERTY_LOG_CAPACITY) : null;
+        this.logs = logCapacity != null && logCapacity > 0 ? new LogQueue(logCapacity) : new LogQueue();
     }
 
     /**
@@ -130,7 +133,7 @@ public void startListening()
     {
         // Register progress listener
         this.progress = new DefaultJobProgress(Thread.currentThread());
-        this.observationManager.addListener(this.progress);
+        this.observationManager.addThreadListener(this.progress);
 
         // Isolate log for the job status
         this.logListener = new LogQueueListener(LogQueueListener.class.getName() + '_' + hashCode(), this.logs);
@@ -151,7 +154,7 @@ public void stopListening()
         } else {
             this.loggerManager.popLogListener();
         }
-        this.observationManager.removeListener(this.progress.getName());
+        this.observationManager.removeThreadListener(this.progress.getName());
     }
 
     // JobStatus
@@ -35,6 +35,7 @@ public void createDefaultRequestWithPassedRequest()
         request.setProperty("property", "value");
         request.setRemote(true);
         request.setId("id");
+        request.setLogCapacity(42);
         
         DefaultRequest request2 = new DefaultRequest(request);
         
@@ -42,5 +43,12 @@ public void createDefaultRequestWithPassedRequest()
         Assert.assertEquals(request.getProperty("property"), request2.getProperty("property"));
         Assert.assertEquals(request.isRemote(), request2.isRemote());
         Assert.assertEquals(request.isInteractive(), request2.isInteractive());
+        Assert.assertEquals(42, request2.getLogCapacity());
+    }
+
+    @Test
+    public void getLogCapacityWhenNotSet()
+    {
+        Assert.assertEquals(0, new DefaultRequest().getLogCapacity());
     }
 }
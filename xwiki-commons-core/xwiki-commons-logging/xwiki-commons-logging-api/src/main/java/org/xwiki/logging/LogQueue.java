@@ -19,9 +19,15 @@
  */
 package org.xwiki.logging;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.AbstractList;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.RandomAccess;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.apache.commons.lang3.ArrayUtils;
@@ -31,6 +37,11 @@
 
 /**
  * A queue of {@link LogEvent}s.
+ * <p>
+ * The events are also indexed by level so that the number of events of a level is known in constant time and the
+ * events of a level can be read without going through the whole queue. The queue can be bounded, in which case the
+ * oldest events are discarded to make room for the new ones and only the number of discarded events of each level is
+ * kept.
  * 
  * @version $Id$
  * @since 3.2M3
@@ -42,14 +53,309 @@ public class LogQueue extends ConcurrentLinkedQueue<LogEvent> implements Logger
      */
     private static final long serialVersionUID = 1L;
 
+    /**
+     * The index of the events without level.
+     */
+    private static final int NO_LEVEL = LogLevel.values().length;
+
+    /**
+     * The initial number of slots allocated for the events of a level.
+     */
+    private static final int INITIAL_LEVEL_CAPACITY = 16;
+
+    /**
+     * A read only view of the events of a level, in the order they have been added.
+     */
+    private static final class LevelLogsView extends AbstractList<LogEvent> implements RandomAccess
+    {
+        /**
+         * The storage of the events of the level, shared with the {@link LevelLogs} the view comes from.
+         */
+        private final LogEvent[] events;
+
+        /**
+         * The position of each event in the whole queue, shared with the {@link LevelLogs} the view comes from.
+         */
+        private final long[] sequences;
+
+        /**
+         * The index in {@link #events} of the first event of the view.
+         */
+        private final int start;
+
+        /**
+         * The index in {@link #events} after the last event of the view.
+         */
+        private final int end;
+
+        LevelLogsView(LogEvent[] events, long[] sequences, int start, int end)
+        {
+            this.events = events;
+            this.sequences = sequences;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public LogEvent get(int index)
+        {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+            }
+
+            return this.events[this.start + index];
+        }
+
+        /**
+         * @param index the index of the event in the view
+         * @return the position of the event in the whole queue
+         */
+        long getSequence(int index)
+        {
+            return this.sequences[this.start + index];
+        }
+
+        @Override
+        public int size()
+        {
+            return this.end - this.start;
+        }
+    }
+
+    /**
+     * The events of a level, in the order they have been added. The slots of a published view are never modified: the
+     * new events are written after them and removing anything else than the oldest event copies the remaining ones.
+     */
+    private static final class LevelLogs
+    {
+        /**
+         * The storage of the events, only the slots between {@link #start} and {@link #end} are used.
+         */
+        private LogEvent[] events = new LogEvent[INITIAL_LEVEL_CAPACITY];
+
+        /**
+         * The position of each event in the whole queue.
+         */
+        private long[] sequences = new long[INITIAL_LEVEL_CAPACITY];
+
+        /**
+         * The index in {@link #events} of the oldest event.
+         */
+        private int start;
+
+        /**
+         * The index in {@link #events} after the newest event.
+         */
+        private int end;
+
+        void add(LogEvent event, long sequence)
+        {
+            if (this.end == this.events.length) {
+                copy(-1, Math.max(INITIAL_LEVEL_CAPACITY, size() * 2));
+            }
+
+            this.events[this.end] = event;
+            this.sequences[this.end] = sequence;
+            ++this.end;
+        }
+
+        void removeFirst()
+        {
+            // Don't clear the slot, it might still be used by a view
+            ++this.start;
+        }
+
+        boolean remove(Object event)
+        {
+            boolean removed = false;
+
+            for (int i = this.start; !removed && i < this.end; ++i) {
+                if (event.equals(this.events[i])) {
+                    if (i == this.start) {
+                        removeFirst();
+                    } else {
+                        copy(i, this.events.length);
+                    }
+                    removed = true;
+                }
+            }
+
+            return removed;
+        }
+
+        /**
+         * Move the events to new arrays.
+         * 
+         * @param skipped the index of an event to leave out, -1 for none
+         * @param length the length of the new arrays
+         */
+        private void copy(int skipped, int length)
+        {
+            LogEvent[] newEvents = new LogEvent[length];
+            long[] newSequences = new long[length];
+
+            int newEnd = 0;
+            for (int i = this.start; i < this.end; ++i) {
+                if (i != skipped) {
+                    newEvents[newEnd] = this.events[i];
+                    newSequences[newEnd] = this.sequences[i];
+                    ++newEnd;
+                }
+            }
+
+            this.events = newEvents;
+            this.sequences = newSequences;
+            this.start = 0;
+            this.end = newEnd;
+        }
+
+        int size()
+        {
+            return this.end - this.start;
+        }
+
+        LevelLogsView getView()
+        {
+            return new LevelLogsView(this.events, this.sequences, this.start, this.end);
+        }
+    }
+
+    /**
+     * Iterator over the events of the queue removing the events through the queue to keep the index up to date.
+     */
+    private final class QueueIterator implements Iterator<LogEvent>
+    {
+        /**
+         * The iterator over the storage of the queue.
+         */
+        private final Iterator<LogEvent> iterator;
+
+        /**
+         * The last returned event, null if it can't be removed.
+         */
+        private LogEvent last;
+
+        /**
+         * @param iterator the iterator over the storage of the queue
+         */
+        QueueIterator(Iterator<LogEvent> iterator)
+        {
+            this.iterator = iterator;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return this.iterator.hasNext();
+        }
+
+        @Override
+        public LogEvent next()
+        {
+            this.last = this.iterator.next();
+
+            return this.last;
+        }
+
+        @Override
+        public void remove()
+        {
+            if (this.last == null) {
+                throw new IllegalStateException();
+            }
+
+            LogQueue.this.remove(this.last);
+            this.last = null;
+        }
+    }
+
+    /**
+     * The maximum number of events to keep, 0 when unbounded.
+     */
+    private final int capacity;
+
+    /**
+     * The number of events of each level discarded to respect the capacity.
+     */
+    private long[] discarded = new long[NO_LEVEL + 1];
+
+    /**
+     * The events of each level, the last index is for the events without level.
+     */
+    private transient LevelLogs[] levels = createLevels();
+
+    /**
+     * The number of events in the queue.
+     */
+    private transient volatile int count;
+
+    /**
+     * The position of the next event in the whole queue.
+     */
+    private transient long sequence;
+
+    /**
+     * Create an unbounded queue.
+     */
+    public LogQueue()
+    {
+        this.capacity = 0;
+    }
+
+    /**
+     * Create a bounded queue. When full, the oldest event is discarded to make room for a new one.
+     * 
+     * @param capacity the maximum number of events to keep
+     * @since 5.4M1
+     */
+    public LogQueue(int capacity)
+    {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity of the queue must be positive: " + capacity);
+        }
+
+        this.capacity = capacity;
+    }
+
+    private static LevelLogs[] createLevels()
+    {
+        LevelLogs[] newLevels = new LevelLogs[NO_LEVEL + 1];
+        for (int i = 0; i < newLevels.length; ++i) {
+            newLevels[i] = new LevelLogs();
+        }
+
+        return newLevels;
+    }
+
+    private static int getLevelIndex(LogLevel level)
+    {
+        return level != null ? level.ordinal() : NO_LEVEL;
+    }
+
+    private LevelLogs getLevelLogs(LogEvent logEvent)
+    {
+        return this.levels[getLevelIndex(logEvent.getLevel())];
+    }
+
     /**
      * Copy the stored log into a passed {@link Logger}.
+     * <p>
+     * When events have been discarded to respect the capacity of the queue, a warning indicating how many is logged
+     * first.
      * 
      * @param targetLogger the logger where to copy the stored log
      * @since 5.3M1
      */
     public void log(Logger targetLogger)
     {
+        long discardedCount = 0;
+        for (LogLevel level : LogLevel.values()) {
+            discardedCount += getDiscardedLogCount(level);
+        }
+        if (discardedCount > 0) {
+            targetLogger.warn("[{}] older log events have been discarded", discardedCount);
+        }
+
         for (LogEvent logEvent : this) {
             logEvent.log(targetLogger);
         }
@@ -122,22 +428,19 @@ public LogEvent addLogEvent(Marker marker, LogLevel level, String format, Object
 
     /**
      * Filter logs of a specific level.
+     * <p>
+     * Since 5.4M1 the returned list is a read only snapshot sharing the storage of the queue instead of a new
+     * modifiable list: callers which used to modify the result have to copy it first.
      * 
      * @param level the level of the logs to return
-     * @return the filtered logs
+     * @return a read only snapshot of the logs of the passed level, sharing the storage of the queue
      * @since 4.1RC1
      */
     public List<LogEvent> getLogs(LogLevel level)
     {
-        List<LogEvent> levelLogs = new LinkedList<LogEvent>();
-
-        for (LogEvent log : this) {
-            if (log.getLevel() == level) {
-                levelLogs.add(log);
-            }
+        synchronized (this) {
+            return this.levels[getLevelIndex(level)].getView();
         }
-
-        return levelLogs;
     }
 
     /**
@@ -149,17 +452,195 @@ public List<LogEvent> getLogs(LogLevel level)
      */
     public List<LogEvent> getLogsFrom(LogLevel level)
     {
-        List<LogEvent> levelLogs = new LinkedList<LogEvent>();
+        LevelLogsView[] views = new LevelLogsView[level.ordinal() + 1];
+        synchronized (this) {
+            for (int i = 0; i < views.length; ++i) {
+                views[i] = this.levels[i].getView();
+            }
+        }
+
+        int size = 0;
+        for (LevelLogsView view : views) {
+            size += view.size();
+        }
 
-        for (LogEvent log : this) {
-            if (log.getLevel().compareTo(level) <= 0) {
-                levelLogs.add(log);
+        // Merge the levels following the order of the queue
+        List<LogEvent> levelLogs = new ArrayList<LogEvent>(size);
+        int[] positions = new int[views.length];
+        for (int i = 0; i < size; ++i) {
+            int next = -1;
+            for (int j = 0; j < views.length; ++j) {
+                if (positions[j] < views[j].size()
+                    && (next == -1 || views[j].getSequence(positions[j]) < views[next].getSequence(positions[next]))) {
+                    next = j;
+                }
             }
+            levelLogs.add(views[next].get(positions[next]++));
         }
 
         return levelLogs;
     }
 
+    /**
+     * @param level the log level
+     * @return the number of logs of the passed level in the queue
+     * @since 5.4M1
+     */
+    public synchronized int getLogCount(LogLevel level)
+    {
+        return this.levels[getLevelIndex(level)].size();
+    }
+
+    /**
+     * @param level the log level
+     * @return the number of logs of the passed level discarded to respect the capacity of the queue
+     * @since 5.4M1
+     */
+    public synchronized long getDiscardedLogCount(LogLevel level)
+    {
+        return this.discarded[getLevelIndex(level)];
+    }
+
+    // Queue
+
+    @Override
+    public synchronized boolean offer(LogEvent logEvent)
+    {
+        if (this.levels == null) {
+            // Being deserialized, the index is rebuilt once all the events are read
+            super.offer(logEvent);
+        } else {
+            if (this.capacity > 0 && this.count >= this.capacity) {
+                LogEvent oldest = super.poll();
+                if (oldest != null) {
+                    int levelIndex = getLevelIndex(oldest.getLevel());
+                    this.levels[levelIndex].removeFirst();
+                    ++this.discarded[levelIndex];
+                    --this.count;
+                }
+            }
+
+            super.offer(logEvent);
+            getLevelLogs(logEvent).add(logEvent, this.sequence++);
+            ++this.count;
+        }
+
+        return true;
+    }
+
+    @Override
+    public boolean add(LogEvent logEvent)
+    {
+        return offer(logEvent);
+    }
+
+    @Override
+    public boolean addAll(Collection< ? extends LogEvent> logEvents)
+    {
+        if (logEvents == this) {
+            throw new IllegalArgumentException("Can't add a queue to itself");
+        }
+
+        boolean modified = false;
+        for (LogEvent logEvent : logEvents) {
+            modified |= add(logEvent);
+        }
+
+        return modified;
+    }
+
+    @Override
+    public synchronized LogEvent poll()
+    {
+        LogEvent logEvent = super.poll();
+
+        if (logEvent != null) {
+            getLevelLogs(logEvent).removeFirst();
+            --this.count;
+        }
+
+        return logEvent;
+    }
+
+    @Override
+    public synchronized boolean remove(Object object)
+    {
+        boolean removed = super.remove(object);
+
+        if (removed) {
+            getLevelLogs((LogEvent) object).remove(object);
+            --this.count;
+        }
+
+        return removed;
+    }
+
+    @Override
+    public boolean removeAll(Collection< ? > objects)
+    {
+        boolean modified = false;
+        for (Iterator<LogEvent> it = iterator(); it.hasNext();) {
+            if (objects.contains(it.next())) {
+                it.remove();
+                modified = true;
+            }
+        }
+
+        return modified;
+    }
+
+    @Override
+    public boolean retainAll(Collection< ? > objects)
+    {
+        boolean modified = false;
+        for (Iterator<LogEvent> it = iterator(); it.hasNext();) {
+            if (!objects.contains(it.next())) {
+                it.remove();
+                modified = true;
+            }
+        }
+
+        return modified;
+    }
+
+    @Override
+    public synchronized void clear()
+    {
+        super.clear();
+
+        this.levels = createLevels();
+        this.count = 0;
+    }
+
+    @Override
+    public Iterator<LogEvent> iterator()
+    {
+        return new QueueIterator(super.iterator());
+    }
+
+    @Override
+    public int size()
+    {
+        return this.count;
+    }
+
+    private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException
+    {
+        stream.defaultReadObject();
+
+        if (this.discarded == null) {
+            this.discarded = new long[NO_LEVEL + 1];
+        }
+
+        // Index the deserialized events
+        LevelLogs[] newLevels = createLevels();
+        for (LogEvent logEvent : this) {
+            newLevels[getLevelIndex(logEvent.getLevel())].add(logEvent, this.sequence++);
+            ++this.count;
+        }
+        this.levels = newLevels;
+    }
+
     // Logger
 
     @Override
@@ -19,7 +19,13 @@
  */
 package org.xwiki.logging;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -77,4 +83,115 @@ public void testError()
         Assert.assertEquals(Arrays.asList("message"), logEvent.getMessageElements());
         Assert.assertEquals(Arrays.asList(), Arrays.asList(logEvent.getArgumentArray()));
     }
+
+    @Test
+    public void testLevels()
+    {
+        LogQueue queue = new LogQueue();
+
+        queue.error("error1");
+        queue.info("info1");
+        queue.warn("warn1");
+        queue.error("error2");
+        queue.debug("debug1");
+
+        Assert.assertEquals(5, queue.size());
+        Assert.assertEquals(2, queue.getLogCount(LogLevel.ERROR));
+        Assert.assertEquals(0, queue.getLogCount(LogLevel.TRACE));
+
+        List<LogEvent> errors = queue.getLogs(LogLevel.ERROR);
+        Assert.assertEquals(2, errors.size());
+        Assert.assertEquals("error1", errors.get(0).getMessage());
+        Assert.assertEquals("error2", errors.get(1).getMessage());
+
+        List<LogEvent> fromInfo = queue.getLogsFrom(LogLevel.INFO);
+        Assert.assertEquals(4, fromInfo.size());
+        Assert.assertEquals("error1", fromInfo.get(0).getMessage());
+        Assert.assertEquals("info1", fromInfo.get(1).getMessage());
+        Assert.assertEquals("warn1", fromInfo.get(2).getMessage());
+        Assert.assertEquals("error2", fromInfo.get(3).getMessage());
+
+        // The returned logs are a snapshot
+        queue.error("error3");
+        Assert.assertEquals(2, errors.size());
+        Assert.assertEquals(3, queue.getLogs(LogLevel.ERROR).size());
+    }
+
+    @Test
+    public void testRemove()
+    {
+        LogQueue queue = new LogQueue();
+
+        queue.error("error1");
+        queue.info("info1");
+        queue.error("error2");
+        queue.error("error3");
+
+        List<LogEvent> errors = queue.getLogs(LogLevel.ERROR);
+
+        Assert.assertEquals("error1", queue.poll().getMessage());
+        Iterator<LogEvent> iterator = queue.iterator();
+        iterator.next();
+        iterator.next();
+        iterator.remove();
+
+        Assert.assertEquals(2, queue.size());
+        Assert.assertEquals(1, queue.getLogCount(LogLevel.ERROR));
+        Assert.assertEquals("error3", queue.getLogs(LogLevel.ERROR).get(0).getMessage());
+        Assert.assertEquals(3, errors.size());
+
+        queue.clear();
+
+        Assert.assertEquals(0, queue.size());
+        Assert.assertEquals(0, queue.getLogCount(LogLevel.INFO));
+    }
+
+    @Test
+    public void testCapacity()
+    {
+        LogQueue queue = new LogQueue(3);
+
+        queue.error("error1");
+        queue.info("info1");
+        queue.info("info2");
+        queue.info("info3");
+        queue.warn("warn1");
+
+        Assert.assertEquals(3, queue.size());
+        Assert.assertEquals("info2", queue.peek().getMessage());
+        Assert.assertEquals(0, queue.getLogCount(LogLevel.ERROR));
+        Assert.assertEquals(1, queue.getDiscardedLogCount(LogLevel.ERROR));
+        Assert.assertEquals(1, queue.getDiscardedLogCount(LogLevel.INFO));
+        Assert.assertEquals(2, queue.getLogCount(LogLevel.INFO));
+
+        for (int i = 0; i < 100; ++i) {
+            queue.info("info");
+        }
+
+        Assert.assertEquals(3, queue.size());
+        Assert.assertEquals(3, queue.getLogs(LogLevel.INFO).size());
+        Assert.assertEquals(0, queue.getLogCount(LogLevel.WARN));
+    }
+
+    @Test
+    public void testSerialization() throws Exception
+    {
+        // LogEvent is not serializable
+        LogQueue queue = new LogQueue();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream output = new ObjectOutputStream(bytes);
+        output.writeObject(queue);
+        output.close();
+
+        LogQueue deserialized =
+            (LogQueue) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+
+        deserialized.error("error");
+        deserialized.info("info");
+
+        Assert.assertEquals(2, deserialized.size());
+        Assert.assertEquals("info", deserialized.getLogs(LogLevel.INFO).get(0).getMessage());
+        Assert.assertEquals(2, deserialized.getLogsFrom(LogLevel.INFO).size());
+    }
 }
@@ -0,0 +1,308 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.logging.logback.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+
+/**
+ * Bounded ring buffer of Logback events consumed by a dedicated thread which passes them in batches to the
+ * {@link LogbackEventGenerator} to be converted and notified. The slots of the buffer are allocated once and reused.
+ *
+ * @version $Id$
+ * @since 5.4M1
+ */
+class AsynchronousLogEventDispatcher implements Runnable
+{
+    /**
+     * What to do with an event when the buffer is full.
+     */
+    enum OverflowPolicy
+    {
+        /**
+         * The event is dropped.
+         */
+        DROP,
+
+        /**
+         * The logging thread waits for some room in the buffer.
+         */
+        BLOCK,
+
+        /**
+         * One event out of {@link AsynchronousLogEventDispatcher#SAMPLE_RATE} waits for some room in the buffer, the
+         * other ones are dropped.
+         */
+        SAMPLE
+    }
+
+    /**
+     * With the {@link OverflowPolicy#SAMPLE} policy, one event out of this number is kept when the buffer is full.
+     */
+    static final int SAMPLE_RATE = 10;
+
+    /**
+     * The maximum number of events notified at once.
+     */
+    private static final int MAX_BATCH = 100;
+
+    /**
+     * The slots of the ring buffer, the length is a power of two.
+     */
+    private final ILoggingEvent[] buffer;
+
+    /**
+     * Used to find the slot of a position.
+     */
+    private final int mask;
+
+    /**
+     * The position of the next event to consume.
+     */
+    private long head;
+
+    /**
+     * The position of the next event to add.
+     */
+    private long tail;
+
+    /**
+     * The number of events which did not find room in the buffer.
+     */
+    private long overflows;
+
+    /**
+     * True once the dispatcher does not accept events anymore.
+     */
+    private boolean stopped;
+
+    /**
+     * Guards all the accesses to the buffer and its positions.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Signaled when events are added to the buffer.
+     */
+    private final Condition notEmpty = this.lock.newCondition();
+
+    /**
+     * Signaled when events are removed from the buffer.
+     */
+    private final Condition notFull = this.lock.newCondition();
+
+    /**
+     * What to do with an event when the buffer is full.
+     */
+    private final OverflowPolicy overflowPolicy;
+
+    /**
+     * The number of events dropped since the last report.
+     */
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Used to convert and notify the events.
+     */
+    private final LogbackEventGenerator generator;
+
+    /**
+     * The thread consuming the events.
+     */
+    private final Thread thread;
+
+    /**
+     * @param generator used to convert and notify the events
+     * @param capacity the minimum number of events the buffer can hold
+     * @param overflowPolicy what to do with an event when the buffer is full
+     */
+    AsynchronousLogEventDispatcher(LogbackEventGenerator generator, int capacity, OverflowPolicy overflowPolicy)
+    {
+        int size = capacity > 1 ? Integer.highestOneBit(capacity - 1) << 1 : 1;
+
+        this.buffer = new ILoggingEvent[size];
+        this.mask = size - 1;
+        this.generator = generator;
+        this.overflowPolicy = overflowPolicy;
+
+        this.thread = new Thread(this, "Log event dispatcher");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Start the consumer thread.
+     */
+    void start()
+    {
+        this.thread.start();
+    }
+
+    /**
+     * @param thread a thread
+     * @return true if the passed thread is the one consuming the events
+     */
+    boolean isDispatcherThread(Thread thread)
+    {
+        return thread == this.thread;
+    }
+
+    /**
+     * @return the number of slots of the buffer
+     */
+    int getCapacity()
+    {
+        return this.buffer.length;
+    }
+
+    /**
+     * @param event the event to add, it must be ready for deferred processing
+     * @return true if the event has been added to the buffer, false if it has been dropped
+     */
+    boolean add(ILoggingEvent event)
+    {
+        boolean added = false;
+
+        this.lock.lock();
+        try {
+            boolean accepted = !isFull() || isWaitingOnOverflow();
+            while (accepted && !this.stopped && isFull()) {
+                this.notFull.await();
+            }
+
+            if (!this.stopped && accepted) {
+                this.buffer[(int) this.tail & this.mask] = event;
+                ++this.tail;
+                this.notEmpty.signal();
+                added = true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            this.lock.unlock();
+        }
+
+        if (!added) {
+            this.dropped.incrementAndGet();
+        }
+
+        return added;
+    }
+
+    /**
+     * Called with the lock held when the buffer is full.
+     * 
+     * @return true if the event should wait for some room in the buffer, false if it should be dropped
+     */
+    private boolean isWaitingOnOverflow()
+    {
+        ++this.overflows;
+
+        return this.overflowPolicy == OverflowPolicy.BLOCK
+            || (this.overflowPolicy == OverflowPolicy.SAMPLE && this.overflows % SAMPLE_RATE == 0);
+    }
+
+    private boolean isFull()
+    {
+        return this.tail - this.head == this.buffer.length;
+    }
+
+    /**
+     * Wait for some events and move them to the passed list.
+     *
+     * @param events the list to fill
+     * @return false if the dispatcher is stopped and all the events have been consumed
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    private boolean take(List<ILoggingEvent> events) throws InterruptedException
+    {
+        this.lock.lockInterruptibly();
+        try {
+            while (!this.stopped && this.head == this.tail) {
+                this.notEmpty.await();
+            }
+
+            for (; this.head < this.tail && events.size() < MAX_BATCH; ++this.head) {
+                int index = (int) this.head & this.mask;
+                events.add(this.buffer[index]);
+                this.buffer[index] = null;
+            }
+
+            this.notFull.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+
+        return !events.isEmpty();
+    }
+
+    @Override
+    public void run()
+    {
+        List<ILoggingEvent> events = new ArrayList<ILoggingEvent>(MAX_BATCH);
+
+        try {
+            while (take(events)) {
+                try {
+                    this.generator.notifyLogEvents(events);
+                } catch (Exception e) {
+                    this.generator.addError("Failed to notify log events", e);
+                }
+                events.clear();
+
+                long droppedCount = this.dropped.getAndSet(0);
+                if (droppedCount > 0) {
+                    this.generator.addWarn("Dropped [" + droppedCount + "] log events because the buffer was full");
+                }
+            }
+        } catch (InterruptedException e) {
+            // Stop consuming
+        }
+    }
+
+    /**
+     * Stop accepting events and wait for the events already in the buffer to be notified.
+     *
+     * @param timeout the maximum time to wait, in milliseconds
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    void stop(long timeout) throws InterruptedException
+    {
+        this.lock.lock();
+        try {
+            this.stopped = true;
+            this.notEmpty.signalAll();
+            this.notFull.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+
+        TimeUnit.MILLISECONDS.timedJoin(this.thread, timeout);
+
+        if (this.thread.isAlive()) {
+            this.thread.interrupt();
+        }
+    }
+}
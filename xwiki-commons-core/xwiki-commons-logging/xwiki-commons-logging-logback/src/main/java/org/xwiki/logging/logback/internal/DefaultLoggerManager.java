@@ -33,7 +33,6 @@
 import org.xwiki.logging.LoggerManager;
 import org.xwiki.observation.EventListener;
 import org.xwiki.observation.ObservationManager;
-import org.xwiki.observation.WrappedThreadEventListener;
 
 import ch.qos.logback.classic.LoggerContext;
 import ch.qos.logback.classic.spi.ILoggingEvent;
@@ -49,7 +48,7 @@
 public class DefaultLoggerManager implements LoggerManager, Initializable
 {
     /**
-     * Used to register/unregister {@link org.xwiki.logging.event.LogEvent} listeners.
+     * Used to register/unregister {@link org.xwiki.logging.event.LogEvent} listeners for the current thread.
      */
     @Inject
     private ObservationManager observation;
@@ -87,7 +86,10 @@ public void initialize() throws InitializationException
             while (iterator.hasNext()) {
                 Appender<ILoggingEvent> appender = iterator.next();
 
-                if (!(appender instanceof LogbackEventGenerator)) {
+                if (appender instanceof LogbackEventGenerator) {
+                    // The logs of the threads capturing their own logs must reach them in order
+                    ((LogbackEventGenerator) appender).setCapturedThreads(this.forbiddenThreads);
+                } else {
                     appender.addFilter(this.forbiddenThreads);
                 }
             }
@@ -107,12 +109,12 @@ public void pushLogListener(EventListener listener)
             this.listeners.set(listenerStack);
         }
 
-        if (!listenerStack.isEmpty()) {
-            this.observation.removeListener(listenerStack.peek().getName());
+        if (!listenerStack.isEmpty() && listenerStack.peek() != null) {
+            this.observation.removeThreadListener(listenerStack.peek().getName());
         }
 
         if (listener != null) {
-            this.observation.addListener(new WrappedThreadEventListener(listener, Thread.currentThread()));
+            this.observation.addThreadListener(listener);
         }
         if (listenerStack.isEmpty()) {
             grabLog(Thread.currentThread());
@@ -129,14 +131,14 @@ public EventListener popLogListener()
         if (listenerStack != null && !listenerStack.isEmpty()) {
             listener = listenerStack.pop();
             if (listener != null) {
-                this.observation.removeListener(listener.getName());
+                this.observation.removeThreadListener(listener.getName());
             }
             if (listenerStack.isEmpty()) {
                 ungrabLog(Thread.currentThread());
             } else {
                 EventListener topListener = listenerStack.peek();
                 if (topListener != null) {
-                    this.observation.addListener(new WrappedThreadEventListener(topListener, Thread.currentThread()));
+                    this.observation.addThreadListener(topListener);
                 }
             }
         } else {
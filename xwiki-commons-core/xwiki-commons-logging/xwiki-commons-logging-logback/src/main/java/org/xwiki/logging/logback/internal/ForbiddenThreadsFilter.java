@@ -57,6 +57,16 @@ public void addThread(Thread thread)
         this.threads.add(thread);
     }
 
+    /**
+     * @param thread a thread
+     * @return true if the passed thread is forbidden
+     * @since 5.4M1
+     */
+    public boolean contains(Thread thread)
+    {
+        return this.threads.contains(thread);
+    }
+
     /**
      * @param thread the thread to remove from the list of forbidden threads
      */
@@ -19,8 +19,10 @@
  */
 package org.xwiki.logging.logback.internal;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -37,6 +39,7 @@
 import org.xwiki.logging.LogLevel;
 import org.xwiki.logging.event.LogEvent;
 import org.xwiki.observation.EventListener;
+import org.xwiki.observation.EventNotification;
 import org.xwiki.observation.ObservationManager;
 import org.xwiki.observation.event.Event;
 
@@ -56,6 +59,16 @@
  * possibility that some logs will not be seen if some Event Listeners do logging in their initialization and it happens
  * that they're initialized before this component...).
  * </p>
+ * <p>
+ * By default the events are converted and notified by the logging thread. When the {@value #ASYNCHRONOUS_PROPERTY}
+ * system property is set to {@code true} they are instead written in a bounded buffer of
+ * {@value #BUFFER_SIZE_PROPERTY} events (default {@value #DEFAULT_BUFFER_SIZE}) consumed in batches by a dedicated
+ * thread. The {@value #OVERFLOW_PROPERTY} system property indicates what to do when the buffer is full: {@code BLOCK}
+ * (the default) to wait for some room, {@code DROP} to drop the event or {@code SAMPLE} to keep only some of the
+ * events. The logs of a thread capturing its own logs (see
+ * {@link org.xwiki.logging.LoggerManager#pushLogListener(EventListener)}) are still notified by the logging thread so
+ * that the capture receives them in order and before the listener is popped.
+ * </p>
  * 
  * @version $Id$
  * @since 3.2M1
@@ -66,6 +79,43 @@
 public class LogbackEventGenerator extends AppenderBase<ILoggingEvent> implements EventListener, Initializable,
     Disposable
 {
+    /**
+     * The system property to set to {@code true} to notify the log events from a dedicated thread.
+     * 
+     * @since 5.4M1
+     */
+    public static final String ASYNCHRONOUS_PROPERTY = "xwiki.logging.asynchronous";
+
+    /**
+     * The system property indicating the maximum number of log events waiting to be notified in asynchronous mode.
+     * 
+     * @since 5.4M1
+     */
+    public static final String BUFFER_SIZE_PROPERTY = "xwiki.logging.asynchronous.bufferSize";
+
+    /**
+     * The system property indicating what to do with a log event when the buffer is full in asynchronous mode:
+     * {@code BLOCK}, {@code DROP} or {@code SAMPLE}.
+     * 
+     * @since 5.4M1
+     */
+    public static final String OVERFLOW_PROPERTY = "xwiki.logging.asynchronous.overflow";
+
+    /**
+     * The default maximum number of log events waiting to be notified in asynchronous mode.
+     */
+    private static final int DEFAULT_BUFFER_SIZE = 1024;
+
+    /**
+     * The maximum time to wait for the waiting log events to be notified when disposing the component.
+     */
+    private static final long SHUTDOWN_TIMEOUT = 10000;
+
+    /**
+     * The message logged when the level of a log event is not supported.
+     */
+    private static final String UNSUPPORTED_LEVEL = "Unsupported log level [{}]";
+
     /**
      * The logger to log.
      */
@@ -83,6 +133,21 @@ public class LogbackEventGenerator extends AppenderBase<ILoggingEvent> implement
      */
     private LogbackUtils utils = new LogbackUtils();
 
+    /**
+     * The observation manager, looked up the first time a log is received.
+     */
+    private volatile ObservationManager observationManager;
+
+    /**
+     * The threads capturing their own logs.
+     */
+    private volatile ForbiddenThreadsFilter capturedThreads;
+
+    /**
+     * Notify the log events from a dedicated thread, null when they are notified by the logging thread.
+     */
+    private AsynchronousLogEventDispatcher dispatcher;
+
     @Override
     public String getName()
     {
@@ -105,6 +170,13 @@ public void initialize() throws InitializationException
 
         if (rootLogger != null) {
             setContext(rootLogger.getLoggerContext());
+
+            if (Boolean.getBoolean(ASYNCHRONOUS_PROPERTY)) {
+                this.dispatcher = new AsynchronousLogEventDispatcher(this,
+                    Integer.getInteger(BUFFER_SIZE_PROPERTY, DEFAULT_BUFFER_SIZE), getOverflowPolicy());
+                this.dispatcher.start();
+            }
+
             rootLogger.addAppender(this);
             start();
         } else {
@@ -113,6 +185,34 @@ public void initialize() throws InitializationException
         }
     }
 
+    /**
+     * @return the policy to apply when the buffer is full in asynchronous mode
+     */
+    private AsynchronousLogEventDispatcher.OverflowPolicy getOverflowPolicy()
+    {
+        AsynchronousLogEventDispatcher.OverflowPolicy policy = AsynchronousLogEventDispatcher.OverflowPolicy.BLOCK;
+
+        String value = System.getProperty(OVERFLOW_PROPERTY);
+        if (value != null) {
+            try {
+                policy = AsynchronousLogEventDispatcher.OverflowPolicy.valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                this.logger.warn("Unsupported log event overflow policy [{}], using [{}]", value, policy);
+            }
+        }
+
+        return policy;
+    }
+
+    /**
+     * @param capturedThreads the threads capturing their own logs, their logs are always notified by the logging
+     *            thread
+     */
+    void setCapturedThreads(ForbiddenThreadsFilter capturedThreads)
+    {
+        this.capturedThreads = capturedThreads;
+    }
+
     @Override
     public void onEvent(Event event, Object source, Object data)
     {
@@ -126,11 +226,55 @@ public void onEvent(Event event, Object source, Object data)
      */
     private ObservationManager getObservationManager() throws ComponentLookupException
     {
-        return this.componentManager.getInstance(ObservationManager.class);
+        if (this.observationManager == null) {
+            this.observationManager = this.componentManager.getInstance(ObservationManager.class);
+        }
+
+        return this.observationManager;
     }
 
     @Override
     protected void append(ILoggingEvent event)
+    {
+        try {
+            ObservationManager manager = getObservationManager();
+
+            // Most of the time nobody listens to logs so don't create events for nothing
+            if (manager.hasListener(LogEvent.class)) {
+                if (isAsynchronous()) {
+                    // Make sure everything needed later is taken from the logging thread
+                    event.prepareForDeferredProcessing();
+
+                    this.dispatcher.add(event);
+                } else {
+                    manager.notify(toLogEvent(event), event.getLoggerName(), null);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            this.logger.debug(UNSUPPORTED_LEVEL, event.getLevel());
+        } catch (ComponentLookupException e) {
+            this.logger.error("Can't find any implementation of [{}]", ObservationManager.class.getName(), e);
+        }
+    }
+
+    /**
+     * @return true if the log events of the current thread should be notified by the dedicated thread
+     */
+    private boolean isAsynchronous()
+    {
+        Thread thread = Thread.currentThread();
+        ForbiddenThreadsFilter captured = this.capturedThreads;
+
+        // The dispatcher thread would wait for itself if it were to fill the buffer with the logs of the listeners
+        return this.dispatcher != null && !this.dispatcher.isDispatcherThread(thread)
+            && (captured == null || !captured.contains(thread));
+    }
+
+    /**
+     * @param event the Logback event
+     * @return the corresponding log event
+     */
+    private LogEvent toLogEvent(ILoggingEvent event)
     {
         Throwable throwable = null;
         IThrowableProxy throwableProxy = event.getThrowableProxy();
@@ -138,18 +282,29 @@ protected void append(ILoggingEvent event)
             throwable = ((ThrowableProxy) throwableProxy).getThrowable();
         }
 
-        try {
-            LogLevel logLevel = this.utils.toLogLevel(event.getLevel());
+        LogLevel logLevel = this.utils.toLogLevel(event.getLevel());
 
-            LogEvent logevent =
-                new LogEvent(event.getMarker(), logLevel, event.getMessage(), event.getArgumentArray(), throwable);
+        return new LogEvent(event.getMarker(), logLevel, event.getMessage(), event.getArgumentArray(), throwable);
+    }
 
-            getObservationManager().notify(logevent, event.getLoggerName(), null);
-        } catch (IllegalArgumentException e) {
-            this.logger.debug("Unsupported log level [{}]", event.getLevel());
-        } catch (ComponentLookupException e) {
-            this.logger.error("Can't find any implementation of [{}]", ObservationManager.class.getName(), e);
+    /**
+     * Convert and notify log events taken from the buffer, in asynchronous mode.
+     * 
+     * @param events the Logback events
+     * @throws ComponentLookupException failed to get ObservationManager implementation
+     */
+    void notifyLogEvents(List<ILoggingEvent> events) throws ComponentLookupException
+    {
+        List<EventNotification> notifications = new ArrayList<EventNotification>(events.size());
+        for (ILoggingEvent event : events) {
+            try {
+                notifications.add(new EventNotification(toLogEvent(event), event.getLoggerName(), null));
+            } catch (IllegalArgumentException e) {
+                this.logger.debug(UNSUPPORTED_LEVEL, event.getLevel());
+            }
         }
+
+        getObservationManager().notify(notifications);
     }
 
     /**
@@ -165,6 +320,14 @@ public void dispose() throws ComponentLifecycleException
     {
         stop();
 
+        if (this.dispatcher != null) {
+            try {
+                this.dispatcher.stop(SHUTDOWN_TIMEOUT);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
         // Unregister appender
         ch.qos.logback.classic.Logger rootLogger = getRootLogger();
 
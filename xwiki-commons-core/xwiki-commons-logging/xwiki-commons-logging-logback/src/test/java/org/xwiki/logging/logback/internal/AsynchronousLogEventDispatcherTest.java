@@ -0,0 +1,136 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.logging.logback.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+
+/**
+ * Unit tests for {@link AsynchronousLogEventDispatcher}.
+ * 
+ * @version $Id$
+ * @since 5.4M1
+ */
+public class AsynchronousLogEventDispatcherTest
+{
+    /**
+     * Record the notified events instead of converting them.
+     */
+    private static class RecordingGenerator extends LogbackEventGenerator
+    {
+        private final List<String> messages = new ArrayList<String>();
+
+        @Override
+        void notifyLogEvents(List<ILoggingEvent> events)
+        {
+            for (ILoggingEvent event : events) {
+                this.messages.add(event.getMessage());
+            }
+        }
+    }
+
+    private ILoggingEvent createEvent(String message)
+    {
+        LoggingEvent event = new LoggingEvent();
+        event.setMessage(message);
+
+        return event;
+    }
+
+    @Test
+    public void capacityIsRoundedToAPowerOfTwo()
+    {
+        Assert.assertEquals(4, new AsynchronousLogEventDispatcher(null, 3, null).getCapacity());
+        Assert.assertEquals(4, new AsynchronousLogEventDispatcher(null, 4, null).getCapacity());
+        Assert.assertEquals(1, new AsynchronousLogEventDispatcher(null, 0, null).getCapacity());
+    }
+
+    @Test
+    public void dropWhenFull()
+    {
+        AsynchronousLogEventDispatcher dispatcher = new AsynchronousLogEventDispatcher(new RecordingGenerator(), 2,
+            AsynchronousLogEventDispatcher.OverflowPolicy.DROP);
+
+        // The dispatcher is not started so nothing is consumed
+        Assert.assertTrue(dispatcher.add(createEvent("1")));
+        Assert.assertTrue(dispatcher.add(createEvent("2")));
+        Assert.assertFalse(dispatcher.add(createEvent("3")));
+    }
+
+    @Test
+    public void notifyInOrder() throws Exception
+    {
+        RecordingGenerator generator = new RecordingGenerator();
+        AsynchronousLogEventDispatcher dispatcher =
+            new AsynchronousLogEventDispatcher(generator, 4, AsynchronousLogEventDispatcher.OverflowPolicy.BLOCK);
+        dispatcher.start();
+
+        List<String> expected = new ArrayList<String>();
+        for (int i = 0; i < 1000; ++i) {
+            String message = String.valueOf(i);
+            expected.add(message);
+            Assert.assertTrue(dispatcher.add(createEvent(message)));
+        }
+
+        dispatcher.stop(10000);
+
+        Assert.assertEquals(expected, generator.messages);
+        Assert.assertFalse(dispatcher.add(createEvent("after stop")));
+    }
+
+    @Test
+    public void sampleWhenFull() throws Exception
+    {
+        RecordingGenerator generator = new RecordingGenerator();
+        final AsynchronousLogEventDispatcher dispatcher =
+            new AsynchronousLogEventDispatcher(generator, 1, AsynchronousLogEventDispatcher.OverflowPolicy.SAMPLE);
+
+        Assert.assertTrue(dispatcher.add(createEvent("kept")));
+        for (int i = 1; i < AsynchronousLogEventDispatcher.SAMPLE_RATE; ++i) {
+            Assert.assertFalse(dispatcher.add(createEvent("dropped")));
+        }
+
+        // The next overflowing event waits for some room
+        final boolean[] added = new boolean[1];
+        Thread thread = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                added[0] = dispatcher.add(createEvent("sampled"));
+            }
+        };
+        thread.start();
+        dispatcher.start();
+        thread.join(10000);
+        dispatcher.stop(10000);
+
+        Assert.assertTrue(added[0]);
+        Assert.assertEquals(2, generator.messages.size());
+        Assert.assertEquals("kept", generator.messages.get(0));
+        Assert.assertEquals("sampled", generator.messages.get(1));
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.management.internal.component;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.manager.ComponentManagerInitializer;
+import org.xwiki.component.manager.ComponentManagerProfiler;
+import org.xwiki.management.JMXBeanRegistration;
+
+/**
+ * Registers a JMX MBean exposing the Component Manager profiler data when profiling is enabled, i.e. when a
+ * {@link ComponentManagerProfiler} component is available.
+ * 
+ * @version $Id$
+ * @since 5.4M1
+ */
+@Component
+@Named("profiler")
+@Singleton
+public class ComponentProfilerInitializer implements ComponentManagerInitializer
+{
+    /**
+     * Used to register the MBean.
+     */
+    @Inject
+    private JMXBeanRegistration jmxRegistration;
+
+    /**
+     * The logger to use for logging.
+     */
+    @Inject
+    private Logger logger;
+
+    @Override
+    public void initialize(ComponentManager componentManager)
+    {
+        if (componentManager.hasComponent(ComponentManagerProfiler.class)) {
+            try {
+                ComponentManagerProfiler profiler = componentManager.getInstance(ComponentManagerProfiler.class);
+
+                this.jmxRegistration.registerMBean(new JMXComponentProfiler(profiler),
+                    "type=ComponentManager,name=profiler");
+            } catch (ComponentLookupException e) {
+                this.logger.warn("Failed to lookup the Component Manager profiler", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.management.internal.component;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
+
+import org.xwiki.component.manager.ComponentManagerProfiler;
+
+/**
+ * Exposes the {@link ComponentManagerProfiler} data as JMX open types.
+ * 
+ * @version $Id$
+ * @since 5.4M1
+ */
+public class JMXComponentProfiler implements JMXComponentProfilerMBean
+{
+    /**
+     * The name of the column holding the component role, also used as index of the lookup counts.
+     */
+    private static final String ROLE = "role";
+
+    /**
+     * The profiler for which to return management data.
+     */
+    private ComponentManagerProfiler profiler;
+
+    /**
+     * @param profiler the profiler for which to return management data
+     */
+    public JMXComponentProfiler(ComponentManagerProfiler profiler)
+    {
+        this.profiler = profiler;
+    }
+
+    @Override
+    public TabularData getLookupCounts()
+    {
+        try {
+            String[] columnNames = new String[] {ROLE, "count"};
+            String[] columnDescriptions = new String[] {"The component role", "The number of lookups"};
+            OpenType< ? >[] columnTypes = new OpenType< ? >[] {SimpleType.STRING, SimpleType.LONG};
+            CompositeType rowType =
+                new CompositeType("lookupCount", "The number of lookups of a role", columnNames, columnDescriptions,
+                    columnTypes);
+            TabularData data =
+                new TabularDataSupport(new TabularType("lookupCounts", "The number of lookups of each role", rowType,
+                    new String[] {ROLE}));
+
+            for (Map.Entry<Type, Long> entry : this.profiler.getLookupCounts().entrySet()) {
+                data.put(new CompositeDataSupport(rowType, columnNames, new Object[] {entry.getKey().toString(),
+                    entry.getValue()}));
+            }
+
+            return data;
+        } catch (OpenDataException e) {
+            throw new RuntimeException("Failed to gather the component lookup counts", e);
+        }
+    }
+
+    @Override
+    public TabularData getInitializationDurations()
+    {
+        return toDurations(this.profiler.getInitializationDurations(), "component",
+            "The component implementation", "initializationDurations",
+            "The time spent initializing each component implementation");
+    }
+
+    @Override
+    public TabularData getLoadingDurations()
+    {
+        return toDurations(this.profiler.getLoadingDurations(), "jar", "The JAR containing the components",
+            "loadingDurations", "The time spent loading the components of each JAR");
+    }
+
+    @Override
+    public String exportTrace()
+    {
+        StringWriter writer = new StringWriter();
+
+        try {
+            this.profiler.writeTrace(writer);
+        } catch (IOException e) {
+            // Never happens with a StringWriter
+            throw new RuntimeException("Failed to export the component trace", e);
+        }
+
+        return writer.toString();
+    }
+
+    @Override
+    public void reset()
+    {
+        this.profiler.reset();
+    }
+
+    private TabularData toDurations(Map<String, Long> durations, String keyName, String keyDescription,
+        String typeName, String typeDescription)
+    {
+        try {
+            String[] columnNames = new String[] {keyName, "duration"};
+            String[] columnDescriptions = new String[] {keyDescription, "The duration in milliseconds"};
+            OpenType< ? >[] columnTypes = new OpenType< ? >[] {SimpleType.STRING, SimpleType.DOUBLE};
+            CompositeType rowType =
+                new CompositeType(keyName, typeDescription, columnNames, columnDescriptions, columnTypes);
+            TabularData data =
+                new TabularDataSupport(new TabularType(typeName, typeDescription, rowType, new String[] {keyName}));
+
+            for (Map.Entry<String, Long> entry : durations.entrySet()) {
+                double milliseconds = (double) entry.getValue() / TimeUnit.MILLISECONDS.toNanos(1);
+                data.put(new CompositeDataSupport(rowType, columnNames, new Object[] {entry.getKey(), milliseconds}));
+            }
+
+            return data;
+        } catch (OpenDataException e) {
+            throw new RuntimeException("Failed to gather the component durations", e);
+        }
+    }
+}
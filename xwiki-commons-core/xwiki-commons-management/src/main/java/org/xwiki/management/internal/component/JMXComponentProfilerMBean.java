@@ -0,0 +1,59 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.management.internal.component;
+
+import javax.management.openmbean.TabularData;
+
+/**
+ * Exposes the {@link org.xwiki.component.manager.ComponentManagerProfiler} data of the Component Manager.
+ * 
+ * @version $Id$
+ * @since 5.4M1
+ */
+public interface JMXComponentProfilerMBean
+{
+    /**
+     * @return the number of lookups of each component role
+     */
+    TabularData getLookupCounts();
+
+    /**
+     * @return the time spent initializing each component implementation, in milliseconds
+     */
+    TabularData getInitializationDurations();
+
+    /**
+     * @return the time spent loading the component classes and descriptors of each JAR, in milliseconds
+     */
+    TabularData getLoadingDurations();
+
+    /**
+     * Export the recorded timeline in the Chrome Trace Event JSON format (to be saved and opened with
+     * {@code chrome://tracing}).
+     * 
+     * @return the trace
+     */
+    String exportTrace();
+
+    /**
+     * Forget everything recorded so far.
+     */
+    void reset();
+}
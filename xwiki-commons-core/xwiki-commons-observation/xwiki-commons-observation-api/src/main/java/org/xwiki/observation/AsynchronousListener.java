@@ -0,0 +1,84 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * Indicate that the annotated {@link EventListener} should receive the events asynchronously instead of being called
+ * by the thread notifying the event. Each asynchronous listener receives its events in order, from a bounded queue
+ * processed by a thread pool shared by all the asynchronous listeners.
+ * <p>
+ * While the listener handles the event, the current {@code ExecutionContext} is a new context inheriting the
+ * inherited properties of the context of the thread notifying the event, captured when the event was notified.
+ * 
+ * @version $Id$
+ * @since 5.4M1
+ */
+@Documented
+@Retention(RUNTIME)
+@Target(TYPE)
+@Inherited
+public @interface AsynchronousListener
+{
+    /**
+     * What to do with an event when the queue of the listener is full.
+     */
+    enum RejectionPolicy
+    {
+        /**
+         * The thread notifying the event waits for some room in the queue.
+         */
+        BLOCK,
+
+        /**
+         * The event is passed to the listener by the thread notifying the event, in its execution context, after the
+         * events waiting in the queue so that the order is kept.
+         */
+        CALLER_RUNS,
+
+        /**
+         * The event is discarded and a warning is logged.
+         */
+        DISCARD
+    }
+
+    /**
+     * The maximum number of events waiting to be passed to the listener.
+     */
+    int queueSize() default 1000;
+
+    /**
+     * What to do with an event when the queue of the listener is full.
+     */
+    RejectionPolicy rejectionPolicy() default RejectionPolicy.BLOCK;
+
+    /**
+     * True if the waiting events should still be passed to the listener when the observation manager is disposed,
+     * false to discard them.
+     */
+    boolean drainOnShutdown() default true;
+}
@@ -0,0 +1,42 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation;
+
+import java.util.List;
+
+/**
+ * An {@link EventListener} able to handle several events at once. When several events are notified with
+ * {@link ObservationManager#notify(java.util.Collection)}, the events it's registered for are passed to
+ * {@link #onEvents(List)} in a single call, after all the other listeners received them one by one. Events notified
+ * one by one are still passed to {@link #onEvent(org.xwiki.observation.event.Event, Object, Object)}.
+ * 
+ * @version $Id$
+ * @since 5.4M1
+ */
+public interface BatchEventListener extends EventListener
+{
+    /**
+     * Called with the events of a batch matching one of the events for which this listener is registered (see
+     * {@link #getEvents()}), in the order they were notified.
+     * 
+     * @param notifications the matching events along with their source and data
+     */
+    void onEvents(List<EventNotification> notifications);
+}
@@ -0,0 +1,118 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.xwiki.observation.event.Event;
+
+/**
+ * An event to notify along with its source and data, used to notify several events at once with
+ * {@link ObservationManager#notify(java.util.Collection)}.
+ * 
+ * @version $Id$
+ * @since 5.4M1
+ */
+public final class EventNotification
+{
+    /**
+     * The notified event.
+     */
+    private final Event event;
+
+    /**
+     * The source of the event.
+     */
+    private final Object source;
+
+    /**
+     * The additional data related to the event.
+     */
+    private final Object data;
+
+    /**
+     * @param event the notified event
+     * @param source the source of the event (or <code>null</code>)
+     * @param data the additional data related to the event (or <code>null</code>)
+     */
+    public EventNotification(Event event, Object source, Object data)
+    {
+        this.event = event;
+        this.source = source;
+        this.data = data;
+    }
+
+    /**
+     * @return the notified event
+     */
+    public Event getEvent()
+    {
+        return this.event;
+    }
+
+    /**
+     * @return the source of the event (or <code>null</code>)
+     */
+    public Object getSource()
+    {
+        return this.source;
+    }
+
+    /**
+     * @return the additional data related to the event (or <code>null</code>)
+     */
+    public Object getData()
+    {
+        return this.data;
+    }
+
+    @Override
+    public boolean equals(Object object)
+    {
+        if (object == this) {
+            return true;
+        }
+        if (!(object instanceof EventNotification)) {
+            return false;
+        }
+        EventNotification rhs = (EventNotification) object;
+        return new EqualsBuilder()
+            .append(getEvent(), rhs.getEvent())
+            .append(getSource(), rhs.getSource())
+            .append(getData(), rhs.getData())
+            .isEquals();
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return new HashCodeBuilder(5, 137)
+            .append(getEvent())
+            .append(getSource())
+            .append(getData())
+            .toHashCode();
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.event + " (source: " + this.source + ", data: " + this.data + ')';
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * Indicate the order in which the annotated {@link EventListener} is called compared to the other listeners matching
+ * the same event: the listeners with the lowest priority are called first. The listeners which are not annotated have
+ * the {@link #DEFAULT_PRIORITY default priority} and the listeners with the same priority are called in no particular
+ * order. The priority does not apply to the thread listeners (see
+ * {@link ObservationManager#addThreadListener(EventListener)}) which are always called last.
+ * 
+ * @version $Id$
+ * @since 5.4M1
+ */
+@Documented
+@Retention(RUNTIME)
+@Target(TYPE)
+@Inherited
+public @interface ListenerPriority
+{
+    /**
+     * The priority of the listeners which are not annotated.
+     */
+    int DEFAULT_PRIORITY = 1000;
+
+    /**
+     * The priority of the listener, the lowest being called first.
+     */
+    int value();
+}
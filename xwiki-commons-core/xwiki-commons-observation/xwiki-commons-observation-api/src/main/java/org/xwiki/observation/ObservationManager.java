@@ -19,6 +19,8 @@
  */
 package org.xwiki.observation;
 
+import java.util.Collection;
+
 import org.xwiki.component.annotation.Role;
 import org.xwiki.observation.event.Event;
 
@@ -47,6 +49,30 @@
      */
     void removeListener(String listenerName);
 
+    /**
+     * Add a listener receiving only the events notified by the current thread, until it's removed with
+     * {@link #removeThreadListener(String)} from the same thread. Contrary to the listeners added with
+     * {@link #addListener(EventListener)}, the events notified by the other threads don't have to go through it, which
+     * makes it well suited to capture what a given thread (a job for example) produces.
+     * <p>
+     * Thread listeners are always called synchronously, after the listeners added with
+     * {@link #addListener(EventListener)}.
+     * </p>
+     * 
+     * @param eventListener the listener to register for the current thread
+     * @since 5.4M1
+     */
+    void addThreadListener(EventListener eventListener);
+
+    /**
+     * Remove a listener added for the current thread with {@link #addThreadListener(EventListener)}.
+     * 
+     * @param listenerName the name of the listener to remove (must match {@link EventListener#getName()}
+     * @return the removed listener or null if no listener is registered under that name for the current thread
+     * @since 5.4M1
+     */
+    EventListener removeThreadListener(String listenerName);
+
     /**
      * Adds an Event to an already registered listener.
      * 
@@ -89,4 +115,25 @@
      * @see #notify(org.xwiki.observation.event.Event, Object, Object)
      */
     void notify(Event event, Object source);
+
+    /**
+     * Call the registered listeners matching each of the passed events, in order. It's equivalent to calling
+     * {@link #notify(Event, Object, Object)} for each event except that the matching listeners are found only once for
+     * each event class and that the {@link BatchEventListener}s receive all their matching events in one call.
+     * 
+     * @param notifications the events to pass to the registered listeners along with their source and data
+     * @since 5.4M1
+     */
+    void notify(Collection<EventNotification> notifications);
+
+    /**
+     * Indicate if notifying an event of the passed class could reach a listener. It's meant to let very frequent event
+     * producers skip creating events nobody is going to receive and is much cheaper than notifying the event.
+     * 
+     * @param eventClass the class of the event
+     * @return false if no registered listener or thread listener of the current thread can receive an event of the
+     *         passed class
+     * @since 5.4M1
+     */
+    boolean hasListener(Class< ? extends Event> eventClass);
 }
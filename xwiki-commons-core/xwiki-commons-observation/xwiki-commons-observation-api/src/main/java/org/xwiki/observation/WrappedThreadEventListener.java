@@ -29,7 +29,10 @@
  * 
  * @version $Id$
  * @since 3.2M3
+ * @deprecated since 5.4M1 use {@link ObservationManager#addThreadListener(EventListener)} instead which does not
+ *             require the listener to filter the events of all the other threads
  */
+@Deprecated
 public class WrappedThreadEventListener extends AbstractThreadEventListener
 {
     /**
@@ -0,0 +1,73 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.event;
+
+/**
+ * Event matcher used by a listener which needs to receive all the events of a given type, including its subclasses
+ * and implementations. For example {@code new AssignableEvent(BeginEvent.class)} matches all the
+ * {@link BeginEvent} implementations.
+ * <p>
+ * The observation manager resolves the listeners to call for each notified event class only once so listening to a
+ * family of events this way is a lot cheaper than listening to {@link AllEvent} and filtering the events.
+ * 
+ * @version $Id$
+ * @since 5.4M1
+ */
+public class AssignableEvent implements Event
+{
+    /**
+     * The type of the matched events.
+     */
+    private final Class< ? > eventType;
+
+    /**
+     * @param eventType the type of the matched events, usually an interface or an abstract class
+     */
+    public AssignableEvent(Class< ? > eventType)
+    {
+        this.eventType = eventType;
+    }
+
+    /**
+     * @return the type of the matched events
+     */
+    public Class< ? > getEventType()
+    {
+        return this.eventType;
+    }
+
+    @Override
+    public boolean matches(Object otherEvent)
+    {
+        return this.eventType.isInstance(otherEvent);
+    }
+
+    @Override
+    public boolean equals(Object object)
+    {
+        return object instanceof AssignableEvent && ((AssignableEvent) object).eventType == this.eventType;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return this.eventType.hashCode();
+    }
+}
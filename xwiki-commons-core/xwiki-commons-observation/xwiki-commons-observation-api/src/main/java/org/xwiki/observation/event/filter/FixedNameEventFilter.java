@@ -29,7 +29,7 @@
  * 
  * @version $Id$
  */
-public class FixedNameEventFilter implements EventFilter, Serializable
+public class FixedNameEventFilter implements IndexableEventFilter, Serializable
 {
     /**
      * The version identifier for this Serializable class. Increment only if the <i>serialized</i> form of the class
@@ -62,6 +62,18 @@ public boolean matches(EventFilter eventFilter)
         return (getFilter().equals(eventFilter.getFilter()));
     }
 
+    @Override
+    public String getIndexKey()
+    {
+        return getFilter();
+    }
+
+    @Override
+    public boolean isPrefixIndexKey()
+    {
+        return false;
+    }
+
     @Override
     public boolean equals(Object object)
     {
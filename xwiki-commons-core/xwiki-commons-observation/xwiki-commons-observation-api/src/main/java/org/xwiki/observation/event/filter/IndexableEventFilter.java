@@ -0,0 +1,47 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.event.filter;
+
+/**
+ * An {@link EventFilter} matching only filters whose value is equal to, or starts with, a known literal. It allows the
+ * observation manager to index the listeners on that literal so that an event only reaches the listeners which can
+ * match it instead of testing all the listeners registered for the event type.
+ * <p>
+ * Implementations must guarantee that {@link #matches(EventFilter)} returns <code>false</code> for any filter whose
+ * value is not equal to (or, for a prefix key, does not start with) {@link #getIndexKey()}.
+ * </p>
+ * 
+ * @version $Id$
+ * @since 5.4M1
+ */
+public interface IndexableEventFilter extends EventFilter
+{
+    /**
+     * @return the literal the value of the matched filters is equal to or starts with, <code>null</code> if the
+     *         filter can't be indexed
+     */
+    String getIndexKey();
+
+    /**
+     * @return <code>true</code> if the value of the matched filters starts with {@link #getIndexKey()},
+     *         <code>false</code> if it's equal to it
+     */
+    boolean isPrefixIndexKey();
+}
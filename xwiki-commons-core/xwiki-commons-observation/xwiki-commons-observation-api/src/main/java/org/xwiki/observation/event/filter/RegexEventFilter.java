@@ -28,7 +28,7 @@
  * 
  * @version $Id$
  */
-public class RegexEventFilter implements EventFilter, Serializable
+public class RegexEventFilter implements IndexableEventFilter, Serializable
 {
     /**
      * The version identifier for this Serializable class. Increment only if the <i>serialized</i> form of the class
@@ -36,12 +36,28 @@ public class RegexEventFilter implements EventFilter, Serializable
      */
     private static final long serialVersionUID = 1L;
 
+    /**
+     * The characters having a special meaning in a regular expression.
+     */
+    private static final String SPECIAL_CHARACTERS = "\\^$.|?*+()[]{}";
+
+    /**
+     * The quantifiers allowing the previous character to be absent.
+     */
+    private static final String OPTIONAL_QUANTIFIERS = "?*{";
+
     /** The regular expression, as a string. */
     private String filter;
 
     /** The regular expression, as a regexp Pattern object. */
     private Pattern pattern;
 
+    /** The literal all the matched values start with, computed from the regular expression. */
+    private String literalPrefix;
+
+    /** True if the regular expression only contains literal characters. */
+    private boolean literal;
+
     /**
      * Constructor initializing this event filter with a regular expression that should be matched.
      * 
@@ -51,6 +67,49 @@ public RegexEventFilter(String filter)
     {
         this.filter = filter;
         this.pattern = Pattern.compile(filter);
+
+        initializeLiteralPrefix();
+    }
+
+    /**
+     * Extract the literal characters the regular expression starts with.
+     */
+    private void initializeLiteralPrefix()
+    {
+        // An alternation can match values not starting with the first literal characters
+        if (this.filter.indexOf('|') != -1) {
+            this.literalPrefix = "";
+
+            return;
+        }
+
+        int end = 0;
+        while (end < this.filter.length() && SPECIAL_CHARACTERS.indexOf(this.filter.charAt(end)) == -1) {
+            ++end;
+        }
+
+        this.literal = end == this.filter.length();
+
+        // The last literal character is not part of the prefix if it's optional
+        if (!this.literal && end > 0 && OPTIONAL_QUANTIFIERS.indexOf(this.filter.charAt(end)) != -1) {
+            --end;
+        }
+
+        this.literalPrefix = this.filter.substring(0, end);
+    }
+
+    /**
+     * Restore the literal prefix which is not serialized in previous versions.
+     * 
+     * @return this filter
+     */
+    private Object readResolve()
+    {
+        if (this.literalPrefix == null) {
+            initializeLiteralPrefix();
+        }
+
+        return this;
     }
 
     @Override
@@ -65,4 +124,25 @@ public boolean matches(EventFilter eventFilter)
         Matcher matcher = this.pattern.matcher(eventFilter.getFilter());
         return matcher.matches();
     }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The literal characters at the beginning of the regular expression, empty if the regular expression contains an
+     * alternation.
+     * </p>
+     * 
+     * @see org.xwiki.observation.event.filter.IndexableEventFilter#getIndexKey()
+     */
+    @Override
+    public String getIndexKey()
+    {
+        return this.literalPrefix;
+    }
+
+    @Override
+    public boolean isPrefixIndexKey()
+    {
+        return !this.literal;
+    }
 }
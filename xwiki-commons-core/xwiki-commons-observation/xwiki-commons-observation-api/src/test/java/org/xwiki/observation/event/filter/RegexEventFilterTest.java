@@ -0,0 +1,60 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.event.filter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link RegexEventFilter}.
+ * 
+ * @version $Id$
+ */
+public class RegexEventFilterTest
+{
+    private void assertIndexKey(String regex, String expectedKey, boolean expectedPrefix)
+    {
+        RegexEventFilter filter = new RegexEventFilter(regex);
+
+        Assert.assertEquals(expectedKey, filter.getIndexKey());
+        Assert.assertEquals(expectedPrefix, filter.isPrefixIndexKey());
+    }
+
+    @Test
+    public void testIndexKey()
+    {
+        assertIndexKey("Space.WebHome", "Space", true);
+        assertIndexKey("Space\\.WebHome", "Space", true);
+        assertIndexKey("Space", "Space", false);
+        assertIndexKey("Spaces?.*", "Space", true);
+        assertIndexKey("Space+", "Space", true);
+        assertIndexKey("Space.*|Other.*", "", true);
+        assertIndexKey(".*Doc.*", "", true);
+    }
+
+    @Test
+    public void testMatches()
+    {
+        RegexEventFilter filter = new RegexEventFilter("Space\\..*");
+
+        Assert.assertTrue(filter.matches(new FixedNameEventFilter("Space.WebHome")));
+        Assert.assertFalse(filter.matches(new FixedNameEventFilter("Other.WebHome")));
+    }
+}
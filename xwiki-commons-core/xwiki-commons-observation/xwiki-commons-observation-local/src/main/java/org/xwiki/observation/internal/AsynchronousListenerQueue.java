@@ -0,0 +1,345 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.observation.AsynchronousListener;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.event.Event;
+
+/**
+ * The events waiting to be passed to an {@link AsynchronousListener}. The events are passed in order by a single task
+ * at a time running in the shared executor. When an event is passed in the notifying thread instead (see
+ * {@link AsynchronousListener.RejectionPolicy#CALLER_RUNS} and {@link #shutdown(long)}) the waiting events are passed
+ * first, holding the same lock as the task, so that the listener is never called concurrently and keeps receiving the
+ * events in order.
+ * 
+ * @version $Id$
+ * @since 5.4M1
+ */
+class AsynchronousListenerQueue implements Runnable
+{
+    /**
+     * The maximum number of events passed to the listener before giving the thread back to the other listeners.
+     */
+    private static final int MAX_BATCH = 100;
+
+    /**
+     * The time to wait between two checks when draining the queue.
+     */
+    private static final long DRAIN_CHECK_INTERVAL = 10;
+
+    /**
+     * An event waiting to be passed to the listener.
+     */
+    private static final class EventDelivery
+    {
+        /**
+         * The event to pass to the listener.
+         */
+        private final Event event;
+
+        /**
+         * The source of the event.
+         */
+        private final Object source;
+
+        /**
+         * The additional data related to the event.
+         */
+        private final Object data;
+
+        /**
+         * The execution context inheriting the properties of the context of the notifying thread, null if there was
+         * none.
+         */
+        private final ExecutionContext context;
+
+        /**
+         * @param event the event to pass to the listener
+         * @param source the source of the event
+         * @param data the additional data related to the event
+         * @param context the execution context to make current while the listener handles the event, can be null
+         */
+        EventDelivery(Event event, Object source, Object data, ExecutionContext context)
+        {
+            this.event = event;
+            this.source = source;
+            this.data = data;
+            this.context = context;
+        }
+    }
+
+    /**
+     * The listener to pass the events to.
+     */
+    private final EventListener listener;
+
+    /**
+     * The asynchronous configuration of the listener.
+     */
+    private final AsynchronousListener configuration;
+
+    /**
+     * Used to call the listener.
+     */
+    private final DefaultObservationManager observationManager;
+
+    /**
+     * The events waiting to be passed to the listener.
+     */
+    private final BlockingQueue<EventDelivery> queue;
+
+    /**
+     * Held while polling an event and passing it to the listener so that the listener is called by one thread at a
+     * time, in the order of the events.
+     */
+    private final Object deliveryLock = new Object();
+
+    /**
+     * True when a task processing the queue is scheduled or running.
+     */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    /**
+     * True when the queue has been shut down, the events are then passed to the listener in the notifying thread.
+     */
+    private volatile boolean closed;
+
+    /**
+     * The executor processing the queue.
+     */
+    private final Executor executor;
+
+    /**
+     * Used to propagate the execution context of the thread notifying the event, can be null.
+     */
+    private final Execution execution;
+
+    /**
+     * The logger to use.
+     */
+    private final Logger logger;
+
+    /**
+     * @param listener the listener to pass the events to
+     * @param configuration the asynchronous configuration of the listener
+     * @param observationManager used to call the listener
+     * @param executor the executor processing the queue
+     * @param execution used to propagate the execution context of the thread notifying the event, can be null
+     * @param logger the logger to use
+     */
+    AsynchronousListenerQueue(EventListener listener, AsynchronousListener configuration,
+        DefaultObservationManager observationManager, Executor executor, Execution execution, Logger logger)
+    {
+        this.listener = listener;
+        this.configuration = configuration;
+        this.observationManager = observationManager;
+        this.queue = new ArrayBlockingQueue<EventDelivery>(configuration.queueSize());
+        this.executor = executor;
+        this.execution = execution;
+        this.logger = logger;
+    }
+
+    /**
+     * @return the listener to pass the events to
+     */
+    EventListener getListener()
+    {
+        return this.listener;
+    }
+
+    /**
+     * @param event the event to pass to the listener
+     * @param source the source of the event
+     * @param data the additional data related to the event
+     */
+    void add(Event event, Object source, Object data)
+    {
+        EventDelivery delivery = new EventDelivery(event, source, data, captureContext());
+
+        // Once shut down (the event is notified through a dispatch table computed before the shutdown) the listener is
+        // called in the current thread
+        boolean added = false;
+        if (!this.closed) {
+            if (this.configuration.rejectionPolicy() == AsynchronousListener.RejectionPolicy.BLOCK) {
+                try {
+                    // Wait for some room but don't wait forever if the queue is shut down meanwhile
+                    while (!this.closed && !added) {
+                        added = this.queue.offer(delivery, DRAIN_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            } else {
+                added = this.queue.offer(delivery);
+            }
+        }
+
+        if (added) {
+            schedule();
+        } else if (this.closed
+            || this.configuration.rejectionPolicy() == AsynchronousListener.RejectionPolicy.CALLER_RUNS) {
+            deliverInCurrentThread(delivery);
+        } else {
+            this.logger.warn("The event [{}] has been discarded because the queue of listener [{}] is full", event,
+                this.listener.getName());
+        }
+    }
+
+    /**
+     * @return a new execution context inheriting the properties of the context of the current thread, null if there is
+     *         none
+     */
+    private ExecutionContext captureContext()
+    {
+        ExecutionContext currentContext = this.execution != null ? this.execution.getContext() : null;
+
+        ExecutionContext context = null;
+        if (currentContext != null) {
+            // Don't pass the context itself: it's modified by the notifying thread while the listener handles the event
+            context = new ExecutionContext();
+            context.inheritFrom(currentContext);
+        }
+
+        return context;
+    }
+
+    private void schedule()
+    {
+        if (this.scheduled.compareAndSet(false, true)) {
+            try {
+                this.executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                // The executor has been shut down: pass the waiting events in the current thread
+                this.closed = true;
+                this.scheduled.set(false);
+                deliverInCurrentThread(null);
+            }
+        }
+    }
+
+    /**
+     * Pass the waiting events and then the passed one to the listener in the current thread, in the current execution
+     * context.
+     * 
+     * @param delivery the event to pass after the waiting ones, null to only pass the waiting events
+     */
+    private void deliverInCurrentThread(EventDelivery delivery)
+    {
+        synchronized (this.deliveryLock) {
+            for (EventDelivery waiting = this.queue.poll(); waiting != null; waiting = this.queue.poll()) {
+                callListener(waiting);
+            }
+
+            if (delivery != null) {
+                callListener(delivery);
+            }
+        }
+    }
+
+    @Override
+    public void run()
+    {
+        try {
+            boolean delivered = true;
+            for (int i = 0; delivered && i < MAX_BATCH; ++i) {
+                synchronized (this.deliveryLock) {
+                    EventDelivery delivery = this.queue.poll();
+                    delivered = delivery != null;
+                    if (delivered) {
+                        deliver(delivery);
+                    }
+                }
+            }
+        } finally {
+            this.scheduled.set(false);
+
+            // Events might have been added after the last poll
+            if (!this.queue.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+
+    /**
+     * Pass an event to the listener in the execution context captured when it was notified.
+     * 
+     * @param delivery the event to pass
+     */
+    private void deliver(EventDelivery delivery)
+    {
+        if (this.execution != null) {
+            // Forget what the thread might have inherited from the thread which created it or been left with
+            this.execution.removeContext();
+            if (delivery.context != null) {
+                this.execution.setContext(delivery.context);
+            }
+        }
+
+        try {
+            callListener(delivery);
+        } finally {
+            if (this.execution != null) {
+                this.execution.removeContext();
+            }
+        }
+    }
+
+    private void callListener(EventDelivery delivery)
+    {
+        this.observationManager.callListener(this.listener, delivery.event, delivery.source, delivery.data);
+    }
+
+    /**
+     * Pass the waiting events to the listener or discard them, depending on the listener configuration. The events
+     * added after this call are passed to the listener in the notifying thread.
+     * 
+     * @param timeout the maximum time to wait for the waiting events to be passed to the listener, in milliseconds
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    void shutdown(long timeout) throws InterruptedException
+    {
+        this.closed = true;
+
+        if (this.configuration.drainOnShutdown()) {
+            long end = System.currentTimeMillis() + timeout;
+            while ((!this.queue.isEmpty() || this.scheduled.get()) && System.currentTimeMillis() < end) {
+                TimeUnit.MILLISECONDS.sleep(DRAIN_CHECK_INTERVAL);
+            }
+        }
+
+        if (!this.queue.isEmpty()) {
+            this.logger.warn("Discarding [{}] events waiting to be passed to listener [{}]", this.queue.size(),
+                this.listener.getName());
+
+            this.queue.clear();
+        }
+    }
+}
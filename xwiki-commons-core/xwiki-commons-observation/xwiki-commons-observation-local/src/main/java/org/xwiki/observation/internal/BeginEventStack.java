@@ -0,0 +1,98 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Stack;
+
+import org.xwiki.observation.event.AbstractFilterableEvent;
+import org.xwiki.observation.event.BeginEvent;
+
+/**
+ * The stack of {@link BeginEvent}s stored in the execution context, maintaining the number of stacked events of each
+ * {@link AbstractFilterableEvent} type to quickly know if an event of a given type is in progress.
+ * <p>
+ * Only {@link #push(BeginEvent)} and {@link #pop()} keep the count up to date. Like the other {@link Stack} methods
+ * they are synchronized on the stack, which also guards the count.
+ * 
+ * @version $Id$
+ * @since 5.4M1
+ */
+class BeginEventStack extends Stack<BeginEvent>
+{
+    /**
+     * Serialization identifier.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The number of stacked events for each filterable event class and its filterable parent classes.
+     */
+    private final Map<Class< ? >, Integer> typeCounts = new HashMap<Class< ? >, Integer>();
+
+    /**
+     * @param type a class extending {@link AbstractFilterableEvent}
+     * @return true if an instance of the passed type is stacked
+     */
+    synchronized boolean containsType(Class< ? > type)
+    {
+        return this.typeCounts.containsKey(type);
+    }
+
+    @Override
+    public synchronized BeginEvent push(BeginEvent item)
+    {
+        count(item, 1);
+
+        return super.push(item);
+    }
+
+    @Override
+    public synchronized BeginEvent pop()
+    {
+        BeginEvent item = super.pop();
+
+        count(item, -1);
+
+        return item;
+    }
+
+    /**
+     * @param event the pushed or popped event
+     * @param delta 1 when the event is pushed, -1 when it's popped
+     */
+    private void count(BeginEvent event, int delta)
+    {
+        if (event instanceof AbstractFilterableEvent) {
+            Class< ? > type = event.getClass();
+            while (type != AbstractFilterableEvent.class) {
+                Integer count = this.typeCounts.get(type);
+                int newCount = (count != null ? count : 0) + delta;
+                if (newCount > 0) {
+                    this.typeCounts.put(type, newCount);
+                } else {
+                    this.typeCounts.remove(type);
+                }
+                type = type.getSuperclass();
+            }
+        }
+    }
+}
@@ -19,16 +19,21 @@
  */
 package org.xwiki.observation.internal;
 
-import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import org.xwiki.component.annotation.Component;
+import org.xwiki.context.ContextKey;
 import org.xwiki.context.Execution;
 import org.xwiki.context.ExecutionContext;
 import org.xwiki.observation.ObservationContext;
+import org.xwiki.observation.event.AbstractFilterableEvent;
 import org.xwiki.observation.event.BeginEvent;
+import org.xwiki.observation.event.filter.AlwaysMatchingEventFilter;
+import org.xwiki.observation.event.filter.EventFilter;
 
 /**
  * Default implementation of {@link ObservationContext}.
@@ -41,9 +46,10 @@
 public class DefaultObservationContext implements ObservationContext
 {
     /**
-     * The name of the property storing current events.
+     * The key of the property storing current events.
      */
-    static final String KEY_EVENTS = "observation.currentevents";
+    static final ContextKey<BeginEventStack> KEY_EVENTS =
+        ContextKey.get("observation.currentevents", BeginEventStack.class);
 
     /**
      * The execution.
@@ -51,16 +57,21 @@ public class DefaultObservationContext implements ObservationContext
     @Inject
     private Execution execution;
 
+    /**
+     * Indicate for each filterable event class if it overrides {@link AbstractFilterableEvent#matches(Object)}.
+     */
+    private final ConcurrentMap<Class< ? >, Boolean> customMatching = new ConcurrentHashMap<Class< ? >, Boolean>();
+
     /**
      * @return the events stacked in the execution context
      */
-    private Stack<BeginEvent> getCurrentEvents()
+    private BeginEventStack getCurrentEvents()
     {
-        Stack<BeginEvent> events = null;
+        BeginEventStack events = null;
 
         ExecutionContext context = execution.getContext();
         if (context != null) {
-            events = (Stack<BeginEvent>) context.getProperty(KEY_EVENTS);
+            events = context.getProperty(KEY_EVENTS);
         }
 
         return events;
@@ -69,9 +80,13 @@ private Stack<BeginEvent> getCurrentEvents()
     @Override
     public boolean isIn(BeginEvent event)
     {
-        Stack<BeginEvent> events = getCurrentEvents();
+        BeginEventStack events = getCurrentEvents();
 
         if (events != null) {
+            if (isTypeMatching(event)) {
+                return events.containsType(event.getClass());
+            }
+
             for (BeginEvent currentEvent : events) {
                 if (event.matches(currentEvent)) {
                     return true;
@@ -80,4 +95,42 @@ public boolean isIn(BeginEvent event)
         }
         return false;
     }
+
+    /**
+     * @param event the event to match
+     * @return true if the passed event matches any event of its type, in which case the count maintained by
+     *         {@link BeginEventStack} is enough to answer {@link #isIn(BeginEvent)}
+     */
+    private boolean isTypeMatching(BeginEvent event)
+    {
+        if (event instanceof AbstractFilterableEvent) {
+            EventFilter filter = ((AbstractFilterableEvent) event).getEventFilter();
+
+            return filter != null && filter.getClass() == AlwaysMatchingEventFilter.class
+                && !isMatchingCustomized(event.getClass());
+        }
+
+        return false;
+    }
+
+    /**
+     * @param eventClass a filterable event class
+     * @return true if the passed class overrides {@link AbstractFilterableEvent#matches(Object)}
+     */
+    private boolean isMatchingCustomized(Class< ? > eventClass)
+    {
+        Boolean customized = this.customMatching.get(eventClass);
+
+        if (customized == null) {
+            try {
+                customized =
+                    eventClass.getMethod("matches", Object.class).getDeclaringClass() != AbstractFilterableEvent.class;
+            } catch (NoSuchMethodException e) {
+                customized = true;
+            }
+            this.customMatching.put(eventClass, customized);
+        }
+
+        return customized;
+    }
 }
@@ -21,9 +21,19 @@
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -36,34 +46,92 @@
 import org.xwiki.component.event.ComponentDescriptorRemovedEvent;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.context.Execution;
+import org.xwiki.observation.AsynchronousListener;
+import org.xwiki.observation.BatchEventListener;
 import org.xwiki.observation.EventListener;
+import org.xwiki.observation.EventNotification;
+import org.xwiki.observation.ListenerPriority;
 import org.xwiki.observation.ObservationManager;
+import org.xwiki.observation.ReceiveCanceledEvents;
 import org.xwiki.observation.event.AllEvent;
+import org.xwiki.observation.event.AssignableEvent;
+import org.xwiki.observation.event.CancelableEvent;
 import org.xwiki.observation.event.Event;
 
 /**
  * Default implementation of the {@link ObservationManager}.
  * <p>
- * This component use synchronized for concurrent protection instead of having
- * {@link java.util.concurrent.ConcurrentHashMap} everywhere because it's more efficient since most of methods access to
- * several maps and generally do enumerations.
+ * The modifications of the registered listeners are synchronized. The notifications don't lock anything: they use
+ * dispatch tables computed for each event class from the registered listeners and invalidated each time the
+ * registered listeners change (see {@link DispatchTable}).
+ * <p>
+ * The listeners are called in the order of their {@link ListenerPriority}. Once a {@link CancelableEvent} is canceled
+ * it's only passed to the remaining listeners annotated with {@link ReceiveCanceledEvents}.
+ * <p>
+ * The thread listeners are stored in a {@link ThreadLocal} and are thus only visited by the notifications of their
+ * thread.
+ * <p>
+ * The listeners annotated with {@link AsynchronousListener} are called from a pool of threads shared by all the
+ * asynchronous listeners instead of the thread notifying the event.
  * 
  * @version $Id$
  */
 @Component
 @Singleton
-public class DefaultObservationManager implements ObservationManager
+public class DefaultObservationManager implements ObservationManager, Disposable
 {
+    /**
+     * The maximum time to wait for the asynchronous listeners to handle their waiting events when disposing the
+     * component, in milliseconds.
+     */
+    private static final long SHUTDOWN_TIMEOUT = 10000;
+
     /**
      * @see #getListenersByEvent()
      */
-    private volatile Map<Class< ? extends Event>, Map<String, RegisteredListener>> listenersByEvent;
+    private volatile Map<Class< ? >, Map<String, RegisteredListener>> listenersByEvent;
 
     /**
      * @see #getListenersByName()
      */
     private volatile Map<String, EventListener> listenersByName;
 
+    /**
+     * @see #getDispatchTable(Class)
+     */
+    private final ConcurrentMap<Class< ? extends Event>, DispatchTable> dispatchTables =
+        new ConcurrentHashMap<Class< ? extends Event>, DispatchTable>();
+
+    /**
+     * Incremented each time the registered listeners change to invalidate the dispatch tables.
+     */
+    private volatile long registrationVersion;
+
+    /**
+     * The events waiting to be passed to the asynchronous listeners, indexed by listener name.
+     */
+    private final ConcurrentMap<String, AsynchronousListenerQueue> asynchronousQueues =
+        new ConcurrentHashMap<String, AsynchronousListenerQueue>();
+
+    /**
+     * The listeners registered for the current thread, indexed by name.
+     */
+    private final ThreadLocal<Map<String, EventListener>> threadListeners =
+        new ThreadLocal<Map<String, EventListener>>();
+
+    /**
+     * The number of calls and time spent in each listener.
+     */
+    private final ObservationMetrics metrics = new ObservationMetrics();
+
+    /**
+     * The threads calling the asynchronous listeners. Lazily created when the first asynchronous listener is
+     * registered.
+     */
+    private ExecutorService asynchronousExecutor;
+
     /**
      * Used to find all components implementing {@link EventListener} to register them automatically.
      */
@@ -83,9 +151,10 @@ public class DefaultObservationManager implements ObservationManager
     private static class RegisteredListener
     {
         /**
-         * Events of a given type associated with a given listener.
+         * Events of a given type associated with a given listener. Copied on write since it's read by the
+         * notifications while being modified.
          */
-        private List<Event> events = new ArrayList<Event>();
+        private List<Event> events = new CopyOnWriteArrayList<Event>();
 
         /**
          * Listener associated with the events.
@@ -121,11 +190,41 @@ void removeEvent(Event event)
         }
     }
 
+    /**
+     * The events of a batch waiting to be passed to the {@link BatchEventListener}s.
+     */
+    private static final class EventBatch
+    {
+        /**
+         * The event of the batch being notified.
+         */
+        private EventNotification notification;
+
+        /**
+         * The events matching each batch listener.
+         */
+        private final Map<BatchEventListener, List<EventNotification>> listenerNotifications =
+            new LinkedHashMap<BatchEventListener, List<EventNotification>>();
+
+        /**
+         * @param listener a batch listener matching the event being notified
+         */
+        void add(BatchEventListener listener)
+        {
+            List<EventNotification> notifications = this.listenerNotifications.get(listener);
+            if (notifications == null) {
+                notifications = new ArrayList<EventNotification>();
+                this.listenerNotifications.put(listener, notifications);
+            }
+            notifications.add(this.notification);
+        }
+    }
+
     /**
      * @return the registered listeners indexed on Event classes so that it's fast to find all the listeners registered
      *         for a given event, so that {@link #notify} calls execute fast and in a fixed amount a time.
      */
-    private Map<Class< ? extends Event>, Map<String, RegisteredListener>> getListenersByEvent()
+    private Map<Class< ? >, Map<String, RegisteredListener>> getListenersByEvent()
     {
         if (this.listenersByEvent == null) {
             initializeListeners();
@@ -149,13 +248,11 @@ private Map<String, EventListener> getListenersByName()
 
     /**
      * Lazily initialized to allow @Inject {@link ObservationManager} in a listener.
-     * 
-     * @todo Should we allow event inheritance ?
      */
     private synchronized void initializeListeners()
     {
         if (this.listenersByName == null) {
-            this.listenersByEvent = new ConcurrentHashMap<Class< ? extends Event>, Map<String, RegisteredListener>>();
+            this.listenersByEvent = new ConcurrentHashMap<Class< ? >, Map<String, RegisteredListener>>();
             this.listenersByName = new ConcurrentHashMap<String, EventListener>();
 
             // Can be null in unit tests
@@ -172,8 +269,201 @@ private synchronized void initializeListeners()
         }
     }
 
+    /**
+     * @param eventClass the class of the notified event
+     * @return the listeners to call for the passed event class
+     */
+    private DispatchTable getDispatchTable(Class< ? extends Event> eventClass)
+    {
+        Map<Class< ? >, Map<String, RegisteredListener>> listeners = getListenersByEvent();
+
+        // Read the version before the listeners so that a table computed from listeners being modified is not reused
+        long version = this.registrationVersion;
+
+        DispatchTable dispatchTable = this.dispatchTables.get(eventClass);
+
+        if (dispatchTable == null || dispatchTable.getVersion() != version) {
+            // The listeners registered for this event class or one of its parent types (with an AssignableEvent),
+            // each listener being called only once
+            Map<EventListener, List<Event>> listenerEvents = new LinkedHashMap<EventListener, List<Event>>();
+            addListenerEvents(listeners.get(eventClass), false, listenerEvents);
+            for (Class< ? > parentType : getParentTypes(eventClass)) {
+                addListenerEvents(listeners.get(parentType), true, listenerEvents);
+            }
+
+            List<ListenerDispatch> dispatches = new ArrayList<ListenerDispatch>();
+            for (Map.Entry<EventListener, List<Event>> entry : listenerEvents.entrySet()) {
+                dispatches.add(new ListenerDispatch(entry.getKey(), entry.getValue(),
+                    getAsynchronousQueue(entry.getKey())));
+            }
+
+            // The listeners listening to all events
+            if (eventClass != AllEvent.class) {
+                addListenerDispatches(listeners.get(AllEvent.class), dispatches);
+            }
+
+            // The indexed and not indexed listeners are ordered together by the table
+            dispatchTable = new DispatchTable(version, dispatches);
+            this.dispatchTables.put(eventClass, dispatchTable);
+        }
+
+        return dispatchTable;
+    }
+
+    /**
+     * Indicate that the registered listeners changed. Called with the registration lock held.
+     */
+    private void invalidateDispatchTables()
+    {
+        ++this.registrationVersion;
+        this.dispatchTables.clear();
+    }
+
+    private void addListenerDispatches(Map<String, RegisteredListener> listeners, List<ListenerDispatch> dispatches)
+    {
+        if (listeners != null) {
+            for (RegisteredListener listener : listeners.values()) {
+                dispatches.add(new ListenerDispatch(listener.listener, listener.events,
+                    getAsynchronousQueue(listener.listener)));
+            }
+        }
+    }
+
+    /**
+     * @param listener a registered listener
+     * @return the queue to add the events to when the listener is asynchronous, null otherwise
+     */
+    private AsynchronousListenerQueue getAsynchronousQueue(EventListener listener)
+    {
+        AsynchronousListenerQueue queue = this.asynchronousQueues.get(listener.getName());
+
+        return queue != null && queue.getListener() == listener ? queue : null;
+    }
+
+    /**
+     * Create the queue of an asynchronous listener. Called with the registration lock held.
+     * 
+     * @param listener the listener being registered
+     */
+    private void addAsynchronousQueue(EventListener listener)
+    {
+        AsynchronousListener configuration = listener.getClass().getAnnotation(AsynchronousListener.class);
+
+        if (configuration != null) {
+            if (this.asynchronousExecutor == null) {
+                this.asynchronousExecutor = createAsynchronousExecutor();
+            }
+
+            this.asynchronousQueues.put(listener.getName(), new AsynchronousListenerQueue(listener, configuration,
+                this, this.asynchronousExecutor, getExecution(), this.logger));
+        } else {
+            this.asynchronousQueues.remove(listener.getName());
+        }
+    }
+
+    /**
+     * @return the threads calling the asynchronous listeners
+     */
+    private ExecutorService createAsynchronousExecutor()
+    {
+        final AtomicInteger threadCount = new AtomicInteger();
+
+        return Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()),
+            new ThreadFactory()
+            {
+                @Override
+                public Thread newThread(Runnable runnable)
+                {
+                    Thread thread =
+                        new Thread(runnable, "Asynchronous event listener " + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+
+                    return thread;
+                }
+            });
+    }
+
+    /**
+     * @return the execution used to propagate the execution context to the asynchronous listeners, null if there is
+     *         none
+     */
+    private Execution getExecution()
+    {
+        // Looked up instead of injected since the execution is optional
+        if (this.componentManager != null && this.componentManager.hasComponent(Execution.class)) {
+            try {
+                return this.componentManager.getInstance(Execution.class);
+            } catch (ComponentLookupException e) {
+                this.logger.error("Failed to lookup the execution", e);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @param listeners the listeners registered for an event class
+     * @param assignableOnly true if only the {@link AssignableEvent}s should be kept (i.e. the listeners are registered
+     *            for a parent type of the notified event class)
+     * @param listenerEvents the events to match for each listener
+     */
+    private void addListenerEvents(Map<String, RegisteredListener> listeners, boolean assignableOnly,
+        Map<EventListener, List<Event>> listenerEvents)
+    {
+        if (listeners != null) {
+            for (RegisteredListener listener : listeners.values()) {
+                for (Event event : listener.events) {
+                    if (!assignableOnly || event instanceof AssignableEvent) {
+                        List<Event> events = listenerEvents.get(listener.listener);
+                        if (events == null) {
+                            events = new ArrayList<Event>();
+                            listenerEvents.put(listener.listener, events);
+                        }
+                        events.add(event);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @param type the class of the notified event
+     * @return the super classes and interfaces of the passed class
+     */
+    private Set<Class< ? >> getParentTypes(Class< ? > type)
+    {
+        Set<Class< ? >> parentTypes = new LinkedHashSet<Class< ? >>();
+
+        addParentTypes(type, parentTypes);
+
+        return parentTypes;
+    }
+
+    private void addParentTypes(Class< ? > type, Set<Class< ? >> parentTypes)
+    {
+        Class< ? > superClass = type.getSuperclass();
+        if (superClass != null && parentTypes.add(superClass)) {
+            addParentTypes(superClass, parentTypes);
+        }
+
+        for (Class< ? > interfaceClass : type.getInterfaces()) {
+            if (parentTypes.add(interfaceClass)) {
+                addParentTypes(interfaceClass, parentTypes);
+            }
+        }
+    }
+
+    /**
+     * @param event an event the listener is registered for
+     * @return the event class under which to register the listener
+     */
+    private Class< ? > getEventClass(Event event)
+    {
+        return event instanceof AssignableEvent ? ((AssignableEvent) event).getEventType() : event.getClass();
+    }
+
     @Override
-    public void addListener(EventListener eventListener)
+    public synchronized void addListener(EventListener eventListener)
     {
         // Register the listener by name. If already registered, override it.
         EventListener previousListener = getListenersByName().put(eventListener.getName(), eventListener);
@@ -188,14 +478,16 @@ public void addListener(EventListener eventListener)
                         eventListener.getName()});
         }
 
+        addAsynchronousQueue(eventListener);
+
         // For each event defined for this listener, add it to the Event Map.
         for (Event event : eventListener.getEvents()) {
             // Check if this is a new Event type not already registered
-            Map<String, RegisteredListener> eventListeners = this.listenersByEvent.get(event.getClass());
+            Map<String, RegisteredListener> eventListeners = this.listenersByEvent.get(getEventClass(event));
             if (eventListeners == null) {
                 // No listener registered for this event yet. Create a map to store listeners for this event.
                 eventListeners = new ConcurrentHashMap<String, RegisteredListener>();
-                this.listenersByEvent.put(event.getClass(), eventListeners);
+                this.listenersByEvent.put(getEventClass(event), eventListeners);
                 // There is no RegisteredListener yet, create one
                 eventListeners.put(eventListener.getName(), new RegisteredListener(eventListener, event));
             } else {
@@ -208,28 +500,76 @@ public void addListener(EventListener eventListener)
                 }
             }
         }
+
+        invalidateDispatchTables();
     }
 
     @Override
-    public void removeListener(String listenerName)
+    public synchronized void removeListener(String listenerName)
     {
         getListenersByName().remove(listenerName);
-        for (Map.Entry<Class< ? extends Event>, Map<String, RegisteredListener>> entry : this.listenersByEvent
+        this.asynchronousQueues.remove(listenerName);
+        this.metrics.listenerRemoved(listenerName);
+        for (Map.Entry<Class< ? >, Map<String, RegisteredListener>> entry : this.listenersByEvent
             .entrySet()) {
             entry.getValue().remove(listenerName);
             if (entry.getValue().isEmpty()) {
                 this.listenersByEvent.remove(entry.getKey());
             }
         }
+
+        invalidateDispatchTables();
     }
 
     @Override
-    public void addEvent(String listenerName, Event event)
+    public void addThreadListener(EventListener eventListener)
     {
-        Map<String, RegisteredListener> listeners = getListenersByEvent().get(event.getClass());
+        Map<String, EventListener> listeners = this.threadListeners.get();
+        if (listeners == null) {
+            listeners = new LinkedHashMap<String, EventListener>();
+            this.threadListeners.set(listeners);
+        }
+
+        EventListener previousListener = listeners.put(eventListener.getName(), eventListener);
+
+        if (previousListener != null) {
+            this.logger.warn("The [{}] thread listener has overwritten a previously registered thread listener [{}] "
+                + "since they both are registered under the same id [{}]",
+                new Object[] {eventListener.getClass().getName(), previousListener.getClass().getName(),
+                    eventListener.getName()});
+        }
+    }
+
+    @Override
+    public EventListener removeThreadListener(String listenerName)
+    {
+        Map<String, EventListener> listeners = this.threadListeners.get();
+
+        EventListener listener = null;
+        if (listeners != null) {
+            listener = listeners.remove(listenerName);
+
+            // Don't keep anything in the thread once it does not listen anymore
+            if (listeners.isEmpty()) {
+                this.threadListeners.remove();
+            }
+
+            // Thread listeners are usually short lived and their statistics would accumulate
+            if (listener != null && !getListenersByName().containsKey(listenerName)) {
+                this.metrics.listenerRemoved(listenerName);
+            }
+        }
+
+        return listener;
+    }
+
+    @Override
+    public synchronized void addEvent(String listenerName, Event event)
+    {
+        Map<String, RegisteredListener> listeners = getListenersByEvent().get(getEventClass(event));
         if (listeners == null) {
             listeners = new ConcurrentHashMap<String, RegisteredListener>();
-            this.listenersByEvent.put(event.getClass(), listeners);
+            this.listenersByEvent.put(getEventClass(event), listeners);
         }
         RegisteredListener listener = listeners.get(listenerName);
         if (listener != null) {
@@ -237,15 +577,19 @@ public void addEvent(String listenerName, Event event)
         } else {
             listeners.put(listenerName, new RegisteredListener(this.getListener(listenerName), event));
         }
+
+        invalidateDispatchTables();
     }
 
     @Override
-    public void removeEvent(String listenerName, Event event)
+    public synchronized void removeEvent(String listenerName, Event event)
     {
-        Map<String, RegisteredListener> listeners = getListenersByEvent().get(event.getClass());
-        RegisteredListener listener = listeners.get(listenerName);
+        Map<String, RegisteredListener> listeners = getListenersByEvent().get(getEventClass(event));
+        RegisteredListener listener = listeners != null ? listeners.get(listenerName) : null;
         if (listener != null) {
             listener.removeEvent(event);
+
+            invalidateDispatchTables();
         }
     }
 
@@ -258,16 +602,75 @@ public EventListener getListener(String listenerName)
     @Override
     public void notify(Event event, Object source, Object data)
     {
-        // Find all listeners for this event
-        Map<String, RegisteredListener> regListeners = getListenersByEvent().get(event.getClass());
-        if (regListeners != null) {
-            notify(regListeners.values(), event, source, data);
+        // Find all listeners for this event (including the ones listening to all events)
+        notify(getDispatchTable(event.getClass()), event, source, data, null);
+    }
+
+    @Override
+    public boolean hasListener(Class< ? extends Event> eventClass)
+    {
+        DispatchTable dispatchTable = getDispatchTable(eventClass);
+
+        return !dispatchTable.isEmpty() || this.threadListeners.get() != null;
+    }
+
+    @Override
+    public void notify(Collection<EventNotification> notifications)
+    {
+        EventBatch batch = new EventBatch();
+
+        // The listeners of each event class are only searched once unless the batch modifies them
+        Map<Class< ? extends Event>, DispatchTable> batchDispatchTables =
+            new HashMap<Class< ? extends Event>, DispatchTable>();
+        long version = this.registrationVersion;
+
+        for (EventNotification notification : notifications) {
+            if (version != this.registrationVersion) {
+                batchDispatchTables.clear();
+                version = this.registrationVersion;
+            }
+
+            Class< ? extends Event> eventClass = notification.getEvent().getClass();
+            DispatchTable dispatchTable = batchDispatchTables.get(eventClass);
+            if (dispatchTable == null) {
+                dispatchTable = getDispatchTable(eventClass);
+                batchDispatchTables.put(eventClass, dispatchTable);
+            }
+
+            batch.notification = notification;
+            notify(dispatchTable, notification.getEvent(), notification.getSource(), notification.getData(), batch);
+        }
+
+        for (Map.Entry<BatchEventListener, List<EventNotification>> entry : batch.listenerNotifications.entrySet()) {
+            callBatchListener(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Call the listeners of the passed dispatch table matching the passed Event.
+     * 
+     * @param dispatchTable the listeners registered for the event class
+     * @param event the event to pass to the registered listeners
+     * @param source the source of the event (or <code>null</code>)
+     * @param data the additional data related to the event (or <code>null</code>)
+     * @param batch the batch the event is part of, null if the event is notified alone
+     */
+    private void notify(DispatchTable dispatchTable, Event event, Object source, Object data, EventBatch batch)
+    {
+        boolean recordMetrics = this.metrics.isEnabled();
+        long start = recordMetrics ? this.metrics.start() : 0;
+
+        for (ListenerDispatch listener : dispatchTable.getListeners(event)) {
+            notify(listener, event, source, data, batch);
+        }
+
+        Map<String, EventListener> currentThreadListeners = this.threadListeners.get();
+        if (currentThreadListeners != null) {
+            notifyThreadListeners(currentThreadListeners, event, source, data);
         }
 
-        // Find listener listening all events
-        Map<String, RegisteredListener> allEventRegListeners = this.listenersByEvent.get(AllEvent.class);
-        if (allEventRegListeners != null) {
-            notify(allEventRegListeners.values(), event, source, data);
+        if (recordMetrics) {
+            this.metrics.notified(event, start);
         }
 
         // We want this Observation Manager to be able to handle new Event Listener components being added or removed
@@ -281,33 +684,152 @@ public void notify(Event event, Object source, Object data)
     }
 
     /**
-     * Call the provided listeners matching the passed Event. The definition of <em>source</em> and <em>data</em> is
-     * purely up to the communicating classes.
+     * Call the listeners registered for the current thread matching the passed Event.
      * 
-     * @param listeners the listeners to notify
+     * @param listeners the listeners registered for the current thread
      * @param event the event to pass to the registered listeners
      * @param source the source of the event (or <code>null</code>)
      * @param data the additional data related to the event (or <code>null</code>)
      */
-    private void notify(Collection<RegisteredListener> listeners, Event event, Object source, Object data)
-    {
-        for (RegisteredListener listener : listeners) {
-            // Verify that one of the events matches and send the first matching event
-            for (Event listenerEvent : listener.events) {
-                if (listenerEvent.matches(event)) {
-                    try {
-                        listener.listener.onEvent(event, source, data);
-                    } catch (Exception e) {
-                        // protect from bad listeners
-                        this.logger.error("Failed to send event [{}] to listener [{}]", new Object[] {event,
-                            listener.listener, e});
-                    }
+    private void notifyThreadListeners(Map<String, EventListener> listeners, Event event, Object source, Object data)
+    {
+        // Copy the listeners since they can be modified by the listeners themselves
+        for (EventListener listener : listeners.values().toArray(new EventListener[listeners.size()])) {
+            if ((!isCanceled(event) || ListenerDispatch.isReceivingCanceledEvents(listener))
+                && matches(listener.getEvents(), event)) {
+                callListener(listener, event, source, data);
+            }
+        }
+    }
 
-                    // Only send the first matching event since the listener should only be called once per event.
-                    break;
-                }
+    /**
+     * Call the provided listener if one of its events matches the passed Event.
+     * 
+     * @param listener the listener to notify
+     * @param event the event to pass to the listener
+     * @param source the source of the event (or <code>null</code>)
+     * @param data the additional data related to the event (or <code>null</code>)
+     * @param batch the batch the event is part of, null if the event is notified alone
+     */
+    private void notify(ListenerDispatch listener, Event event, Object source, Object data, EventBatch batch)
+    {
+        if ((listener.isReceivingCanceledEvents() || !isCanceled(event)) && matches(listener.getEvents(), event)) {
+            if (listener.getAsynchronousQueue() != null) {
+                listener.getAsynchronousQueue().add(event, source, data);
+            } else if (batch != null && listener.getListener() instanceof BatchEventListener) {
+                // Called at the end of the batch
+                batch.add((BatchEventListener) listener.getListener());
+            } else {
+                callListener(listener.getListener(), event, source, data);
+            }
+        }
+    }
+
+    /**
+     * @param listenerEvents the events a listener is registered for
+     * @param event the notified event
+     * @return true if one of the listener events matches the notified event (the listener should only be called once
+     *         per event even if several match)
+     */
+    private boolean matches(Event[] listenerEvents, Event event)
+    {
+        for (Event listenerEvent : listenerEvents) {
+            if (listenerEvent.matches(event)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @param listenerEvents the events a listener is registered for
+     * @param event the notified event
+     * @return true if one of the listener events matches the notified event
+     */
+    private boolean matches(List<Event> listenerEvents, Event event)
+    {
+        for (Event listenerEvent : listenerEvents) {
+            if (listenerEvent.matches(event)) {
+                return true;
             }
         }
+
+        return false;
+    }
+
+    /**
+     * @param event the notified event
+     * @return true if the event has been canceled by a listener
+     */
+    private static boolean isCanceled(Event event)
+    {
+        return event instanceof CancelableEvent && ((CancelableEvent) event).isCanceled();
+    }
+
+    /**
+     * Pass the event to the listener, recording the call in the metrics.
+     * 
+     * @param listener the listener to call
+     * @param event the event to pass to the listener
+     * @param source the source of the event (or <code>null</code>)
+     * @param data the additional data related to the event (or <code>null</code>)
+     */
+    void callListener(EventListener listener, Event event, Object source, Object data)
+    {
+        boolean timing = this.metrics.isTiming();
+        long start = timing ? this.metrics.start() : 0;
+        boolean failed = false;
+
+        try {
+            listener.onEvent(event, source, data);
+        } catch (Exception e) {
+            failed = true;
+
+            // protect from bad listeners
+            this.logger.error("Failed to send event [{}] to listener [{}]", new Object[] {event, listener, e});
+        }
+
+        if (timing) {
+            this.metrics.listenerCalled(listener, event, start, failed);
+        }
+    }
+
+    /**
+     * Pass the events of a batch to the listener, recording the call in the metrics (under the class of the first
+     * event).
+     * 
+     * @param listener the listener to call
+     * @param notifications the events matching the listener
+     */
+    private void callBatchListener(BatchEventListener listener, List<EventNotification> notifications)
+    {
+        boolean timing = this.metrics.isTiming();
+        long start = timing ? this.metrics.start() : 0;
+        boolean failed = false;
+
+        try {
+            listener.onEvents(notifications);
+        } catch (Exception e) {
+            failed = true;
+
+            // protect from bad listeners
+            this.logger.error("Failed to send events [{}] to listener [{}]", new Object[] {notifications, listener,
+                e});
+        }
+
+        if (timing) {
+            this.metrics.listenerCalled(listener, notifications.get(0).getEvent(), start, failed);
+        }
+    }
+
+    /**
+     * @return the number of calls and time spent in each listener
+     * @since 5.4M1
+     */
+    public ObservationMetrics getMetrics()
+    {
+        return this.metrics;
     }
 
     @Override
@@ -316,6 +838,34 @@ public void notify(Event event, Object source)
         notify(event, source, null);
     }
 
+    @Override
+    public void dispose()
+    {
+        ExecutorService executor;
+        synchronized (this) {
+            executor = this.asynchronousExecutor;
+            this.asynchronousExecutor = null;
+        }
+
+        if (executor != null) {
+            try {
+                long end = System.currentTimeMillis() + SHUTDOWN_TIMEOUT;
+                for (AsynchronousListenerQueue queue : this.asynchronousQueues.values()) {
+                    queue.shutdown(Math.max(0, end - System.currentTimeMillis()));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                synchronized (this) {
+                    this.asynchronousQueues.clear();
+                    // The cached dispatch tables reference the queues which have just been shut down
+                    invalidateDispatchTables();
+                }
+                executor.shutdown();
+            }
+        }
+    }
+
     /**
      * A Component has been modified (added or removed) and we update our cache of Event Listeners if that Component is
      * an Event Listener.
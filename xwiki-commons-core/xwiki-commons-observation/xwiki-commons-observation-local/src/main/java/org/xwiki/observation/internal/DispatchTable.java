@@ -0,0 +1,237 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.xwiki.observation.event.AbstractFilterableEvent;
+import org.xwiki.observation.event.Event;
+import org.xwiki.observation.event.FilterableEvent;
+import org.xwiki.observation.event.filter.EventFilter;
+import org.xwiki.observation.event.filter.IndexableEventFilter;
+
+/**
+ * The listeners to call for an event class, computed from the registered listeners and then only read, possibly
+ * concurrently.
+ * <p>
+ * The listeners registered for a single {@link FilterableEvent} with an {@link IndexableEventFilter} are indexed on
+ * the filter key so that an event only reaches the listeners which can match its filter. The indexed listeners keep
+ * their position in the calls: they are merged with the other listeners according to the order computed from all the
+ * listeners.
+ * 
+ * @version $Id$
+ * @since 5.4M1
+ */
+final class DispatchTable
+{
+    /**
+     * Sort the listeners by priority.
+     */
+    private static final Comparator<ListenerDispatch> PRIORITY_COMPARATOR = new Comparator<ListenerDispatch>()
+    {
+        @Override
+        public int compare(ListenerDispatch dispatch1, ListenerDispatch dispatch2)
+        {
+            return compareInts(dispatch1.getPriority(), dispatch2.getPriority());
+        }
+    };
+
+    /**
+     * Sort the listeners by position in the calls.
+     */
+    private static final Comparator<ListenerDispatch> ORDER_COMPARATOR = new Comparator<ListenerDispatch>()
+    {
+        @Override
+        public int compare(ListenerDispatch dispatch1, ListenerDispatch dispatch2)
+        {
+            return compareInts(dispatch1.getOrder(), dispatch2.getOrder());
+        }
+    };
+
+    /**
+     * The version of the registered listeners the table was computed from.
+     */
+    private final long version;
+
+    /**
+     * The listeners which are not indexed, sorted by position in the calls.
+     */
+    private final ListenerDispatch[] listeners;
+
+    /**
+     * The listeners to call only when the filter of the event matches the filter key they are indexed on.
+     */
+    private final EventFilterIndex<ListenerDispatch> index = new EventFilterIndex<ListenerDispatch>();
+
+    /**
+     * @param version the version of the registered listeners the table was computed from
+     * @param dispatches the listeners to call
+     */
+    DispatchTable(long version, List<ListenerDispatch> dispatches)
+    {
+        this.version = version;
+
+        // Stable sort: the listeners with the same priority keep the order in which they have been gathered, which
+        // is not the registration order
+        List<ListenerDispatch> sortedDispatches = new ArrayList<ListenerDispatch>(dispatches);
+        Collections.sort(sortedDispatches, PRIORITY_COMPARATOR);
+
+        List<ListenerDispatch> notIndexed = new ArrayList<ListenerDispatch>(sortedDispatches.size());
+        for (int i = 0; i < sortedDispatches.size(); ++i) {
+            ListenerDispatch dispatch = sortedDispatches.get(i);
+            dispatch.setOrder(i);
+
+            IndexableEventFilter filter = getIndexableFilter(dispatch.getEvents());
+            if (filter != null) {
+                this.index.add(filter, dispatch);
+            } else {
+                notIndexed.add(dispatch);
+            }
+        }
+        this.listeners = notIndexed.toArray(new ListenerDispatch[notIndexed.size()]);
+    }
+
+    private static int compareInts(int value1, int value2)
+    {
+        return value1 < value2 ? -1 : (value1 == value2 ? 0 : 1);
+    }
+
+    /**
+     * @param events the events a listener is registered for
+     * @return the filter to index the listener on, null if the listener can't be indexed
+     */
+    private static IndexableEventFilter getIndexableFilter(Event[] events)
+    {
+        // Listeners registered for several events are not indexed to make sure they are called only once
+        if (events.length == 1 && events[0] instanceof FilterableEvent) {
+            FilterableEvent event = (FilterableEvent) events[0];
+
+            // The filter is only used to match the events if the matching is not customized
+            if (event.getEventFilter() instanceof IndexableEventFilter && !isMatchingCustomized(event.getClass())) {
+                IndexableEventFilter filter = (IndexableEventFilter) event.getEventFilter();
+
+                if (EventFilterIndex.isIndexable(filter)) {
+                    return filter;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @param eventClass a filterable event class
+     * @return true if the passed class does not use {@link AbstractFilterableEvent#matches(Object)}
+     */
+    private static boolean isMatchingCustomized(Class< ? > eventClass)
+    {
+        try {
+            return eventClass.getMethod("matches", Object.class).getDeclaringClass() != AbstractFilterableEvent.class;
+        } catch (NoSuchMethodException e) {
+            return true;
+        }
+    }
+
+    /**
+     * @return the version of the registered listeners the table was computed from
+     */
+    long getVersion()
+    {
+        return this.version;
+    }
+
+    /**
+     * @return true if there is no listener to call
+     */
+    boolean isEmpty()
+    {
+        return this.listeners.length == 0 && this.index.isEmpty();
+    }
+
+    /**
+     * @param event the notified event
+     * @return the listeners which can match the passed event, in the order in which they must be called, not to be
+     *         modified
+     */
+    ListenerDispatch[] getListeners(Event event)
+    {
+        if (this.index.isEmpty()) {
+            return this.listeners;
+        }
+
+        List<ListenerDispatch> indexed = getIndexedListeners(event);
+        if (indexed.isEmpty()) {
+            return this.listeners;
+        }
+
+        Collections.sort(indexed, ORDER_COMPARATOR);
+
+        return merge(indexed);
+    }
+
+    /**
+     * @param event the notified event
+     * @return the indexed listeners whose filter key matches the filter of the passed event
+     */
+    private List<ListenerDispatch> getIndexedListeners(Event event)
+    {
+        // The indexed listeners only match filterable events with a filter value
+        EventFilter eventFilter = event instanceof FilterableEvent ? ((FilterableEvent) event).getEventFilter() : null;
+        String filterValue = eventFilter != null ? eventFilter.getFilter() : null;
+
+        if (filterValue == null) {
+            return Collections.emptyList();
+        }
+
+        List<ListenerDispatch> indexed = new ArrayList<ListenerDispatch>(this.index.getExactValues(filterValue));
+
+        int[] prefixLengths = this.index.getPrefixLengths();
+        for (int i = 0; i < prefixLengths.length && prefixLengths[i] <= filterValue.length(); ++i) {
+            indexed.addAll(this.index.getPrefixValues(filterValue.substring(0, prefixLengths[i])));
+        }
+
+        return indexed;
+    }
+
+    /**
+     * @param indexed indexed listeners, sorted by position in the calls
+     * @return the passed listeners and the listeners which are not indexed, sorted by position in the calls
+     */
+    private ListenerDispatch[] merge(List<ListenerDispatch> indexed)
+    {
+        ListenerDispatch[] merged = new ListenerDispatch[this.listeners.length + indexed.size()];
+
+        int listenerPosition = 0;
+        int indexedPosition = 0;
+        for (int i = 0; i < merged.length; ++i) {
+            if (indexedPosition == indexed.size() || (listenerPosition < this.listeners.length
+                && this.listeners[listenerPosition].getOrder() < indexed.get(indexedPosition).getOrder())) {
+                merged[i] = this.listeners[listenerPosition++];
+            } else {
+                merged[i] = indexed.get(indexedPosition++);
+            }
+        }
+
+        return merged;
+    }
+}
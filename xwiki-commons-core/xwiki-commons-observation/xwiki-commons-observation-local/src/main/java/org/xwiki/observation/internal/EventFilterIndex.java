@@ -0,0 +1,136 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.xwiki.observation.event.filter.IndexableEventFilter;
+
+/**
+ * Index values on the key of {@link IndexableEventFilter}s to find the values associated with the filters which can
+ * match a given filter value without testing all the filters.
+ * <p>
+ * Filled when created and then only read, possibly concurrently.
+ * 
+ * @param <T> the type of the indexed values
+ * @version $Id$
+ * @since 5.4M1
+ */
+final class EventFilterIndex<T>
+{
+    /**
+     * The values associated with filters matching only one filter value.
+     */
+    private final Map<String, List<T>> exactValues = new HashMap<String, List<T>>();
+
+    /**
+     * The values associated with filters matching the filter values starting with a prefix.
+     */
+    private final Map<String, List<T>> prefixValues = new HashMap<String, List<T>>();
+
+    /**
+     * The distinct lengths of the prefixes in {@link #prefixValues}, sorted.
+     */
+    private int[] prefixLengths = new int[0];
+
+    /**
+     * @param filter a filter which can be indexed
+     * @return true if the filter has a key selective enough to be indexed
+     */
+    static boolean isIndexable(IndexableEventFilter filter)
+    {
+        String key = filter.getIndexKey();
+
+        return key != null && !(filter.isPrefixIndexKey() && key.isEmpty());
+    }
+
+    /**
+     * @param filter the filter to index, indexable according to {@link #isIndexable(IndexableEventFilter)}
+     * @param value the value associated with the filter
+     */
+    void add(IndexableEventFilter filter, T value)
+    {
+        String key = filter.getIndexKey();
+
+        Map<String, List<T>> values = filter.isPrefixIndexKey() ? this.prefixValues : this.exactValues;
+        List<T> keyValues = values.get(key);
+        if (keyValues == null) {
+            keyValues = new ArrayList<T>();
+            values.put(key, keyValues);
+        }
+        keyValues.add(value);
+
+        if (filter.isPrefixIndexKey()) {
+            int position = Arrays.binarySearch(this.prefixLengths, key.length());
+            if (position < 0) {
+                int[] lengths = new int[this.prefixLengths.length + 1];
+                int insertion = -position - 1;
+                System.arraycopy(this.prefixLengths, 0, lengths, 0, insertion);
+                lengths[insertion] = key.length();
+                System.arraycopy(this.prefixLengths, insertion, lengths, insertion + 1,
+                    this.prefixLengths.length - insertion);
+                this.prefixLengths = lengths;
+            }
+        }
+    }
+
+    /**
+     * @return true if no value is indexed
+     */
+    boolean isEmpty()
+    {
+        return this.exactValues.isEmpty() && this.prefixValues.isEmpty();
+    }
+
+    /**
+     * @param filterValue the value of a filter
+     * @return the values associated with the filters matching exactly the passed filter value
+     */
+    List<T> getExactValues(String filterValue)
+    {
+        List<T> values = this.exactValues.get(filterValue);
+
+        return values != null ? values : Collections.<T> emptyList();
+    }
+
+    /**
+     * @return the sorted lengths of the prefixes to look up with {@link #getPrefixValues(String)}
+     */
+    int[] getPrefixLengths()
+    {
+        return this.prefixLengths;
+    }
+
+    /**
+     * @param prefix the prefix of a filter value, with one of the lengths returned by {@link #getPrefixLengths()}
+     * @return the values associated with the filters matching the filter values starting with the passed prefix
+     */
+    List<T> getPrefixValues(String prefix)
+    {
+        List<T> values = this.prefixValues.get(prefix);
+
+        return values != null ? values : Collections.<T> emptyList();
+    }
+}
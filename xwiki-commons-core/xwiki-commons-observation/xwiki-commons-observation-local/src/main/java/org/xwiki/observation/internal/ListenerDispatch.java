@@ -0,0 +1,147 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal;
+
+import java.util.List;
+
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.ListenerPriority;
+import org.xwiki.observation.ReceiveCanceledEvents;
+import org.xwiki.observation.event.Event;
+
+/**
+ * Immutable copy of a registered listener used to notify the listener without locking.
+ * 
+ * @version $Id$
+ * @since 5.4M1
+ */
+final class ListenerDispatch
+{
+    /**
+     * The listener to call.
+     */
+    private final EventListener listener;
+
+    /**
+     * The events the listener is registered for, to match with the notified event.
+     */
+    private final Event[] events;
+
+    /**
+     * The queue to add the events to when the listener is asynchronous, null otherwise.
+     */
+    private final AsynchronousListenerQueue asynchronousQueue;
+
+    /**
+     * The priority of the listener, the lowest being called first.
+     */
+    private final int priority;
+
+    /**
+     * True if the listener should receive the canceled events.
+     */
+    private final boolean receiveCanceledEvents;
+
+    /**
+     * The position of the listener in the calls of the {@link DispatchTable} it belongs to.
+     */
+    private int order;
+
+    /**
+     * @param listener the listener to call
+     * @param events the events the listener is registered for
+     * @param asynchronousQueue the queue to add the events to when the listener is asynchronous, null otherwise
+     */
+    ListenerDispatch(EventListener listener, List<Event> events, AsynchronousListenerQueue asynchronousQueue)
+    {
+        this.listener = listener;
+        this.events = events.toArray(new Event[events.size()]);
+        this.asynchronousQueue = asynchronousQueue;
+
+        ListenerPriority listenerPriority = listener.getClass().getAnnotation(ListenerPriority.class);
+        this.priority = listenerPriority != null ? listenerPriority.value() : ListenerPriority.DEFAULT_PRIORITY;
+        this.receiveCanceledEvents = isReceivingCanceledEvents(listener);
+    }
+
+    /**
+     * @param listener a listener
+     * @return true if the listener should receive the canceled events
+     */
+    static boolean isReceivingCanceledEvents(EventListener listener)
+    {
+        return listener.getClass().isAnnotationPresent(ReceiveCanceledEvents.class);
+    }
+
+    /**
+     * @return the listener to call
+     */
+    EventListener getListener()
+    {
+        return this.listener;
+    }
+
+    /**
+     * @return the events the listener is registered for, not to be modified
+     */
+    Event[] getEvents()
+    {
+        return this.events;
+    }
+
+    /**
+     * @return the queue to add the events to when the listener is asynchronous, null otherwise
+     */
+    AsynchronousListenerQueue getAsynchronousQueue()
+    {
+        return this.asynchronousQueue;
+    }
+
+    /**
+     * @return the priority of the listener, the lowest being called first
+     */
+    int getPriority()
+    {
+        return this.priority;
+    }
+
+    /**
+     * @return true if the listener should receive the canceled events
+     */
+    boolean isReceivingCanceledEvents()
+    {
+        return this.receiveCanceledEvents;
+    }
+
+    /**
+     * @return the position of the listener in the calls of the {@link DispatchTable} it belongs to
+     */
+    int getOrder()
+    {
+        return this.order;
+    }
+
+    /**
+     * @param order the position of the listener in the calls of the {@link DispatchTable} it belongs to
+     */
+    void setOrder(int order)
+    {
+        this.order = order;
+    }
+}
@@ -19,9 +19,8 @@
  */
 package org.xwiki.observation.internal;
 
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Stack;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -32,13 +31,13 @@
 import org.xwiki.context.Execution;
 import org.xwiki.context.ExecutionContext;
 import org.xwiki.observation.EventListener;
-import org.xwiki.observation.event.AllEvent;
+import org.xwiki.observation.event.AssignableEvent;
 import org.xwiki.observation.event.BeginEvent;
 import org.xwiki.observation.event.EndEvent;
 import org.xwiki.observation.event.Event;
 
 /**
- * Listen to all events and stack {@link BeginEvent}.
+ * Listen to begin and end events and stack {@link BeginEvent}.
  * 
  * @version $Id$
  * @since 3.2M1
@@ -51,7 +50,8 @@ public class ObservationContextListener implements EventListener
     /**
      * The events to match.
      */
-    private static final List<Event> EVENTS = Collections.<Event> singletonList(AllEvent.ALLEVENT);
+    private static final List<Event> EVENTS = Arrays.<Event> asList(new AssignableEvent(BeginEvent.class),
+        new AssignableEvent(EndEvent.class));
 
     /**
      * The execution.
@@ -68,13 +68,13 @@ public class ObservationContextListener implements EventListener
     /**
      * @return the events stacked in the execution context
      */
-    private Stack<BeginEvent> getCurrentEvents()
+    private BeginEventStack getCurrentEvents()
     {
-        Stack<BeginEvent> events = null;
+        BeginEventStack events = null;
 
         ExecutionContext context = execution.getContext();
         if (context != null) {
-            events = (Stack<BeginEvent>) context.getProperty(DefaultObservationContext.KEY_EVENTS);
+            events = context.getProperty(DefaultObservationContext.KEY_EVENTS);
         }
 
         return events;
@@ -87,10 +87,10 @@ private void pushCurrentEvent(BeginEvent event)
     {
         ExecutionContext context = execution.getContext();
         if (context != null) {
-            Stack<BeginEvent> events = (Stack<BeginEvent>) context.getProperty(DefaultObservationContext.KEY_EVENTS);
+            BeginEventStack events = context.getProperty(DefaultObservationContext.KEY_EVENTS);
 
             if (events == null) {
-                events = new Stack<BeginEvent>();
+                events = new BeginEventStack();
                 context.setProperty(DefaultObservationContext.KEY_EVENTS, events);
             }
 
@@ -118,7 +118,7 @@ public void onEvent(Event event, Object source, Object data)
         if (event instanceof BeginEvent) {
             pushCurrentEvent((BeginEvent) event);
         } else if (event instanceof EndEvent) {
-            Stack<BeginEvent> events = getCurrentEvents();
+            BeginEventStack events = getCurrentEvents();
 
             if (events != null && !events.isEmpty()) {
                 events.pop();
@@ -0,0 +1,292 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.event.Event;
+
+/**
+ * Records the number of calls, the time spent and the errors of each listener for each event class, and the number of
+ * notifications of each event class. Enabled by setting the {@value #ENABLED_PROPERTY} system property to {@code true}
+ * or with {@link #setEnabled(boolean)}.
+ * <p>
+ * A warning is logged each time a listener takes more than the slow listener threshold to handle an event, set with
+ * the {@value #SLOW_LISTENER_THRESHOLD_PROPERTY} system property (in milliseconds) or with
+ * {@link #setSlowListenerThreshold(long)}, even when the metrics are not enabled.
+ * 
+ * @version $Id$
+ * @since 5.4M1
+ */
+public class ObservationMetrics
+{
+    /**
+     * The system property to set to {@code true} to record the observation metrics.
+     */
+    public static final String ENABLED_PROPERTY = "xwiki.observation.metrics";
+
+    /**
+     * The system property to set to the time in milliseconds above which a listener handling an event is logged as
+     * slow.
+     */
+    public static final String SLOW_LISTENER_THRESHOLD_PROPERTY = "xwiki.observation.slowListenerThreshold";
+
+    /**
+     * The object used to log messages.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ObservationMetrics.class);
+
+    /**
+     * The number of calls, the time spent and the number of errors of a listener or of the notifications of an event.
+     */
+    public static class Statistics
+    {
+        private final AtomicLong count = new AtomicLong();
+
+        private final AtomicLong duration = new AtomicLong();
+
+        private final AtomicLong maxDuration = new AtomicLong();
+
+        private final AtomicLong errors = new AtomicLong();
+
+        /**
+         * @param callDuration the duration of the call, in nanoseconds
+         * @param failed true if the call failed
+         */
+        void record(long callDuration, boolean failed)
+        {
+            this.count.incrementAndGet();
+            this.duration.addAndGet(callDuration);
+
+            long max = this.maxDuration.get();
+            while (callDuration > max && !this.maxDuration.compareAndSet(max, callDuration)) {
+                max = this.maxDuration.get();
+            }
+
+            if (failed) {
+                this.errors.incrementAndGet();
+            }
+        }
+
+        /**
+         * @return the number of calls
+         */
+        public long getCount()
+        {
+            return this.count.get();
+        }
+
+        /**
+         * @return the time spent in all the calls, in nanoseconds
+         */
+        public long getDuration()
+        {
+            return this.duration.get();
+        }
+
+        /**
+         * @return the time spent in the longest call, in nanoseconds
+         */
+        public long getMaxDuration()
+        {
+            return this.maxDuration.get();
+        }
+
+        /**
+         * @return the number of calls which failed
+         */
+        public long getErrors()
+        {
+            return this.errors.get();
+        }
+    }
+
+    private volatile boolean enabled = Boolean.getBoolean(ENABLED_PROPERTY);
+
+    /**
+     * The slow listener threshold in nanoseconds, 0 if disabled.
+     */
+    private volatile long slowListenerThreshold =
+        TimeUnit.MILLISECONDS.toNanos(Long.getLong(SLOW_LISTENER_THRESHOLD_PROPERTY, 0));
+
+    private final ConcurrentMap<String, ConcurrentMap<Class< ? extends Event>, Statistics>> listenerStatistics =
+        new ConcurrentHashMap<String, ConcurrentMap<Class< ? extends Event>, Statistics>>();
+
+    private final ConcurrentMap<Class< ? extends Event>, Statistics> eventStatistics =
+        new ConcurrentHashMap<Class< ? extends Event>, Statistics>();
+
+    /**
+     * @return true if the metrics are recorded
+     */
+    public boolean isEnabled()
+    {
+        return this.enabled;
+    }
+
+    /**
+     * @param enabled true to record the metrics
+     */
+    public void setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return the time in milliseconds above which a listener handling an event is logged as slow, 0 if disabled
+     */
+    public long getSlowListenerThreshold()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(this.slowListenerThreshold);
+    }
+
+    /**
+     * @param slowListenerThreshold the time in milliseconds above which a listener handling an event is logged as
+     *            slow, 0 to disable
+     */
+    public void setSlowListenerThreshold(long slowListenerThreshold)
+    {
+        this.slowListenerThreshold = TimeUnit.MILLISECONDS.toNanos(Math.max(0, slowListenerThreshold));
+    }
+
+    /**
+     * @return true if the listener calls need to be timed
+     */
+    boolean isTiming()
+    {
+        return this.enabled || this.slowListenerThreshold > 0;
+    }
+
+    /**
+     * @return the start time to pass to the other methods once the call is finished
+     */
+    long start()
+    {
+        return System.nanoTime();
+    }
+
+    /**
+     * @param listener the called listener
+     * @param event the event passed to the listener
+     * @param start the time at which the call started
+     * @param failed true if the listener failed to handle the event
+     */
+    void listenerCalled(EventListener listener, Event event, long start, boolean failed)
+    {
+        long duration = System.nanoTime() - start;
+
+        if (this.enabled) {
+            ConcurrentMap<Class< ? extends Event>, Statistics> statistics =
+                this.listenerStatistics.get(listener.getName());
+            if (statistics == null) {
+                ConcurrentMap<Class< ? extends Event>, Statistics> created =
+                    new ConcurrentHashMap<Class< ? extends Event>, Statistics>();
+                ConcurrentMap<Class< ? extends Event>, Statistics> existing =
+                    this.listenerStatistics.putIfAbsent(listener.getName(), created);
+                // Don't get it again: reset() or listenerRemoved() could remove it in between
+                statistics = existing != null ? existing : created;
+            }
+
+            getStatistics(statistics, event.getClass()).record(duration, failed);
+        }
+
+        long threshold = this.slowListenerThreshold;
+        if (threshold > 0 && duration > threshold) {
+            long durationMillis = TimeUnit.NANOSECONDS.toMillis(duration);
+            long thresholdMillis = TimeUnit.NANOSECONDS.toMillis(threshold);
+            LOGGER.warn("The listener [{}] took [{}] ms to handle the event [{}] (the threshold is [{}] ms)",
+                new Object[] {listener.getName(), durationMillis, event, thresholdMillis});
+        }
+    }
+
+    /**
+     * Forget the statistics of a listener which is not registered anymore.
+     * 
+     * @param listenerName the name of the removed listener
+     */
+    void listenerRemoved(String listenerName)
+    {
+        this.listenerStatistics.remove(listenerName);
+    }
+
+    /**
+     * @param event the notified event
+     * @param start the time at which the notification started
+     */
+    void notified(Event event, long start)
+    {
+        if (this.enabled) {
+            getStatistics(this.eventStatistics, event.getClass()).record(System.nanoTime() - start, false);
+        }
+    }
+
+    /**
+     * @return the statistics of the calls of each listener, indexed by listener name and event class
+     */
+    public Map<String, Map<Class< ? extends Event>, Statistics>> getListenerStatistics()
+    {
+        Map<String, Map<Class< ? extends Event>, Statistics>> statistics =
+            new HashMap<String, Map<Class< ? extends Event>, Statistics>>();
+
+        for (Map.Entry<String, ConcurrentMap<Class< ? extends Event>, Statistics>> entry : this.listenerStatistics
+            .entrySet()) {
+            statistics.put(entry.getKey(), new HashMap<Class< ? extends Event>, Statistics>(entry.getValue()));
+        }
+
+        return statistics;
+    }
+
+    /**
+     * @return the statistics of the notifications of each event class, the duration being the time spent in all the
+     *         synchronous listeners
+     */
+    public Map<Class< ? extends Event>, Statistics> getEventStatistics()
+    {
+        return new HashMap<Class< ? extends Event>, Statistics>(this.eventStatistics);
+    }
+
+    /**
+     * Forget everything recorded so far.
+     */
+    public void reset()
+    {
+        this.listenerStatistics.clear();
+        this.eventStatistics.clear();
+    }
+
+    private <K> Statistics getStatistics(ConcurrentMap<K, Statistics> statistics, K key)
+    {
+        Statistics keyStatistics = statistics.get(key);
+        if (keyStatistics == null) {
+            Statistics created = new Statistics();
+            Statistics existing = statistics.putIfAbsent(key, created);
+            keyStatistics = existing != null ? existing : created;
+        }
+
+        return keyStatistics;
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal.jmx;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
+
+import org.xwiki.observation.event.Event;
+import org.xwiki.observation.internal.ObservationMetrics;
+
+/**
+ * Exposes the {@link ObservationMetrics} data as JMX open types.
+ * 
+ * @version $Id$
+ * @since 5.4M1
+ */
+public class JMXObservationMetrics implements JMXObservationMetricsMBean
+{
+    /**
+     * The names of the statistics columns.
+     */
+    private static final String[] STATISTICS_NAMES = new String[] {"count", "duration", "maxDuration", "errors"};
+
+    /**
+     * The descriptions of the statistics columns.
+     */
+    private static final String[] STATISTICS_DESCRIPTIONS = new String[] {"The number of calls",
+        "The time spent in all the calls in milliseconds", "The time spent in the longest call in milliseconds",
+        "The number of failed calls"};
+
+    /**
+     * The types of the statistics columns.
+     */
+    private static final OpenType< ? >[] STATISTICS_TYPES = new OpenType< ? >[] {SimpleType.LONG, SimpleType.DOUBLE,
+        SimpleType.DOUBLE, SimpleType.LONG};
+
+    /**
+     * The name of the event column.
+     */
+    private static final String EVENT = "event";
+
+    /**
+     * The description of the event column.
+     */
+    private static final String EVENT_DESCRIPTION = "The event class";
+
+    /**
+     * The name of the listener statistics row and table types.
+     */
+    private static final String LISTENER_STATISTICS = "listenerStatistics";
+
+    /**
+     * The name of the event statistics row and table types.
+     */
+    private static final String EVENT_STATISTICS = "eventStatistics";
+
+    /**
+     * The metrics for which to return management data.
+     */
+    private ObservationMetrics metrics;
+
+    /**
+     * @param metrics the metrics for which to return management data
+     */
+    public JMXObservationMetrics(ObservationMetrics metrics)
+    {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public boolean isEnabled()
+    {
+        return this.metrics.isEnabled();
+    }
+
+    @Override
+    public void setEnabled(boolean enabled)
+    {
+        this.metrics.setEnabled(enabled);
+    }
+
+    @Override
+    public long getSlowListenerThreshold()
+    {
+        return this.metrics.getSlowListenerThreshold();
+    }
+
+    @Override
+    public void setSlowListenerThreshold(long threshold)
+    {
+        this.metrics.setSlowListenerThreshold(threshold);
+    }
+
+    @Override
+    public TabularData getListenerStatistics()
+    {
+        try {
+            String[] keyNames = new String[] {"listener", EVENT};
+            CompositeType rowType =
+                createRowType(LISTENER_STATISTICS, "The calls of a listener for an event class", keyNames,
+                    new String[] {"The listener name", EVENT_DESCRIPTION});
+            TabularData data =
+                new TabularDataSupport(new TabularType(LISTENER_STATISTICS,
+                    "The calls of each listener for each event class", rowType, keyNames));
+
+            for (Map.Entry<String, Map<Class< ? extends Event>, ObservationMetrics.Statistics>> listenerEntry
+                : this.metrics.getListenerStatistics().entrySet()) {
+                for (Map.Entry<Class< ? extends Event>, ObservationMetrics.Statistics> entry : listenerEntry
+                    .getValue().entrySet()) {
+                    data.put(createRow(rowType, keyNames, entry.getValue(), listenerEntry.getKey(),
+                        entry.getKey().getName()));
+                }
+            }
+
+            return data;
+        } catch (OpenDataException e) {
+            throw new RuntimeException("Failed to gather the listener statistics", e);
+        }
+    }
+
+    @Override
+    public TabularData getEventStatistics()
+    {
+        try {
+            String[] keyNames = new String[] {EVENT};
+            CompositeType rowType =
+                createRowType(EVENT_STATISTICS, "The notifications of an event class", keyNames,
+                    new String[] {EVENT_DESCRIPTION});
+            TabularData data =
+                new TabularDataSupport(new TabularType(EVENT_STATISTICS,
+                    "The notifications of each event class", rowType, keyNames));
+
+            for (Map.Entry<Class< ? extends Event>, ObservationMetrics.Statistics> entry : this.metrics
+                .getEventStatistics().entrySet()) {
+                data.put(createRow(rowType, keyNames, entry.getValue(), entry.getKey().getName()));
+            }
+
+            return data;
+        } catch (OpenDataException e) {
+            throw new RuntimeException("Failed to gather the event statistics", e);
+        }
+    }
+
+    @Override
+    public void reset()
+    {
+        this.metrics.reset();
+    }
+
+    private CompositeType createRowType(String typeName, String description, String[] keyNames,
+        String[] keyDescriptions) throws OpenDataException
+    {
+        int size = keyNames.length + STATISTICS_NAMES.length;
+
+        String[] names = new String[size];
+        String[] descriptions = new String[size];
+        OpenType< ? >[] types = new OpenType< ? >[size];
+        for (int i = 0; i < keyNames.length; ++i) {
+            names[i] = keyNames[i];
+            descriptions[i] = keyDescriptions[i];
+            types[i] = SimpleType.STRING;
+        }
+        System.arraycopy(STATISTICS_NAMES, 0, names, keyNames.length, STATISTICS_NAMES.length);
+        System.arraycopy(STATISTICS_DESCRIPTIONS, 0, descriptions, keyNames.length, STATISTICS_NAMES.length);
+        System.arraycopy(STATISTICS_TYPES, 0, types, keyNames.length, STATISTICS_NAMES.length);
+
+        return new CompositeType(typeName, description, names, descriptions, types);
+    }
+
+    private CompositeDataSupport createRow(CompositeType rowType, String[] keyNames,
+        ObservationMetrics.Statistics statistics, String... keys) throws OpenDataException
+    {
+        Map<String, Object> values = new HashMap<String, Object>();
+        for (int i = 0; i < keyNames.length; ++i) {
+            values.put(keyNames[i], keys[i]);
+        }
+        values.put(STATISTICS_NAMES[0], statistics.getCount());
+        values.put(STATISTICS_NAMES[1], toMilliseconds(statistics.getDuration()));
+        values.put(STATISTICS_NAMES[2], toMilliseconds(statistics.getMaxDuration()));
+        values.put(STATISTICS_NAMES[3], statistics.getErrors());
+
+        return new CompositeDataSupport(rowType, values);
+    }
+
+    private double toMilliseconds(long nanoseconds)
+    {
+        return (double) nanoseconds / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal.jmx;
+
+import javax.management.openmbean.TabularData;
+
+/**
+ * Exposes the {@link org.xwiki.observation.internal.ObservationMetrics} of the Observation Manager.
+ * 
+ * @version $Id$
+ * @since 5.4M1
+ */
+public interface JMXObservationMetricsMBean
+{
+    /**
+     * @return true if the metrics are recorded
+     */
+    boolean isEnabled();
+
+    /**
+     * @param enabled true to record the metrics
+     */
+    void setEnabled(boolean enabled);
+
+    /**
+     * @return the time in milliseconds above which a listener handling an event is logged as slow, 0 if disabled
+     */
+    long getSlowListenerThreshold();
+
+    /**
+     * @param threshold the time in milliseconds above which a listener handling an event is logged as slow, 0 to
+     *            disable
+     */
+    void setSlowListenerThreshold(long threshold);
+
+    /**
+     * @return the number of calls, the time spent in milliseconds and the number of errors of each listener for each
+     *         event class
+     */
+    TabularData getListenerStatistics();
+
+    /**
+     * @return the number of notifications and the time spent in milliseconds notifying the synchronous listeners of
+     *         each event class
+     */
+    TabularData getEventStatistics();
+
+    /**
+     * Forget everything recorded so far.
+     */
+    void reset();
+}
@@ -0,0 +1,75 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal.jmx;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.manager.ComponentManagerInitializer;
+import org.xwiki.management.JMXBeanRegistration;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.observation.internal.DefaultObservationManager;
+
+/**
+ * Registers a JMX MBean exposing the metrics of the Observation Manager.
+ * 
+ * @version $Id$
+ * @since 5.4M1
+ */
+@Component
+@Named("observationMetrics")
+@Singleton
+public class ObservationMetricsInitializer implements ComponentManagerInitializer
+{
+    /**
+     * Used to register the MBean.
+     */
+    @Inject
+    private JMXBeanRegistration jmxRegistration;
+
+    /**
+     * The logger to log.
+     */
+    @Inject
+    private Logger logger;
+
+    @Override
+    public void initialize(ComponentManager componentManager)
+    {
+        if (componentManager.hasComponent(ObservationManager.class)) {
+            try {
+                ObservationManager observationManager = componentManager.getInstance(ObservationManager.class);
+
+                if (observationManager instanceof DefaultObservationManager) {
+                    this.jmxRegistration.registerMBean(new JMXObservationMetrics(
+                        ((DefaultObservationManager) observationManager).getMetrics()),
+                        "type=ObservationManager,name=metrics");
+                }
+            } catch (ComponentLookupException e) {
+                this.logger.error("Failed to lookup the Observation Manager", e);
+            }
+        }
+    }
+}
@@ -24,6 +24,7 @@
 import org.hamcrest.core.IsNot;
 import org.jmock.Expectations;
 import org.junit.Test;
+import org.xwiki.observation.event.AbstractFilterableEvent;
 import org.xwiki.observation.event.BeginEvent;
 import org.xwiki.observation.event.EndEvent;
 import org.xwiki.test.jmock.AbstractComponentTestCase;
@@ -35,6 +36,39 @@
  */
 public class ObservationContextTest extends AbstractComponentTestCase
 {
+    private static class TestBeginEvent extends AbstractFilterableEvent implements BeginEvent
+    {
+        public TestBeginEvent()
+        {
+        }
+
+        public TestBeginEvent(String name)
+        {
+            super(name);
+        }
+    }
+
+    private static class SubTestBeginEvent extends TestBeginEvent
+    {
+        public SubTestBeginEvent()
+        {
+        }
+
+        public SubTestBeginEvent(String name)
+        {
+            super(name);
+        }
+    }
+
+    private static class TestEndEvent implements EndEvent
+    {
+        @Override
+        public boolean matches(Object otherEvent)
+        {
+            return otherEvent instanceof TestEndEvent;
+        }
+    }
+
     private ObservationManager manager;
 
     private ObservationContext observationContext;
@@ -92,4 +126,33 @@ public void test()
         Assert.assertFalse(this.observationContext.isIn(beginEvent1));
         Assert.assertFalse(this.observationContext.isIn(beginEvent2));
     }
+
+    @Test
+    public void testFilterableEvents()
+    {
+        Assert.assertFalse(this.observationContext.isIn(new TestBeginEvent()));
+
+        this.manager.notify(new TestBeginEvent("parent"), null);
+
+        Assert.assertTrue(this.observationContext.isIn(new TestBeginEvent()));
+        Assert.assertFalse(this.observationContext.isIn(new SubTestBeginEvent()));
+
+        this.manager.notify(new SubTestBeginEvent("child"), null);
+
+        Assert.assertTrue(this.observationContext.isIn(new SubTestBeginEvent()));
+        Assert.assertTrue(this.observationContext.isIn(new TestBeginEvent("child")));
+        Assert.assertTrue(this.observationContext.isIn(new SubTestBeginEvent("child")));
+        Assert.assertFalse(this.observationContext.isIn(new SubTestBeginEvent("parent")));
+
+        this.manager.notify(new TestEndEvent(), null);
+
+        Assert.assertTrue(this.observationContext.isIn(new TestBeginEvent()));
+        Assert.assertFalse(this.observationContext.isIn(new SubTestBeginEvent()));
+        Assert.assertTrue(this.observationContext.isIn(new TestBeginEvent("parent")));
+        Assert.assertFalse(this.observationContext.isIn(new TestBeginEvent("child")));
+
+        this.manager.notify(new TestEndEvent(), null);
+
+        Assert.assertFalse(this.observationContext.isIn(new TestBeginEvent()));
+    }
 }
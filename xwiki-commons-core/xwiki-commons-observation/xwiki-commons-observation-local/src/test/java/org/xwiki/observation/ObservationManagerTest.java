@@ -19,8 +19,15 @@
  */
 package org.xwiki.observation;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hamcrest.Matchers.*;
 import org.jmock.Expectations;
@@ -31,9 +38,16 @@
 import org.slf4j.Logger;
 import org.xwiki.component.util.ReflectionUtils;
 import org.xwiki.observation.event.ActionExecutionEvent;
+import org.xwiki.observation.event.AbstractCancelableEvent;
+import org.xwiki.observation.event.AbstractFilterableEvent;
 import org.xwiki.observation.event.AllEvent;
+import org.xwiki.observation.event.AssignableEvent;
+import org.xwiki.observation.event.CancelableEvent;
 import org.xwiki.observation.event.Event;
+import org.xwiki.observation.event.filter.EventFilter;
+import org.xwiki.observation.event.filter.RegexEventFilter;
 import org.xwiki.observation.internal.DefaultObservationManager;
+import org.xwiki.observation.internal.ObservationMetrics;
 import org.xwiki.test.jmock.JMockRule;
 
 /**
@@ -48,6 +62,218 @@
 
     private ObservationManager manager;
 
+    private static class TestCancelableEvent extends AbstractCancelableEvent
+    {
+    }
+
+    private static class TestFilterableEvent extends AbstractFilterableEvent
+    {
+        TestFilterableEvent()
+        {
+        }
+
+        TestFilterableEvent(String name)
+        {
+            super(name);
+        }
+
+        TestFilterableEvent(EventFilter eventFilter)
+        {
+            super(eventFilter);
+        }
+    }
+
+    /**
+     * Listener remembering the events it received.
+     */
+    private static class RecordingEventListener implements EventListener
+    {
+        private final String name;
+
+        private final List<Event> events;
+
+        protected final List<Event> receivedEvents = new ArrayList<Event>();
+
+        RecordingEventListener(String name, Event... events)
+        {
+            this.name = name;
+            this.events = Arrays.asList(events);
+        }
+
+        @Override
+        public String getName()
+        {
+            return this.name;
+        }
+
+        @Override
+        public List<Event> getEvents()
+        {
+            return this.events;
+        }
+
+        @Override
+        public void onEvent(Event event, Object source, Object data)
+        {
+            this.receivedEvents.add(event);
+        }
+    }
+
+    /**
+     * Listener remembering the order in which the listeners are called.
+     */
+    private static class OrderedEventListener extends RecordingEventListener
+    {
+        private final List<String> calls;
+
+        OrderedEventListener(String name, List<String> calls)
+        {
+            this(name, calls, AllEvent.ALLEVENT);
+        }
+
+        OrderedEventListener(String name, List<String> calls, Event... events)
+        {
+            super(name, events);
+
+            this.calls = calls;
+        }
+
+        @Override
+        public void onEvent(Event event, Object source, Object data)
+        {
+            super.onEvent(event, source, data);
+
+            this.calls.add(getName());
+        }
+    }
+
+    @ListenerPriority(10)
+    private static class CancelingEventListener extends OrderedEventListener
+    {
+        CancelingEventListener(String name, List<String> calls)
+        {
+            super(name, calls);
+        }
+
+        CancelingEventListener(String name, List<String> calls, Event... events)
+        {
+            super(name, calls, events);
+        }
+
+        @Override
+        public void onEvent(Event event, Object source, Object data)
+        {
+            super.onEvent(event, source, data);
+
+            if (event instanceof CancelableEvent) {
+                ((CancelableEvent) event).cancel();
+            }
+        }
+    }
+
+    @ListenerPriority(2000)
+    @ReceiveCanceledEvents
+    private static class LastEventListener extends OrderedEventListener
+    {
+        LastEventListener(String name, List<String> calls)
+        {
+            super(name, calls);
+        }
+
+        LastEventListener(String name, List<String> calls, Event... events)
+        {
+            super(name, calls, events);
+        }
+    }
+
+    /**
+     * Batch listener remembering the batches it received.
+     */
+    private static class BatchRecordingEventListener extends RecordingEventListener implements BatchEventListener
+    {
+        private final List<List<EventNotification>> receivedBatches = new ArrayList<List<EventNotification>>();
+
+        BatchRecordingEventListener(String name, Event... events)
+        {
+            super(name, events);
+        }
+
+        @Override
+        public void onEvents(List<EventNotification> notifications)
+        {
+            this.receivedBatches.add(notifications);
+        }
+    }
+
+    /**
+     * Asynchronous listener waiting to be released before handling the events.
+     */
+    @AsynchronousListener
+    private static class AsynchronousRecordingEventListener extends RecordingEventListener
+    {
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        private final CountDownLatch done;
+
+        private final List<Thread> threads = new ArrayList<Thread>();
+
+        AsynchronousRecordingEventListener(String name, int expectedEvents, Event... events)
+        {
+            super(name, events);
+
+            this.done = new CountDownLatch(expectedEvents);
+        }
+
+        @Override
+        public void onEvent(Event event, Object source, Object data)
+        {
+            try {
+                this.release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            this.threads.add(Thread.currentThread());
+            super.onEvent(event, source, data);
+
+            this.done.countDown();
+        }
+    }
+
+    /**
+     * Asynchronous listener with a single event queue passing the rejected events in the notifying thread, remembering
+     * if it has been called concurrently.
+     */
+    @AsynchronousListener(queueSize = 1, rejectionPolicy = AsynchronousListener.RejectionPolicy.CALLER_RUNS)
+    private static class CallerRunsRecordingEventListener extends AsynchronousRecordingEventListener
+    {
+        private final CountDownLatch started = new CountDownLatch(1);
+
+        private final AtomicInteger running = new AtomicInteger();
+
+        private volatile boolean concurrent;
+
+        CallerRunsRecordingEventListener(String name, int expectedEvents, Event... events)
+        {
+            super(name, expectedEvents, events);
+        }
+
+        @Override
+        public void onEvent(Event event, Object source, Object data)
+        {
+            if (this.running.incrementAndGet() > 1) {
+                this.concurrent = true;
+            }
+            this.started.countDown();
+
+            try {
+                super.onEvent(event, source, data);
+            } finally {
+                this.running.decrementAndGet();
+            }
+        }
+    }
+
     @Before
     public void setUp()
     {
@@ -261,4 +487,414 @@ public void testRegisterListenerForTwoEventsOfSameType()
         this.manager.notify(eventMatcher1, "some source", "some data");
         this.manager.notify(eventMatcher2, "some source", "some data");
     }
+
+    @Test
+    public void testNotifyAfterListenersChange()
+    {
+        RecordingEventListener listener1 = new RecordingEventListener("listener1", new ActionExecutionEvent("action"));
+        RecordingEventListener listener2 = new RecordingEventListener("listener2", AllEvent.ALLEVENT);
+
+        Event event = new ActionExecutionEvent("action");
+
+        this.manager.addListener(listener1);
+        this.manager.notify(event, null);
+        Assert.assertEquals(Arrays.asList(event), listener1.receivedEvents);
+
+        // Listeners added after a notification receive the next events
+        this.manager.addListener(listener2);
+        this.manager.notify(event, null);
+        Assert.assertEquals(2, listener1.receivedEvents.size());
+        Assert.assertEquals(1, listener2.receivedEvents.size());
+
+        // Events added after a notification are matched
+        Event otherEvent = new ActionExecutionEvent("other");
+        this.manager.notify(otherEvent, null);
+        Assert.assertEquals(2, listener1.receivedEvents.size());
+        this.manager.addEvent("listener1", otherEvent);
+        this.manager.notify(otherEvent, null);
+        Assert.assertEquals(3, listener1.receivedEvents.size());
+
+        // Removed listeners don't receive events anymore
+        this.manager.removeListener("listener1");
+        this.manager.notify(event, null);
+        Assert.assertEquals(3, listener1.receivedEvents.size());
+        Assert.assertEquals(4, listener2.receivedEvents.size());
+    }
+
+    @Test
+    public void testNotifyListenerRegisteredForParentType()
+    {
+        RecordingEventListener listener =
+            new RecordingEventListener("listener", new AssignableEvent(CancelableEvent.class),
+                new ActionExecutionEvent("action"));
+
+        this.manager.addListener(listener);
+
+        Event event = new ActionExecutionEvent("action");
+        this.manager.notify(event, null);
+        Event cancelableEvent = new TestCancelableEvent();
+        this.manager.notify(cancelableEvent, null);
+        this.manager.notify(new ActionExecutionEvent("other"), null);
+
+        // Called only once even if both events match
+        Assert.assertEquals(Arrays.asList(event, cancelableEvent), listener.receivedEvents);
+    }
+
+    @Test
+    public void testNotifyIndexedListeners()
+    {
+        RecordingEventListener fixedListener1 =
+            new RecordingEventListener("fixed1", new TestFilterableEvent("Space.Page1"));
+        RecordingEventListener fixedListener2 =
+            new RecordingEventListener("fixed2", new TestFilterableEvent("Space.Page2"));
+        RecordingEventListener prefixListener =
+            new RecordingEventListener("prefix", new TestFilterableEvent(new RegexEventFilter("Space\\..*")));
+        RecordingEventListener otherPrefixListener =
+            new RecordingEventListener("otherPrefix", new TestFilterableEvent(new RegexEventFilter("Other.*")));
+        RecordingEventListener suffixListener =
+            new RecordingEventListener("suffix", new TestFilterableEvent(new RegexEventFilter(".*1")));
+        RecordingEventListener allListener = new RecordingEventListener("all", new TestFilterableEvent());
+
+        this.manager.addListener(fixedListener1);
+        this.manager.addListener(fixedListener2);
+        this.manager.addListener(prefixListener);
+        this.manager.addListener(otherPrefixListener);
+        this.manager.addListener(suffixListener);
+        this.manager.addListener(allListener);
+
+        Event event = new TestFilterableEvent("Space.Page1");
+        this.manager.notify(event, null);
+
+        Assert.assertEquals(Arrays.asList(event), fixedListener1.receivedEvents);
+        Assert.assertTrue(fixedListener2.receivedEvents.isEmpty());
+        Assert.assertEquals(Arrays.asList(event), prefixListener.receivedEvents);
+        Assert.assertTrue(otherPrefixListener.receivedEvents.isEmpty());
+        Assert.assertEquals(Arrays.asList(event), suffixListener.receivedEvents);
+        Assert.assertEquals(Arrays.asList(event), allListener.receivedEvents);
+    }
+
+    @Test
+    public void testHasListener()
+    {
+        Assert.assertFalse(this.manager.hasListener(ActionExecutionEvent.class));
+
+        this.manager.addListener(new RecordingEventListener("indexed", new ActionExecutionEvent("action")));
+
+        Assert.assertTrue(this.manager.hasListener(ActionExecutionEvent.class));
+        Assert.assertFalse(this.manager.hasListener(TestFilterableEvent.class));
+
+        this.manager.removeListener("indexed");
+
+        Assert.assertFalse(this.manager.hasListener(ActionExecutionEvent.class));
+
+        this.manager.addListener(new RecordingEventListener("all", AllEvent.ALLEVENT));
+
+        Assert.assertTrue(this.manager.hasListener(TestFilterableEvent.class));
+
+        this.manager.removeListener("all");
+        this.manager.addThreadListener(new RecordingEventListener("thread", new ActionExecutionEvent("action")));
+
+        Assert.assertTrue(this.manager.hasListener(TestFilterableEvent.class));
+
+        this.manager.removeThreadListener("thread");
+
+        Assert.assertFalse(this.manager.hasListener(TestFilterableEvent.class));
+    }
+
+    @Test
+    public void testNotifyThreadListener() throws Exception
+    {
+        final RecordingEventListener listener = new RecordingEventListener("listener", AllEvent.ALLEVENT);
+
+        this.manager.addThreadListener(listener);
+
+        Event event = new ActionExecutionEvent("action");
+        this.manager.notify(event, null);
+
+        // Events notified by other threads are not received
+        Thread thread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                manager.notify(new ActionExecutionEvent("other thread"), null);
+            }
+        });
+        thread.start();
+        thread.join();
+
+        Assert.assertEquals(Arrays.asList(event), listener.receivedEvents);
+        Assert.assertNull(this.manager.getListener("listener"));
+
+        Assert.assertSame(listener, this.manager.removeThreadListener("listener"));
+        this.manager.notify(event, null);
+
+        Assert.assertEquals(1, listener.receivedEvents.size());
+    }
+
+    @Test
+    public void testNotifyByPriority()
+    {
+        List<String> calls = new ArrayList<String>();
+
+        this.manager.addListener(new LastEventListener("last", calls));
+        this.manager.addListener(new OrderedEventListener("default", calls));
+        this.manager.addListener(new CancelingEventListener("first", calls));
+
+        this.manager.notify(new ActionExecutionEvent("action"), null);
+
+        Assert.assertEquals(Arrays.asList("first", "default", "last"), calls);
+    }
+
+    @Test
+    public void testNotifyIndexedListenersByPriority()
+    {
+        List<String> calls = new ArrayList<String>();
+
+        this.manager.addListener(new LastEventListener("last", calls, new ActionExecutionEvent("action")));
+        this.manager.addListener(new OrderedEventListener("default", calls));
+        this.manager.addListener(new OrderedEventListener("indexed", calls, new ActionExecutionEvent("action")));
+        this.manager.addListener(new CancelingEventListener("first", calls, new ActionExecutionEvent("action")));
+        this.manager.addListener(new OrderedEventListener("other", calls, new ActionExecutionEvent("other")));
+
+        this.manager.notify(new ActionExecutionEvent("action"), null);
+
+        // The listeners with the same priority are called in no particular order
+        Assert.assertEquals(4, calls.size());
+        Assert.assertEquals("first", calls.get(0));
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("default", "indexed")),
+            new HashSet<String>(calls.subList(1, 3)));
+        Assert.assertEquals("last", calls.get(3));
+    }
+
+    @Test
+    public void testNotifyCanceledEvent()
+    {
+        List<String> calls = new ArrayList<String>();
+
+        this.manager.addListener(new LastEventListener("last", calls));
+        this.manager.addListener(new OrderedEventListener("default", calls));
+        this.manager.addListener(new CancelingEventListener("first", calls));
+
+        TestCancelableEvent event = new TestCancelableEvent();
+        this.manager.notify(event, null);
+
+        // Only the listeners asking for it receive the event once it's canceled
+        Assert.assertTrue(event.isCanceled());
+        Assert.assertEquals(Arrays.asList("first", "last"), calls);
+    }
+
+    @Test
+    public void testNotifyBatch()
+    {
+        RecordingEventListener listener = new RecordingEventListener("listener", AllEvent.ALLEVENT);
+        BatchRecordingEventListener batchListener =
+            new BatchRecordingEventListener("batch", new ActionExecutionEvent("action"));
+
+        this.manager.addListener(listener);
+        this.manager.addListener(batchListener);
+
+        Event event1 = new ActionExecutionEvent("action");
+        Event event2 = new TestCancelableEvent();
+        Event event3 = new ActionExecutionEvent("action");
+        EventNotification notification1 = new EventNotification(event1, "source1", "data1");
+        EventNotification notification3 = new EventNotification(event3, "source3", null);
+        this.manager.notify(Arrays.asList(notification1, new EventNotification(event2, null, null), notification3));
+
+        // The other listeners receive the events one by one
+        Assert.assertEquals(Arrays.asList(event1, event2, event3), listener.receivedEvents);
+
+        // The batch listeners receive the matching events in one call
+        Assert.assertEquals(Arrays.asList(Arrays.asList(notification1, notification3)), batchListener.receivedBatches);
+        Assert.assertTrue(batchListener.receivedEvents.isEmpty());
+
+        // Events notified alone are still received one by one
+        this.manager.notify(event1, null);
+        Assert.assertEquals(Arrays.asList(event1), batchListener.receivedEvents);
+    }
+
+    @Test
+    public void testMetrics() throws Exception
+    {
+        ObservationMetrics metrics = ((DefaultObservationManager) this.manager).getMetrics();
+        metrics.setEnabled(true);
+
+        RecordingEventListener listener = new RecordingEventListener("listener", AllEvent.ALLEVENT);
+        RecordingEventListener failingListener = new RecordingEventListener("failing", AllEvent.ALLEVENT)
+        {
+            @Override
+            public void onEvent(Event event, Object source, Object data)
+            {
+                throw new RuntimeException("error");
+            }
+        };
+
+        final Logger logger = this.mockery.mock(Logger.class);
+        ReflectionUtils.setFieldValue(this.manager, "logger", logger);
+
+        this.mockery.checking(new Expectations() {{
+            exactly(2).of(logger).error(with(containsString("Failed to send event")), with(any(Object[].class)));
+        }});
+
+        this.manager.addListener(listener);
+        this.manager.addListener(failingListener);
+
+        this.manager.notify(new ActionExecutionEvent("action1"), null);
+        this.manager.notify(new ActionExecutionEvent("action2"), null);
+
+        ObservationMetrics.Statistics statistics =
+            metrics.getListenerStatistics().get("listener").get(ActionExecutionEvent.class);
+        Assert.assertEquals(2, statistics.getCount());
+        Assert.assertEquals(0, statistics.getErrors());
+        Assert.assertTrue(statistics.getMaxDuration() <= statistics.getDuration());
+
+        statistics = metrics.getListenerStatistics().get("failing").get(ActionExecutionEvent.class);
+        Assert.assertEquals(2, statistics.getCount());
+        Assert.assertEquals(2, statistics.getErrors());
+
+        Assert.assertEquals(2, metrics.getEventStatistics().get(ActionExecutionEvent.class).getCount());
+
+        metrics.reset();
+        Assert.assertTrue(metrics.getListenerStatistics().isEmpty());
+    }
+
+    @Test
+    public void testMetricsOfRemovedListeners() throws Exception
+    {
+        ObservationMetrics metrics = ((DefaultObservationManager) this.manager).getMetrics();
+        metrics.setEnabled(true);
+
+        this.manager.addListener(new RecordingEventListener("listener", AllEvent.ALLEVENT));
+        this.manager.addThreadListener(new RecordingEventListener("thread", AllEvent.ALLEVENT));
+
+        this.manager.notify(new ActionExecutionEvent("action"), null);
+
+        Assert.assertEquals(2, metrics.getListenerStatistics().size());
+
+        this.manager.removeListener("listener");
+        this.manager.removeThreadListener("thread");
+
+        Assert.assertTrue(metrics.getListenerStatistics().isEmpty());
+    }
+
+    @Test
+    public void testMetricsWithConcurrentReset() throws Exception
+    {
+        final ObservationMetrics metrics = ((DefaultObservationManager) this.manager).getMetrics();
+        metrics.setEnabled(true);
+
+        this.manager.addListener(new RecordingEventListener("listener", AllEvent.ALLEVENT));
+
+        final AtomicBoolean stop = new AtomicBoolean();
+        Thread resetThread = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                while (!stop.get()) {
+                    metrics.reset();
+                }
+            }
+        };
+        resetThread.start();
+
+        try {
+            for (int i = 0; i < 100000; ++i) {
+                this.manager.notify(new ActionExecutionEvent("action"), null);
+            }
+        } finally {
+            stop.set(true);
+            resetThread.join();
+        }
+    }
+
+    @Test
+    public void testNotifyAsynchronousListener() throws Exception
+    {
+        AsynchronousRecordingEventListener listener =
+            new AsynchronousRecordingEventListener("listener", 3, AllEvent.ALLEVENT);
+
+        this.manager.addListener(listener);
+
+        Event event1 = new ActionExecutionEvent("action1");
+        Event event2 = new ActionExecutionEvent("action2");
+        Event event3 = new ActionExecutionEvent("action3");
+        this.manager.notify(event1, null);
+        this.manager.notify(event2, null);
+        this.manager.notify(event3, null);
+
+        // The notifications don't wait for the listener
+        Assert.assertTrue(listener.receivedEvents.isEmpty());
+
+        listener.release.countDown();
+        Assert.assertTrue(listener.done.await(10, TimeUnit.SECONDS));
+
+        // The events are received in order from another thread
+        Assert.assertEquals(Arrays.asList(event1, event2, event3), listener.receivedEvents);
+        Assert.assertNotSame(Thread.currentThread(), listener.threads.get(0));
+
+        ((DefaultObservationManager) this.manager).dispose();
+    }
+
+    @Test
+    public void testNotifyCallerRunsAsynchronousListener() throws Exception
+    {
+        CallerRunsRecordingEventListener listener =
+            new CallerRunsRecordingEventListener("listener", 3, AllEvent.ALLEVENT);
+
+        this.manager.addListener(listener);
+
+        Event event1 = new ActionExecutionEvent("action1");
+        Event event2 = new ActionExecutionEvent("action2");
+        final Event event3 = new ActionExecutionEvent("action3");
+
+        this.manager.notify(event1, null);
+        // Wait for the first event to be taken from the queue so that the second one fills it
+        Assert.assertTrue(listener.started.await(10, TimeUnit.SECONDS));
+        this.manager.notify(event2, null);
+
+        // The third event does not fit in the queue and is passed by the notifying thread
+        Thread thread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                manager.notify(event3, null);
+            }
+        });
+        thread.start();
+        thread.join(100);
+
+        ((AsynchronousRecordingEventListener) listener).release.countDown();
+        thread.join();
+
+        Assert.assertTrue(((AsynchronousRecordingEventListener) listener).done.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(Arrays.asList(event1, event2, event3), listener.receivedEvents);
+        Assert.assertFalse(listener.concurrent);
+
+        ((DefaultObservationManager) this.manager).dispose();
+    }
+
+    @Test
+    public void testNotifyAsynchronousListenerAfterDispose() throws Exception
+    {
+        AsynchronousRecordingEventListener listener =
+            new AsynchronousRecordingEventListener("listener", 2, AllEvent.ALLEVENT);
+        listener.release.countDown();
+
+        this.manager.addListener(listener);
+
+        // Cache the dispatch table
+        this.manager.notify(new ActionExecutionEvent("action1"), null);
+
+        ((DefaultObservationManager) this.manager).dispose();
+
+        // The event is not lost in a queue which is not processed anymore
+        Event event = new ActionExecutionEvent("action2");
+        this.manager.notify(event, null);
+
+        Assert.assertTrue(listener.done.await(10, TimeUnit.SECONDS));
+        Assert.assertSame(event, listener.receivedEvents.get(1));
+        Assert.assertSame(Thread.currentThread(), listener.threads.get(1));
+    }
 }
@@ -26,6 +26,7 @@
 import javax.script.ScriptContext;
 
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.annotation.LiveCollection;
 import org.xwiki.context.Execution;
 import org.xwiki.script.ScriptContextInitializer;
 import org.xwiki.script.ScriptContextManager;
@@ -46,9 +47,11 @@ public class DefaultScriptContextManager implements ScriptContextManager
     private Execution execution;
 
     /**
-     * The {@link ScriptContextInitializer} list used to initialize {@link ScriptContext}.
+     * The {@link ScriptContextInitializer} list used to initialize {@link ScriptContext}, kept up to date with the
+     * registered components.
      */
     @Inject
+    @LiveCollection
     private List<ScriptContextInitializer> scriptContextInitializerList;
 
     @Override
@@ -57,8 +60,7 @@ public ScriptContext getScriptContext()
         // The Script Context is set in ScriptExecutionContextInitializer, when the XWiki Execution Context is
         // initialized so we are guaranteed it is defined when this method is called.
         ScriptContext context =
-            (ScriptContext) this.execution.getContext()
-                .getProperty(ScriptExecutionContextInitializer.SCRIPT_CONTEXT_ID);
+            this.execution.getContext().getProperty(ScriptExecutionContextInitializer.SCRIPT_CONTEXT_KEY);
 
         // We re-initialize the Script Context with all Script Context Initializers. We do this in order to ensure
         // that the Script Context always contain correct values even if user scripts or XWiki code have modified them.
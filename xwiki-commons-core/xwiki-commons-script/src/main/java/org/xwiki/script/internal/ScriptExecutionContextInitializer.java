@@ -21,9 +21,11 @@
 
 import javax.inject.Named;
 import javax.inject.Singleton;
+import javax.script.ScriptContext;
 import javax.script.SimpleScriptContext;
 
 import org.xwiki.component.annotation.Component;
+import org.xwiki.context.ContextKey;
 import org.xwiki.context.ExecutionContext;
 import org.xwiki.context.ExecutionContextException;
 import org.xwiki.context.ExecutionContextInitializer;
@@ -44,11 +46,19 @@ public class ScriptExecutionContextInitializer implements ExecutionContextInitia
      */
     public static final String SCRIPT_CONTEXT_ID = "scriptContext";
 
+    /**
+     * The key under which the Script Context is stored in the Execution Context.
+     * 
+     * @since 5.4M1
+     */
+    public static final ContextKey<ScriptContext> SCRIPT_CONTEXT_KEY =
+        ContextKey.get(SCRIPT_CONTEXT_ID, ScriptContext.class);
+
     @Override
     public void initialize(ExecutionContext executionContext) throws ExecutionContextException
     {
         // We're storing an instance of the Script Context class in the Execution Context so that it can be
         // shared between different script invocations during the lifetime of the Execution Context.        
-        executionContext.setProperty(SCRIPT_CONTEXT_ID, new SimpleScriptContext());
+        executionContext.setProperty(SCRIPT_CONTEXT_KEY, new SimpleScriptContext());
     }
 }
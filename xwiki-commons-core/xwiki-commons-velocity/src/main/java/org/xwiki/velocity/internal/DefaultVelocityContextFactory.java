@@ -20,6 +20,7 @@
 package org.xwiki.velocity.internal;
 
 import java.util.Enumeration;
+import java.util.List;
 import java.util.Properties;
 
 import javax.inject.Inject;
@@ -29,8 +30,8 @@
 import org.apache.velocity.context.Context;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.annotation.LiveCollection;
 import org.xwiki.component.manager.ComponentLookupException;
-import org.xwiki.component.manager.ComponentManager;
 import org.xwiki.component.phase.Initializable;
 import org.xwiki.component.phase.InitializationException;
 import org.xwiki.velocity.VelocityConfiguration;
@@ -48,11 +49,12 @@
 public class DefaultVelocityContextFactory implements VelocityContextFactory, Initializable
 {
     /**
-     * The component manager we used to find all components implementing the
-     * {@link org.xwiki.velocity.VelocityContextInitializer} role.
+     * All the components implementing the {@link VelocityContextInitializer} role, kept up to date with the registered
+     * components.
      */
     @Inject
-    private ComponentManager componentManager;
+    @LiveCollection
+    private List<VelocityContextInitializer> initializers;
 
     /**
      * Velocity configuration to get the list of configured Velocity tools.
@@ -103,11 +105,15 @@ public VelocityContext createContext() throws XWikiVelocityException
 
         // Call all components implementing the VelocityContextInitializer's role.
         try {
-            for (Object interceptor : this.componentManager.getInstanceList(VelocityContextInitializer.class)) {
-                ((VelocityContextInitializer) interceptor).initialize(context);
+            for (VelocityContextInitializer initializer : this.initializers) {
+                initializer.initialize(context);
             }
-        } catch (ComponentLookupException e) {
-            throw new XWikiVelocityException("Failed to locate some Velocity Context initializers", e);
+        } catch (IllegalStateException e) {
+            // The live collection reports the initializers which cannot be looked up this way
+            if (e.getCause() instanceof ComponentLookupException) {
+                throw new XWikiVelocityException("Failed to locate some Velocity Context initializers", e.getCause());
+            }
+            throw e;
         }
 
         return context;
@@ -19,7 +19,6 @@
  */
 package org.xwiki.velocity.internal;
 
-import java.util.Arrays;
 import java.util.Properties;
 
 import org.apache.velocity.VelocityContext;
@@ -29,7 +28,6 @@
 import org.junit.Before;
 import org.junit.Test;
 import org.slf4j.Logger;
-import org.xwiki.component.manager.ComponentManager;
 import org.xwiki.test.jmock.AbstractMockingComponentTestCase;
 import org.xwiki.test.jmock.annotation.MockingRequirement;
 import org.xwiki.velocity.VelocityConfiguration;
@@ -75,12 +73,11 @@ public void configure() throws Exception
     public void testCreateDifferentContext() throws Exception
     {
         // We also verify that the VelocityContextInitializers are called.
-        final VelocityContextInitializer mockInitializer = getMockery().mock(VelocityContextInitializer.class);
-        final ComponentManager mockComponentManager = getComponentManager().getInstance(ComponentManager.class);
+        // Registered after the factory has been created, it's found through the live list of initializers.
+        final VelocityContextInitializer mockInitializer =
+            getComponentManager().registerMockComponent(getMockery(), VelocityContextInitializer.class);
         getMockery().checking(new Expectations() {{
             exactly(2).of(mockInitializer).initialize(with(any(VelocityContext.class)));
-            exactly(2). of(mockComponentManager).getInstanceList(VelocityContextInitializer.class);
-            will(returnValue(Arrays.asList(mockInitializer)));
         }});
 
         VelocityContext context1 = this.factory.createContext();